@@ -0,0 +1,58 @@
+package com.crossover.trial.weather.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.crossover.trial.weather.utility.DistanceUtility;
+
+/**
+ * Cost of a single haversine distance, the inner loop of every radius query.
+ *
+ * @author Michele Mastrogiovanni
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DistanceBenchmark {
+
+	private static final int POINTS = 1024;
+
+	private final double[] latitudes = new double[POINTS];
+
+	private final double[] longitudes = new double[POINTS];
+
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		Random random = new Random(1);
+		for (int i = 0; i < POINTS; i++) {
+			latitudes[i] = random.nextDouble() * 180 - 90;
+			longitudes[i] = random.nextDouble() * 360 - 180;
+		}
+	}
+
+	@Benchmark
+	public double calculateDistance() {
+		int i = next;
+		int j = (i + 1) & (POINTS - 1);
+		next = j;
+		return DistanceUtility.calculateDistance(latitudes[i], longitudes[i], latitudes[j], longitudes[j]);
+	}
+
+}
@@ -0,0 +1,128 @@
+package com.crossover.trial.weather.benchmark;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.crossover.trial.weather.exception.WeatherException;
+import com.crossover.trial.weather.model.AtmosphericInformation;
+import com.crossover.trial.weather.model.DataPoint;
+import com.crossover.trial.weather.model.DataPointType;
+import com.crossover.trial.weather.model.Repository;
+import com.crossover.trial.weather.utility.DataPointParser;
+import com.crossover.trial.weather.utility.ValidationUtility;
+import com.crossover.trial.weather.utility.WeatherBinaryWriter;
+import com.crossover.trial.weather.utility.WeatherJsonWriter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Gson serialization and parsing of the objects exchanged by the endpoints,
+ * with the shared instance they use, and serialization of a large weather
+ * answer by the Jackson provider against the streaming writer and the binary
+ * form. Data points are also parsed with {@link DataPointParser}, as the
+ * collector does. Run with -Djmh.options="-prof gc" to compare the garbage
+ * produced.
+ *
+ * @author Michele Mastrogiovanni
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonBenchmark {
+
+	private static final int WEATHER_SIZE = 1000;
+
+	private DataPoint dataPoint;
+
+	private String dataPointJson;
+
+	private AtmosphericInformation atmosphericInformation;
+
+	private String atmosphericInformationJson;
+
+	/** answer of a weather query with a large radius */
+	private List<AtmosphericInformation> weather;
+
+	private ObjectMapper mapper;
+
+	@Setup(Level.Trial)
+	public void setUp() throws WeatherException {
+		dataPoint = new DataPoint.Builder().withMean(22.5).withFirst(10).withMedian(20).withLast(30).withCount(10).build();
+		dataPointJson = ValidationUtility.gson.toJson(dataPoint);
+
+		// a fully populated information
+		Repository repository = Repository.getInstance();
+		repository.reset();
+		for (DataPointType type : DataPointType.values()) {
+			double mean = type == DataPointType.PRESSURE ? 700 : 22.5;
+			repository.addDataPoint("BOS", type, new DataPoint.Builder().from(dataPoint).withMean(mean).build());
+		}
+		atmosphericInformation = repository.getAtmosphericInformation("BOS");
+		atmosphericInformationJson = ValidationUtility.gson.toJson(atmosphericInformation);
+		weather = Collections.nCopies(WEATHER_SIZE, atmosphericInformation);
+		mapper = new ObjectMapper();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		Repository.getInstance().reset();
+	}
+
+	@Benchmark
+	public String serializeDataPoint() {
+		return ValidationUtility.gson.toJson(dataPoint);
+	}
+
+	@Benchmark
+	public DataPoint parseDataPoint() {
+		return ValidationUtility.gson.fromJson(dataPointJson, DataPoint.class);
+	}
+
+	@Benchmark
+	public DataPoint parseDataPointSpecialized() {
+		return DataPointParser.parse(dataPointJson);
+	}
+
+	@Benchmark
+	public String serializeAtmosphericInformation() {
+		return ValidationUtility.gson.toJson(atmosphericInformation);
+	}
+
+	@Benchmark
+	public AtmosphericInformation parseAtmosphericInformation() {
+		return ValidationUtility.gson.fromJson(atmosphericInformationJson, AtmosphericInformation.class);
+	}
+
+	@Benchmark
+	public byte[] serializeWeatherWithJackson() throws IOException {
+		return mapper.writeValueAsBytes(weather);
+	}
+
+	@Benchmark
+	public byte[] serializeWeatherStreaming() throws IOException {
+		return WeatherJsonWriter.toBytes(weather);
+	}
+
+	@Benchmark
+	public byte[] serializeWeatherBinary() throws IOException {
+		return WeatherBinaryWriter.toBytes(weather);
+	}
+
+}
@@ -0,0 +1,89 @@
+package com.crossover.trial.weather.benchmark;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.crossover.trial.weather.exception.WeatherException;
+import com.crossover.trial.weather.model.AirportData;
+import com.crossover.trial.weather.model.Repository;
+
+/**
+ * Radius queries of the {@link Repository} at several airport counts and
+ * radii, on clustered random airports.
+ *
+ * @author Michele Mastrogiovanni
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RepositoryBenchmark {
+
+	@Param({ "1000", "10000", "40000" })
+	public int airports;
+
+	@Param({ "0", "50", "200", "1000" })
+	public double radius;
+
+	private String[] iatas;
+
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		iatas = fill(Repository.getInstance(), airports);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		Repository.getInstance().reset();
+	}
+
+	@Benchmark
+	public List<AirportData> getAirportsFromIataInRadius() throws WeatherException {
+		next = (next + 7919) % iatas.length;
+		return Repository.getInstance().getAirportsFromIataInRadius(iatas[next], radius);
+	}
+
+	/**
+	 * Replace the content of the repository with clustered random airports.
+	 *
+	 * @return Codes of the airports added
+	 */
+	static String[] fill(Repository repository, int size) {
+		repository.clear();
+		List<AirportData> positions = SpatialIndexBenchmark.randomAirports(size, new Random(size));
+		String[] iatas = new String[size];
+		for (int i = 0; i < size; i++) {
+			iatas[i] = code(i);
+			repository.addAirport(iatas[i], positions.get(i).getLatitude(), positions.get(i).getLongitude());
+		}
+		return iatas;
+	}
+
+	/**
+	 * @return A distinct 3 character code for each i below 36^3
+	 */
+	static String code(int i) {
+		String digits = "ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+		return "" + digits.charAt(i / 1296 % 36) + digits.charAt(i / 36 % 36) + digits.charAt(i % 36);
+	}
+
+}
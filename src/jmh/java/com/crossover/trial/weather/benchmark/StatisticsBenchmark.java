@@ -0,0 +1,120 @@
+package com.crossover.trial.weather.benchmark;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.crossover.trial.weather.exception.WeatherException;
+import com.crossover.trial.weather.model.DataPoint;
+import com.crossover.trial.weather.model.DataPointType;
+import com.crossover.trial.weather.model.HeavyHitterSketch;
+import com.crossover.trial.weather.model.Repository;
+import com.crossover.trial.weather.model.Statistics;
+
+/**
+ * The work behind a ping and behind the accounting of each query: request
+ * statistics updated by all the threads of the machine, the data size of a
+ * repository where every airport has recent data, and the request report in
+ * its exact and sketch forms.
+ *
+ * @author Michele Mastrogiovanni
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatisticsBenchmark {
+
+	@Param({ "1000", "10000", "40000" })
+	public int airports;
+
+	private String[] iatas;
+
+	private final HeavyHitterSketch sketch = new HeavyHitterSketch(4096, 4, 100);
+
+	/**
+	 * Random query, private to each thread
+	 */
+	@State(Scope.Thread)
+	public static class Query {
+
+		private final Random random = new Random();
+
+		int next(int bound) {
+			return random.nextInt(bound);
+		}
+
+		double radius() {
+			return random.nextInt(1000);
+		}
+
+	}
+
+	@Setup(Level.Trial)
+	public void setUp() throws WeatherException {
+		Repository repository = Repository.getInstance();
+		iatas = RepositoryBenchmark.fill(repository, airports);
+		DataPoint dp = new DataPoint.Builder().withMean(22).withFirst(10).withMedian(20).withLast(30).withCount(10).build();
+		for (String iata : iatas) {
+			repository.addDataPoint(iata, DataPointType.WIND, dp);
+		}
+		Statistics.getInstance().reset();
+		Random random = new Random(42);
+		for (int i = 0; i < 10 * airports; i++) {
+			String iata = iatas[random.nextInt(iatas.length)];
+			Statistics.getInstance().updateRequestFrequency(iata, 0);
+			sketch.add(iata);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		Repository.getInstance().reset();
+		Statistics.getInstance().reset();
+	}
+
+	@Benchmark
+	@Threads(Threads.MAX)
+	public void updateRequestFrequency(Query query) {
+		Statistics.getInstance().updateRequestFrequency(iatas[query.next(iatas.length)], query.radius());
+	}
+
+	@Benchmark
+	@Threads(Threads.MAX)
+	public void sketchAdd(Query query) {
+		sketch.add(iatas[query.next(iatas.length)]);
+	}
+
+	@Benchmark
+	public Map<String, Double> getIataFreq() {
+		return Statistics.getInstance().getIataFreq();
+	}
+
+	@Benchmark
+	public Map<String, Long> sketchTop() {
+		return sketch.top();
+	}
+
+	@Benchmark
+	public int getDataSize() {
+		return Repository.getInstance().getDataSize();
+	}
+
+}
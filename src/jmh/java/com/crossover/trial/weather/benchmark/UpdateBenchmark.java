@@ -0,0 +1,78 @@
+package com.crossover.trial.weather.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.crossover.trial.weather.exception.WeatherException;
+import com.crossover.trial.weather.model.DataPoint;
+import com.crossover.trial.weather.model.DataPointType;
+import com.crossover.trial.weather.model.Repository;
+
+/**
+ * Data point updates under contention: all the threads of the machine update
+ * random airports among a set whose size sets the contention, from a single
+ * hot airport to a thousand airports.
+ *
+ * @author Michele Mastrogiovanni
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(Threads.MAX)
+public class UpdateBenchmark {
+
+	@Param({ "1", "16", "1000" })
+	public int airports;
+
+	private String[] iatas;
+
+	private final DataPoint dp = new DataPoint.Builder().withMean(22).withFirst(10).withMedian(20).withLast(30).withCount(10).build();
+
+	/**
+	 * Random choice of the airport, private to each thread
+	 */
+	@State(Scope.Thread)
+	public static class Choice {
+
+		private final Random random = new Random();
+
+		int next(int bound) {
+			return random.nextInt(bound);
+		}
+
+	}
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		iatas = RepositoryBenchmark.fill(Repository.getInstance(), airports);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		Repository.getInstance().reset();
+	}
+
+	@Benchmark
+	public boolean addDataPoint(Choice choice) throws WeatherException {
+		return Repository.getInstance().addDataPoint(iatas[choice.next(iatas.length)], DataPointType.WIND, dp);
+	}
+
+}
@@ -0,0 +1,87 @@
+package com.crossover.trial.weather;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.crossover.trial.weather.catalog.AirportCatalog;
+import com.crossover.trial.weather.exception.WeatherException;
+import com.crossover.trial.weather.model.AirportData;
+import com.crossover.trial.weather.model.AirportRecord;
+import com.crossover.trial.weather.utility.ValidationUtility;
+import com.csvreader.CsvReader;
+
+/**
+ * Converts airports.dat in a binary {@link AirportCatalog} that the server can
+ * map at boot with the weather.catalog system property.
+ *
+ * Rows are validated like the ones sent to the collector; invalid rows are
+ * reported and skipped, and the first row of a duplicated IATA code wins.
+ * The weather.catalog.cellSize system property sets the size in degrees of
+ * the cells ordering the catalog (default 1).
+ *
+ * @author Michele Mastrogiovanni
+ */
+public class AirportCatalogBuilder {
+
+    /**
+     * Read the airports of a CSV stream.
+     *
+     * @param input airports.dat content
+     * @param failures Receives a description of each rejected row
+     * @return The valid airports, one per IATA code
+     */
+    public static List<AirportData> read(InputStream input, List<String> failures) throws IOException {
+
+        Map<String, AirportData> airports = new LinkedHashMap<>();
+
+        CsvReader reader = new CsvReader(input, Charset.forName("UTF-8"));
+        reader.setDelimiter(',');
+        reader.setRecordDelimiter('\n');
+
+        int row = 0;
+        while ( reader.readRecord() ) {
+            row++;
+            AirportRecord record = AirportLoader.parse(reader.getValues());
+            try {
+                AirportData ad = ValidationUtility.isAnAirport(record.getIata(), record.getLatitude(), record.getLongitude());
+                airports.putIfAbsent(ad.getIata(), ad);
+            } catch (WeatherException e) {
+                failures.add("row " + row + ": " + e.getMessage());
+            }
+        }
+
+        return new ArrayList<>(airports.values());
+
+    }
+
+    public static void main(String args[]) throws IOException {
+        if (args.length != 2) {
+            System.err.println("usage: AirportCatalogBuilder <airports.dat> <catalog file>");
+            System.exit(1);
+        }
+        File airportDataFile = new File(args[0]);
+        if (!airportDataFile.exists() || airportDataFile.length() == 0) {
+            System.err.println(airportDataFile + " is not a valid input");
+            System.exit(1);
+        }
+        long start = System.currentTimeMillis();
+        List<String> failures = new ArrayList<>();
+        List<AirportData> airports;
+        try (InputStream input = new FileInputStream(airportDataFile)) {
+            airports = read(input, failures);
+        }
+        File catalog = new File(args[1]);
+        AirportCatalog.write(airports, catalog, Double.parseDouble(System.getProperty("weather.catalog.cellSize", "1")));
+        failures.forEach(System.err::println);
+        System.out.println(String.format("Wrote %d airports (%d bytes) to %s, %d rows skipped, in %d ms",
+                airports.size(), catalog.length(), catalog, failures.size(), System.currentTimeMillis() - start));
+    }
+
+}
@@ -5,19 +5,43 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
 import org.apache.commons.lang3.StringUtils;
 
+import com.crossover.trial.weather.model.AirportRecord;
+import com.crossover.trial.weather.model.RecordStatus;
+import com.crossover.trial.weather.utility.ValidationUtility;
 import com.csvreader.CsvReader;
 
 /**
- * A simple airport loader which reads a file from disk and sends entries to the webservice
+ * A simple airport loader which reads a file from disk and sends entries to the webservice.
+ *
+ * The file is streamed in chunks that are registered through the bulk airport endpoint,
+ * several chunks at a time. A failed row does not stop the upload: failures are collected
+ * and reported at the end together with the throughput.
+ *
+ * Settings are read from system properties:
+ * <ul>
+ * <li>weather.loader.url: base url of the service (default http://localhost:9090)</li>
+ * <li>weather.loader.chunkSize: rows sent in a single request (default 500)</li>
+ * <li>weather.loader.parallelism: requests in flight at the same time (default 4)</li>
+ * </ul>
  *
  * @author code test administrator
  */
@@ -26,83 +50,213 @@ public class AirportLoader {
     /** end point to supply updates */
     private WebTarget collect;
 
-    /** end point for read queries */
-    private WebTarget query;
+    /** rows sent in a single request */
+    private final int chunkSize;
 
-    public AirportLoader() {
+    /** requests in flight at the same time */
+    private final int parallelism;
+
+    public AirportLoader(String baseUrl, int chunkSize, int parallelism) {
         Client client = ClientBuilder.newClient();
-        collect = client.target("http://localhost:8080/collect");
-        query = client.target("http://localhost:8080/query");
+        this.collect = client.target(baseUrl + "/collect");
+        this.chunkSize = chunkSize;
+        this.parallelism = parallelism;
     }
 
-    public void upload(InputStream airportDataStream) throws IOException {
-    	
-		CsvReader reader = new CsvReader(airportDataStream, Charset.forName("UTF-8"));
-		reader.setDelimiter(',');
-		reader.setRecordDelimiter('\n');
-		
-		while ( reader.readRecord() ) {
-			
-			String[] values = reader.getValues();
-			
-			// String index = get(values, 0);
-
-			// Main city served by airport. May be spelled differently from name.
-			// String description = get(values, 1);
-
-			// Main city served by airport. May be spelled differently from name.
-			// String city = get(values, 2);
-			
-			// Country or territory where airport is located.
-			// String country = get(values, 3);
-			
-			// 3-letter FAA code or IATA code (blank or "" if not assigned)
-			String iata = StringUtils.stripToEmpty(get(values, 4));
-			
-			// 4-letter ICAO code (blank or "" if not assigned)
-			// String icao = StringUtils.stripToEmpty(get(values, 5));
-			
-			// Decimal degrees, up to 6 significant digits. Negative is South, positive is North.
-			String latitude = get(values, 6);
-			
-			// Decimal degrees, up to 6 significant digits. Negative is West, positive is East.
-			String longitude = get(values, 7);
-			
-			// In feet
-			// String altitude = get(values, 8);
-			
-			// Hours offset from UTC. Fractional hours are expressed as decimals. (e.g. India is 5.5)
-			// String timezone = get(values, 9);
-			
-			// One of E (Europe), A (US/Canada), S (South America), O (Australia), Z (New Zealand), N (None) or U (Unknown) 
-			// String dst = get(values, 10);
-
-	        WebTarget path = collect.path("/airport/" + iata + "/" + latitude + "/" + longitude);
-	        Response post = path.request().post(Entity.entity("", "application/json"));
-	        if ( post.getStatus() != Response.Status.OK.getStatusCode() ) {
-	        	System.out.println("Error in saving airport: " + post.getEntity().toString());
-	        	break;
-	        }
+    /**
+     * Outcome of an upload
+     */
+    public static class Report {
+
+        /** rows registered */
+        private final int loaded;
+
+        /** description of each failed row */
+        private final List<String> failures;
+
+        /** elapsed time of the upload in milliseconds */
+        private final long elapsedMillis;
+
+        Report(int loaded, List<String> failures, long elapsedMillis) {
+            this.loaded = loaded;
+            this.failures = failures;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public int getLoaded() {
+            return loaded;
+        }
+
+        public List<String> getFailures() {
+            return failures;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        public double getRowsPerSecond() {
+            return (loaded + failures.size()) * 1000.0 / Math.max(1, elapsedMillis);
+        }
 
-		}
-				
     }
 
-	private String get(String[] list, int index) {
+    public Report upload(InputStream airportDataStream) throws IOException, InterruptedException {
+
+        long start = System.currentTimeMillis();
+
+        AtomicInteger loaded = new AtomicInteger();
+        Queue<String> failures = new ConcurrentLinkedQueue<>();
+
+        // bounds the chunks read but not sent yet
+        Semaphore inFlight = new Semaphore(parallelism * 2);
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+
+        try {
+
+            CsvReader reader = new CsvReader(airportDataStream, Charset.forName("UTF-8"));
+            reader.setDelimiter(',');
+            reader.setRecordDelimiter('\n');
+
+            int row = 0;
+            int firstRow = 1;
+            List<AirportRecord> chunk = new ArrayList<>(chunkSize);
+
+            while ( reader.readRecord() ) {
+
+                row++;
+                chunk.add(parse(reader.getValues()));
+
+                if ( chunk.size() == chunkSize ) {
+                    submit(executor, inFlight, chunk, firstRow, loaded, failures);
+                    chunk = new ArrayList<>(chunkSize);
+                    firstRow = row + 1;
+                }
+
+            }
+
+            if ( !chunk.isEmpty() ) {
+                submit(executor, inFlight, chunk, firstRow, loaded, failures);
+            }
+
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        }
+
+        return new Report(loaded.get(), new ArrayList<>(failures), System.currentTimeMillis() - start);
+
+    }
+
+    /**
+     * Send a chunk in background, waiting if too many chunks are pending.
+     */
+    private void submit(ExecutorService executor, Semaphore inFlight, List<AirportRecord> chunk, int firstRow,
+            AtomicInteger loaded, Queue<String> failures) throws InterruptedException {
+        inFlight.acquire();
+        executor.execute(() -> {
+            try {
+                send(chunk, firstRow, loaded, failures);
+            } finally {
+                inFlight.release();
+            }
+        });
+    }
+
+    /**
+     * Register a chunk of airports and record the outcome of each row.
+     */
+    private void send(List<AirportRecord> chunk, int firstRow, AtomicInteger loaded, Queue<String> failures) {
+        try {
+            Response post = collect.path("/airports").request()
+                    .post(Entity.entity(ValidationUtility.gson.toJson(chunk), MediaType.APPLICATION_JSON));
+            String body = post.readEntity(String.class);
+            if ( post.getStatus() != Response.Status.OK.getStatusCode() ) {
+                for ( int i = 0; i < chunk.size(); i++ ) {
+                    failures.add("row " + (firstRow + i) + ": " + body);
+                }
+                return;
+            }
+            RecordStatus[] statuses = ValidationUtility.gson.fromJson(body, RecordStatus[].class);
+            for ( int i = 0; i < statuses.length; i++ ) {
+                if ( statuses[i].getStatus() == Response.Status.OK.getStatusCode() ) {
+                    loaded.incrementAndGet();
+                } else {
+                    failures.add("row " + (firstRow + i) + " (" + chunk.get(i).getIata() + "): " + statuses[i].getMessage());
+                }
+            }
+        } catch ( RuntimeException e ) {
+            for ( int i = 0; i < chunk.size(); i++ ) {
+                failures.add("row " + (firstRow + i) + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Extract the fields used by the service from a row of airports.dat
+     */
+    static AirportRecord parse(String[] values) {
+
+        // String index = get(values, 0);
+
+        // Main city served by airport. May be spelled differently from name.
+        // String description = get(values, 1);
+
+        // Main city served by airport. May be spelled differently from name.
+        // String city = get(values, 2);
+
+        // Country or territory where airport is located.
+        // String country = get(values, 3);
+
+        // 3-letter FAA code or IATA code (blank or "" if not assigned)
+        String iata = StringUtils.stripToEmpty(get(values, 4));
+
+        // 4-letter ICAO code (blank or "" if not assigned)
+        // String icao = StringUtils.stripToEmpty(get(values, 5));
+
+        // Decimal degrees, up to 6 significant digits. Negative is South, positive is North.
+        String latitude = get(values, 6);
+
+        // Decimal degrees, up to 6 significant digits. Negative is West, positive is East.
+        String longitude = get(values, 7);
+
+        // In feet
+        // String altitude = get(values, 8);
+
+        // Hours offset from UTC. Fractional hours are expressed as decimals. (e.g. India is 5.5)
+        // String timezone = get(values, 9);
+
+        // One of E (Europe), A (US/Canada), S (South America), O (Australia), Z (New Zealand), N (None) or U (Unknown)
+        // String dst = get(values, 10);
+
+        return new AirportRecord(iata, latitude, longitude);
+
+    }
+
+	private static String get(String[] list, int index) {
 		if ( index >= list.length ) {
 			return null;
 		}
 		return StringUtils.stripToNull(list[index]);
 	}
 
-    public static void main(String args[]) throws IOException {
+    public static void main(String args[]) throws IOException, InterruptedException {
         File airportDataFile = new File(args[0]);
         if (!airportDataFile.exists() || airportDataFile.length() == 0) {
             System.err.println(airportDataFile + " is not a valid input");
             System.exit(1);
         }
-        AirportLoader al = new AirportLoader();
-        al.upload(new FileInputStream(airportDataFile));
-        System.exit(0);
+        AirportLoader al = new AirportLoader(
+                System.getProperty("weather.loader.url", "http://localhost:9090"),
+                Integer.getInteger("weather.loader.chunkSize", 500),
+                Integer.getInteger("weather.loader.parallelism", 4));
+        Report report;
+        try (InputStream input = new FileInputStream(airportDataFile)) {
+            report = al.upload(input);
+        }
+        report.getFailures().forEach(System.err::println);
+        System.out.println(String.format("Loaded %d airports, %d failed rows, in %d ms (%.0f rows/s)",
+                report.getLoaded(), report.getFailures().size(), report.getElapsedMillis(), report.getRowsPerSecond()));
+        System.exit(report.getFailures().isEmpty() ? 0 : 2);
     }
 }
@@ -4,8 +4,12 @@ import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
+import org.glassfish.jersey.client.filter.EncodingFilter;
+import org.glassfish.jersey.message.GZipEncoder;
+
 import com.crossover.trial.weather.model.DataPoint;
 import com.crossover.trial.weather.model.Repository;
 
@@ -14,6 +18,8 @@ import com.crossover.trial.weather.model.Repository;
  * to understand API semantics. This existing client populates the REST endpoint with dummy data useful for
  * testing.
  *
+ * {@link WeatherLoadGenerator} uses it to reproduce production traffic.
+ *
  * @author code test administrator
  */
 public class WeatherClient {
@@ -27,9 +33,27 @@ public class WeatherClient {
     private WebTarget collect;
 
     public WeatherClient() {
+        this(BASE_URI);
+    }
+
+    /**
+     * @param baseUri base url of the service, e.g. http://localhost:9090
+     */
+    public WeatherClient(String baseUri) {
+        this(baseUri, false);
+    }
+
+    /**
+     * @param baseUri base url of the service, e.g. http://localhost:9090
+     * @param compressed ask for gzip compressed answers
+     */
+    public WeatherClient(String baseUri, boolean compressed) {
         Client client = ClientBuilder.newClient();
-        query = client.target(BASE_URI + "/query");
-        collect = client.target(BASE_URI + "/collect");
+        if ( compressed ) {
+            client.register(EncodingFilter.class).register(GZipEncoder.class);
+        }
+        query = client.target(baseUri + "/query");
+        collect = client.target(baseUri + "/collect");
     }
 
     public void pingCollect() {
@@ -67,6 +91,34 @@ public class WeatherClient {
         dump(post, path);
     }
 
+    /**
+     * Query the weather around an airport, discarding the answer.
+     *
+     * @return HTTP status code
+     */
+    public int weather(String iata, String radius) {
+        return status(query.path("/weather/" + iata + "/" + radius).request().get());
+    }
+
+    /**
+     * Send a data point already formatted as json.
+     *
+     * @return HTTP status code
+     */
+    public int update(String iata, String pointType, String datapointJson) {
+        return status(collect.path("/weather/" + iata + "/" + pointType).request()
+                .post(Entity.entity(datapointJson, MediaType.APPLICATION_JSON)));
+    }
+
+    /**
+     * Ping the query endpoint, discarding the answer.
+     *
+     * @return HTTP status code
+     */
+    public int ping() {
+        return status(query.path("/ping").request().get());
+    }
+
     public void exit() {
         try {
             collect.path("/exit").request().get();
@@ -75,6 +127,18 @@ public class WeatherClient {
         }
     }
     
+    /**
+     * Read the whole answer, so the connection can be reused, and close it.
+     */
+    private int status(Response response) {
+        try {
+            response.readEntity(String.class);
+            return response.getStatus();
+        } finally {
+            response.close();
+        }
+    }
+
     private void dump(Response response, WebTarget path) {
         System.out.println(path.getUri() + ": (" + response.getStatusInfo() + ") - " + response.readEntity(String.class));
     }
@@ -0,0 +1,359 @@
+package com.crossover.trial.weather;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import com.crossover.trial.weather.model.AirportData;
+import com.crossover.trial.weather.model.DataPoint;
+import com.crossover.trial.weather.model.DataPointType;
+import com.crossover.trial.weather.utility.ValidationUtility;
+
+/**
+ * Open loop load generator for a running {@link WeatherServer}, built on {@link WeatherClient}.
+ *
+ * Requests are scheduled at a fixed rate whatever the response times, and the latency of each one is
+ * measured from the time it was scheduled: a slow server makes requests queue and shows up in the
+ * percentiles instead of silently lowering the load. Airports are sampled from airports.dat (the first
+ * argument, or the copy on the classpath) and radii from a configured list.
+ *
+ * Settings are read from system properties:
+ * <ul>
+ * <li>weather.load.url: base url of the service (default http://localhost:9090)</li>
+ * <li>weather.load.rate: requests per second (default 200)</li>
+ * <li>weather.load.seconds: duration of the measurement (default 30)</li>
+ * <li>weather.load.warmupSeconds: load sent before measuring (default 5)</li>
+ * <li>weather.load.threads: requests in flight at most (default 64)</li>
+ * <li>weather.load.mix: weight of each request type (default query=80,collect=18,ping=2)</li>
+ * <li>weather.load.radii: radii sampled by queries, in km (default 0,0,0,50,200,1000)</li>
+ * <li>weather.load.register: register the airports before starting (default true)</li>
+ * <li>weather.load.compression: ask for gzip compressed answers (default false)</li>
+ * </ul>
+ *
+ * @author Michele Mastrogiovanni
+ */
+public class WeatherLoadGenerator {
+
+    /**
+     * Kinds of request sent
+     */
+    enum RequestType {
+        QUERY, COLLECT, PING
+    }
+
+    /** payloads prepared for each data point type */
+    private static final int PAYLOADS = 16;
+
+    private final WeatherClient client;
+
+    private final List<String> iatas;
+
+    private final String[] radii;
+
+    private final RequestType[] mix;
+
+    private final Map<DataPointType, String[]> payloads = new EnumMap<>(DataPointType.class);
+
+    private final Map<RequestType, Histogram> latencies = new EnumMap<>(RequestType.class);
+
+    private final Map<RequestType, LongAdder> errors = new EnumMap<>(RequestType.class);
+
+    /**
+     * @param client Client of the service
+     * @param iatas Airports to sample
+     * @param radii Radii to sample
+     * @param mix Request types with their weights, e.g. query=80,collect=20
+     */
+    public WeatherLoadGenerator(WeatherClient client, List<String> iatas, String[] radii, String mix) {
+        this.client = client;
+        this.iatas = iatas;
+        this.radii = radii;
+        this.mix = parseMix(mix);
+        for (RequestType type : RequestType.values()) {
+            latencies.put(type, new Histogram());
+            errors.put(type, new LongAdder());
+        }
+        Random random = new Random(1);
+        for (DataPointType type : DataPointType.values()) {
+            String[] json = new String[PAYLOADS];
+            for (int i = 0; i < PAYLOADS; i++) {
+                json[i] = ValidationUtility.gson.toJson(randomDataPoint(type, random));
+            }
+            payloads.put(type, json);
+        }
+    }
+
+    /**
+     * Send requests at a fixed rate, recording only the ones scheduled after the warm up.
+     *
+     * @param rate Requests per second
+     * @param warmupSeconds Duration of the warm up
+     * @param seconds Duration of the measurement
+     * @param threads Requests in flight at most
+     */
+    public void run(double rate, int warmupSeconds, int seconds, int threads) throws InterruptedException {
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        Random random = new Random();
+
+        long start = System.nanoTime();
+        long measureStart = start + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        long end = measureStart + TimeUnit.SECONDS.toNanos(seconds);
+
+        for (long i = 0;; i++) {
+            long scheduled = start + (long) (i * 1e9 / rate);
+            if ( scheduled >= end ) {
+                break;
+            }
+            long wait = scheduled - System.nanoTime();
+            if ( wait > 0 ) {
+                LockSupport.parkNanos(wait);
+            }
+            RequestType type = mix[random.nextInt(mix.length)];
+            boolean measured = scheduled >= measureStart;
+            executor.execute(() -> {
+                boolean ok;
+                try {
+                    int status = send(type);
+                    ok = status >= 200 && status < 300;
+                } catch (RuntimeException e) {
+                    ok = false;
+                }
+                if ( measured ) {
+                    latencies.get(type).record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - scheduled));
+                    if ( !ok ) {
+                        errors.get(type).increment();
+                    }
+                }
+            });
+        }
+
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+
+    }
+
+    /**
+     * Print throughput and latency percentiles of each request type.
+     *
+     * @param seconds Duration of the measurement
+     */
+    public void report(int seconds) {
+        Histogram total = new Histogram();
+        long totalErrors = 0;
+        System.out.println(String.format("%-8s %10s %8s %10s %10s %10s %10s %10s", "type", "requests", "errors",
+                "req/s", "p50 ms", "p99 ms", "p999 ms", "max ms"));
+        for (RequestType type : RequestType.values()) {
+            Histogram histogram = latencies.get(type);
+            if ( histogram.count() == 0 ) {
+                continue;
+            }
+            print(type.name().toLowerCase(), histogram, errors.get(type).sum(), seconds);
+            total.add(histogram);
+            totalErrors += errors.get(type).sum();
+        }
+        print("total", total, totalErrors, seconds);
+    }
+
+    private static void print(String name, Histogram histogram, long errors, int seconds) {
+        System.out.println(String.format("%-8s %10d %8d %10.1f %10.2f %10.2f %10.2f %10.2f", name, histogram.count(), errors,
+                (double) histogram.count() / seconds, histogram.percentile(0.5) / 1000.0,
+                histogram.percentile(0.99) / 1000.0, histogram.percentile(0.999) / 1000.0, histogram.max() / 1000.0));
+    }
+
+    private int send(RequestType type) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String iata = iatas.get(random.nextInt(iatas.size()));
+        switch (type) {
+        case QUERY:
+            return client.weather(iata, radii[random.nextInt(radii.length)]);
+        case COLLECT:
+            DataPointType pointType = DataPointType.values()[random.nextInt(DataPointType.values().length)];
+            return client.update(iata, pointType.name().toLowerCase(), payloads.get(pointType)[random.nextInt(PAYLOADS)]);
+        default:
+            return client.ping();
+        }
+    }
+
+    /**
+     * @return A data point in the accepted range of its type
+     */
+    private static DataPoint randomDataPoint(DataPointType type, Random random) {
+        double low;
+        double high;
+        switch (type) {
+        case PRESSURE:
+            low = 650;
+            high = 800;
+            break;
+        case TEMPERATURE:
+            low = -50;
+            high = 100;
+            break;
+        default:
+            low = 0;
+            high = 100;
+        }
+        int first = (int) (low + random.nextDouble() * (high - low) / 2);
+        int median = first + (int) ((high - first) / 4);
+        int last = median + (int) ((high - median) / 4);
+        return new DataPoint.Builder().withFirst(first).withMedian(median).withLast(last).withMean(median)
+                .withCount(1 + random.nextInt(100)).build();
+    }
+
+    /**
+     * @return Request types repeated as many times as their weight
+     */
+    private static RequestType[] parseMix(String mix) {
+        List<RequestType> result = new ArrayList<>();
+        for (String entry : mix.split(",")) {
+            String[] pair = entry.trim().split("=");
+            RequestType type = RequestType.valueOf(pair[0].trim().toUpperCase());
+            for (int i = Integer.parseInt(pair[1].trim()); i > 0; i--) {
+                result.add(type);
+            }
+        }
+        if ( result.isEmpty() ) {
+            throw new IllegalArgumentException("the traffic mix has no request");
+        }
+        return result.toArray(new RequestType[result.size()]);
+    }
+
+    /**
+     * Lock free histogram of positive values with a precision of 1%: values
+     * are counted in 128 linear sub-buckets for each power of two.
+     */
+    static class Histogram {
+
+        private static final int SUB_BITS = 7;
+
+        private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+        private final AtomicLongArray counts = new AtomicLongArray((64 - SUB_BITS) * SUB_BUCKETS);
+
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        void record(long value) {
+            counts.incrementAndGet(index(Math.max(0, value)));
+            max.accumulate(value);
+        }
+
+        void add(Histogram other) {
+            for (int i = 0; i < counts.length(); i++) {
+                counts.addAndGet(i, other.counts.get(i));
+            }
+            max.accumulate(other.max());
+        }
+
+        long count() {
+            long count = 0;
+            for (int i = 0; i < counts.length(); i++) {
+                count += counts.get(i);
+            }
+            return count;
+        }
+
+        long max() {
+            return max.get();
+        }
+
+        /**
+         * @param quantile Quantile in [0, 1]
+         * @return Lowest value of the bucket holding the quantile
+         */
+        long percentile(double quantile) {
+            long rank = Math.max(1, (long) Math.ceil(quantile * count()));
+            long seen = 0;
+            for (int i = 0; i < counts.length(); i++) {
+                seen += counts.get(i);
+                if ( seen >= rank ) {
+                    return valueOf(i);
+                }
+            }
+            return 0;
+        }
+
+        private static int index(long value) {
+            if ( value < SUB_BUCKETS ) {
+                return (int) value;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            int sub = (int) (value >>> (exponent - SUB_BITS)) - SUB_BUCKETS;
+            return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+        }
+
+        private static long valueOf(int index) {
+            if ( index < SUB_BUCKETS ) {
+                return index;
+            }
+            int exponent = index / SUB_BUCKETS + SUB_BITS - 1;
+            return (long) (SUB_BUCKETS + index % SUB_BUCKETS) << (exponent - SUB_BITS);
+        }
+
+    }
+
+    public static void main(String args[]) throws IOException, InterruptedException {
+
+        String baseUrl = System.getProperty("weather.load.url", "http://localhost:9090");
+        double rate = Double.parseDouble(System.getProperty("weather.load.rate", "200"));
+        int seconds = Integer.getInteger("weather.load.seconds", 30);
+        int warmupSeconds = Integer.getInteger("weather.load.warmupSeconds", 5);
+        int threads = Integer.getInteger("weather.load.threads", 64);
+        String mix = System.getProperty("weather.load.mix", "query=80,collect=18,ping=2");
+        String[] radii = System.getProperty("weather.load.radii", "0,0,0,50,200,1000").split(",");
+
+        List<AirportData> airports;
+        try (InputStream input = openAirports(args)) {
+            airports = AirportCatalogBuilder.read(input, new ArrayList<>());
+        }
+        if ( airports.isEmpty() ) {
+            System.err.println("no airport to sample");
+            System.exit(1);
+        }
+
+        if ( Boolean.parseBoolean(System.getProperty("weather.load.register", "true")) ) {
+            try (InputStream input = openAirports(args)) {
+                AirportLoader.Report report = new AirportLoader(baseUrl, 500, 4).upload(input);
+                System.out.println(String.format("Registered %d airports", report.getLoaded()));
+            }
+        }
+
+        List<String> iatas = new ArrayList<>();
+        airports.forEach(airport -> iatas.add(airport.getIata()));
+
+        boolean compressed = Boolean.getBoolean("weather.load.compression");
+        WeatherLoadGenerator generator = new WeatherLoadGenerator(new WeatherClient(baseUrl, compressed), iatas, radii, mix);
+        System.out.println(String.format("Sending %.0f req/s to %s for %d s after %d s of warm up, %d airports",
+                rate, baseUrl, seconds, warmupSeconds, iatas.size()));
+        generator.run(rate, warmupSeconds, seconds, threads);
+        generator.report(seconds);
+        System.exit(0);
+
+    }
+
+    private static InputStream openAirports(String[] args) throws IOException {
+        if ( args.length > 0 ) {
+            return new FileInputStream(new File(args[0]));
+        }
+        InputStream input = WeatherLoadGenerator.class.getResourceAsStream("/airports.dat");
+        if ( input == null ) {
+            throw new IOException("airports.dat not found on the classpath");
+        }
+        return input;
+    }
+
+}
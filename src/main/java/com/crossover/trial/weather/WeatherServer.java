@@ -2,33 +2,52 @@ package com.crossover.trial.weather;
 
 import static java.lang.String.format;
 
+import java.io.File;
 import java.io.IOException;
-import java.net.URI;
+import java.util.concurrent.ExecutorService;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import org.glassfish.grizzly.Connection;
 import org.glassfish.grizzly.http.server.HttpServer;
-import org.glassfish.grizzly.http.server.HttpServerFilter;
-import org.glassfish.grizzly.http.server.HttpServerProbe;
-import org.glassfish.grizzly.http.server.Request;
-import org.glassfish.jersey.grizzly2.httpserver.GrizzlyHttpServerFactory;
+import org.glassfish.grizzly.http.server.NetworkListener;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransport;
+import org.glassfish.grizzly.threadpool.ThreadPoolConfig;
+import org.glassfish.jersey.grizzly2.httpserver.GrizzlyHttpContainer;
+import org.glassfish.jersey.grizzly2.httpserver.GrizzlyHttpContainerProvider;
 import org.glassfish.jersey.server.ResourceConfig;
 
+import com.crossover.trial.weather.cache.CachedWeatherWriter;
+import com.crossover.trial.weather.catalog.AirportCatalog;
+import com.crossover.trial.weather.model.Repository;
+import com.crossover.trial.weather.persistence.PersistenceManager;
+import com.crossover.trial.weather.server.impl.AccessLog;
+import com.crossover.trial.weather.server.impl.CompressionInterceptor;
+import com.crossover.trial.weather.server.impl.PooledHttpHandler;
 import com.crossover.trial.weather.server.impl.RestWeatherCollectorEndpoint;
 import com.crossover.trial.weather.server.impl.RestWeatherQueryEndpoint;
+import com.crossover.trial.weather.server.impl.VirtualThreadExecutor;
 
 
 /**
  * A main method used to test the Weather Application. You are free to modify this main method
  * as you wish - it's in not used by the grader.
  *
+ * Setting the weather.data.dir system property enables persistence: the repository is recovered
+ * from that directory at startup and every change is logged there. weather.wal.syncMillis (default 50)
+ * and weather.snapshot.seconds (default 300) tune how often the log is forced to disk and how often
+ * a snapshot is taken.
+ *
+ * Setting the weather.catalog system property to a file written by {@link AirportCatalogBuilder}
+ * maps that catalog in memory as the initial set of airports. When persistence is enabled too,
+ * snapshot and log only hold the changes made on top of the catalog, which stays mapped after a restart.
+ *
+ * The address, the threads and the access log of the server are set with the weather.server.*
+ * system properties described in {@link WeatherServerConfig}.
+ *
  * @author code test administrator
  */
 public class WeatherServer {
 
-    private static final String BASE_URL = "http://localhost:9090/";
-    
     public interface Handler {
     	void launched();
     }
@@ -39,29 +58,30 @@ public class WeatherServer {
 
 	public static void start(Handler handler) {
 		try {
-            System.out.println("Starting Weather App local testing server: " + BASE_URL);
+            final WeatherServerConfig config = WeatherServerConfig.fromSystemProperties();
+            System.out.println("Starting Weather App local testing server: " + config.getBaseUri());
             System.out.println("Not for production use");
 
-            final ResourceConfig resourceConfig = new ResourceConfig();
-            resourceConfig.register(RestWeatherCollectorEndpoint.class);
-            resourceConfig.register(RestWeatherQueryEndpoint.class);
-            final HttpServer server = GrizzlyHttpServerFactory.createHttpServer(URI.create(BASE_URL), resourceConfig, false);
+            loadCatalog();
+            final PersistenceManager persistence = startPersistence();
+
+            final HttpServer server = createServer(config);
 
             Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
                 @Override
                 public void run() {
                     server.shutdownNow();
+                    if ( persistence != null ) {
+                        try {
+                            persistence.close();
+                        } catch (IOException e) {
+                            Logger.getLogger(WeatherServer.class.getName()).log(Level.SEVERE, "Cannot close persistence", e);
+                        }
+                    }
                 }
             }));
 
-            HttpServerProbe probe = new HttpServerProbe.Adapter() {
-                public void onRequestReceiveEvent(HttpServerFilter filter, Connection connection, Request request) {
-                    System.out.println(request.getRequestURI());
-                }
-            };
-
-            server.getServerConfiguration().getMonitoringConfig().getWebServerConfig().addProbes(probe);
-            System.out.println(format("Weather Server started.\n url=%s\n", BASE_URL));
+            System.out.println(format("Weather Server started.\n url=%s\n", config.getBaseUri()));
             server.start();
             
             if ( handler != null ) {
@@ -75,4 +95,78 @@ public class WeatherServer {
             Logger.getLogger(WeatherServer.class.getName()).log(Level.SEVERE, null, ex);
         }
 	}
+
+	/**
+	 * Build a server for the application: the transport threads only parse requests, which are then
+	 * served by separate pools for the query and the collect endpoints, or by virtual threads.
+	 */
+	static HttpServer createServer(WeatherServerConfig config) {
+		ResourceConfig resourceConfig = new ResourceConfig();
+		resourceConfig.register(RestWeatherCollectorEndpoint.class);
+		resourceConfig.register(RestWeatherQueryEndpoint.class);
+		resourceConfig.register(CachedWeatherWriter.class);
+		if ( config.isCompression() ) {
+			resourceConfig.register(new CompressionInterceptor(config.getCompressionMinSize(), config.getCompressionLevel()));
+		}
+
+		NetworkListener listener = new NetworkListener("weather", config.getHost(), config.getPort());
+		TCPNIOTransport transport = listener.getTransport();
+		transport.setSelectorRunnersCount(config.getSelectors());
+		transport.setWorkerThreadPoolConfig(ThreadPoolConfig.defaultConfig()
+				.setPoolName("weather-worker")
+				.setCorePoolSize(config.getWorkers())
+				.setMaxPoolSize(config.getWorkers()));
+		listener.getKeepAlive().setIdleTimeoutInSeconds(config.getKeepAliveSeconds());
+		listener.getKeepAlive().setMaxRequestsCount(config.getKeepAliveRequests());
+
+		GrizzlyHttpContainer container = new GrizzlyHttpContainerProvider().createContainer(GrizzlyHttpContainer.class, resourceConfig);
+		ExecutorService queryPool;
+		ExecutorService collectPool;
+		if ( config.isVirtualThreads() ) {
+			queryPool = new VirtualThreadExecutor("weather-query", config.getMaxRequests());
+			collectPool = new VirtualThreadExecutor("weather-collect", config.getMaxRequests());
+			System.out.println("Serving requests on virtual threads");
+		} else {
+			queryPool = PooledHttpHandler.createPool("weather-query", config.getQueryThreads(), config.getQueueLimit());
+			collectPool = PooledHttpHandler.createPool("weather-collect", config.getCollectThreads(), config.getQueueLimit());
+		}
+		PooledHttpHandler handler = new PooledHttpHandler(container, queryPool, collectPool,
+				new AccessLog(config.getAccessLogSample()));
+
+		HttpServer server = new HttpServer();
+		server.addListener(listener);
+		server.getServerConfiguration().addHttpHandler(handler, "/");
+		return server;
+	}
+
+	/**
+	 * Map the airport catalog, if configured.
+	 */
+	private static void loadCatalog() throws IOException {
+		String catalogFile = System.getProperty("weather.catalog");
+		if ( catalogFile == null ) {
+			return;
+		}
+		long start = System.currentTimeMillis();
+		AirportCatalog catalog = AirportCatalog.map(new File(catalogFile));
+		Repository.getInstance().setCatalog(catalog);
+		System.out.println(format("Mapped %d airports from %s in %d ms", catalog.size(), catalogFile, System.currentTimeMillis() - start));
+	}
+
+	/**
+	 * Recover the repository and start logging its changes, if a data directory is configured.
+	 *
+	 * @return The running persistence, null if disabled
+	 */
+	private static PersistenceManager startPersistence() throws IOException {
+		String dataDir = System.getProperty("weather.data.dir");
+		if ( dataDir == null ) {
+			return null;
+		}
+		PersistenceManager persistence = new PersistenceManager(new File(dataDir),
+				Long.getLong("weather.wal.syncMillis", 50), Long.getLong("weather.snapshot.seconds", 300));
+		persistence.start(Repository.getInstance());
+		System.out.println("Persistence enabled in " + dataDir);
+		return persistence;
+	}
 }
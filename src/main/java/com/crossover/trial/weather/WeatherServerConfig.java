@@ -0,0 +1,167 @@
+package com.crossover.trial.weather;
+
+import java.net.URI;
+
+import com.crossover.trial.weather.server.impl.VirtualThreadExecutor;
+
+/**
+ * Settings of the HTTP server, read from weather.server.* system properties:
+ *
+ * <ul>
+ * <li>host, port: address to listen on (localhost, 9090)</li>
+ * <li>selectors: threads accepting and reading connections (number of cores)</li>
+ * <li>workers: threads parsing HTTP requests before they are handed to a pool (number of cores)</li>
+ * <li>queryThreads, collectThreads: threads serving the /query and the /collect endpoints
+ * (twice the number of cores, number of cores)</li>
+ * <li>queueLimit: requests waiting for each pool, 0 for none, -1 for no limit (1000); past it a request
+ * gets 503 Service Unavailable</li>
+ * <li>keepAliveSeconds, keepAliveRequests: idle time and number of requests after which a
+ * persistent connection is closed, -1 for no limit (30, 256)</li>
+ * <li>accessLogSample: log one request every so many, 0 to disable the access log (100)</li>
+ * <li>compression: compress the responses of clients accepting gzip or deflate (true)</li>
+ * <li>compressionMinSize: smallest response compressed, in bytes (1024)</li>
+ * <li>compressionLevel: from 1, fastest, to 9, smallest (6)</li>
+ * <li>virtualThreads: serve each request on its own virtual thread instead of the query and
+ * collect pools, needs Java 21 (false)</li>
+ * <li>maxRequests: with virtual threads, requests running at once on each endpoint; past it a
+ * request gets 503 Service Unavailable (10000)</li>
+ * </ul>
+ *
+ * @author Michele Mastrogiovanni
+ */
+public class WeatherServerConfig {
+
+    static final String PREFIX = "weather.server.";
+
+    private static final int CORES = Runtime.getRuntime().availableProcessors();
+
+    private final String host;
+
+    private final int port;
+
+    private final int selectors;
+
+    private final int workers;
+
+    private final int queryThreads;
+
+    private final int collectThreads;
+
+    private final int queueLimit;
+
+    private final int keepAliveSeconds;
+
+    private final int keepAliveRequests;
+
+    private final int accessLogSample;
+
+    private final boolean compression;
+
+    private final int compressionMinSize;
+
+    private final int compressionLevel;
+
+    private final boolean virtualThreads;
+
+    private final int maxRequests;
+
+    private WeatherServerConfig() {
+        host = System.getProperty(PREFIX + "host", "localhost");
+        port = Integer.getInteger(PREFIX + "port", 9090);
+        selectors = Integer.getInteger(PREFIX + "selectors", CORES);
+        workers = Integer.getInteger(PREFIX + "workers", CORES);
+        queryThreads = Integer.getInteger(PREFIX + "queryThreads", 2 * CORES);
+        collectThreads = Integer.getInteger(PREFIX + "collectThreads", CORES);
+        queueLimit = Integer.getInteger(PREFIX + "queueLimit", 1000);
+        keepAliveSeconds = Integer.getInteger(PREFIX + "keepAliveSeconds", 30);
+        keepAliveRequests = Integer.getInteger(PREFIX + "keepAliveRequests", 256);
+        accessLogSample = Integer.getInteger(PREFIX + "accessLogSample", 100);
+        compression = Boolean.parseBoolean(System.getProperty(PREFIX + "compression", "true"));
+        compressionMinSize = Integer.getInteger(PREFIX + "compressionMinSize", 1024);
+        compressionLevel = Integer.getInteger(PREFIX + "compressionLevel", 6);
+        virtualThreads = Boolean.getBoolean(PREFIX + "virtualThreads");
+        maxRequests = Integer.getInteger(PREFIX + "maxRequests", 10000);
+        if (selectors < 1 || workers < 1 || queryThreads < 1 || collectThreads < 1 || maxRequests < 1) {
+            throw new IllegalArgumentException("server thread counts must be positive");
+        }
+        if (virtualThreads && !VirtualThreadExecutor.isSupported()) {
+            throw new IllegalStateException(PREFIX + "virtualThreads needs Java 21 or later, running on Java "
+                    + System.getProperty("java.version"));
+        }
+    }
+
+    /**
+     * @return Settings from the current system properties
+     */
+    public static WeatherServerConfig fromSystemProperties() {
+        return new WeatherServerConfig();
+    }
+
+    /**
+     * @return Base url of the server, e.g. http://localhost:9090/
+     */
+    public URI getBaseUri() {
+        return URI.create("http://" + host + ":" + port + "/");
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public int getSelectors() {
+        return selectors;
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    public int getQueryThreads() {
+        return queryThreads;
+    }
+
+    public int getCollectThreads() {
+        return collectThreads;
+    }
+
+    public int getQueueLimit() {
+        return queueLimit;
+    }
+
+    public int getKeepAliveSeconds() {
+        return keepAliveSeconds;
+    }
+
+    public int getKeepAliveRequests() {
+        return keepAliveRequests;
+    }
+
+    public int getAccessLogSample() {
+        return accessLogSample;
+    }
+
+    public boolean isCompression() {
+        return compression;
+    }
+
+    public int getCompressionMinSize() {
+        return compressionMinSize;
+    }
+
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public int getMaxRequests() {
+        return maxRequests;
+    }
+
+}
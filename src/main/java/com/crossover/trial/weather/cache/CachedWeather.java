@@ -0,0 +1,140 @@
+package com.crossover.trial.weather.cache;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.AbstractList;
+import java.util.Collections;
+import java.util.List;
+
+import com.crossover.trial.weather.model.AtmosphericInformation;
+import com.crossover.trial.weather.utility.WeatherBinaryWriter;
+import com.crossover.trial.weather.utility.WeatherJsonWriter;
+
+/**
+ * Immutable answer of a weather query. An answer kept in the cache is
+ * serialized once per format, on first write, and then copied as is by
+ * {@link CachedWeatherWriter}; any other answer is streamed straight to the
+ * response.
+ *
+ * The entity tag of an answer is derived from the versions of its items, so
+ * it can be checked against the repository without building the answer.
+ *
+ * @author Michele Mastrogiovanni
+ */
+public class CachedWeather extends AbstractList<AtmosphericInformation> {
+
+	private final List<AtmosphericInformation> items;
+
+	/** true if the answer is shared by the requests hitting a cache entry */
+	private volatile boolean retained;
+
+	private volatile byte[] json;
+
+	private volatile byte[] binary;
+
+	private final String tag;
+
+	public CachedWeather(List<AtmosphericInformation> items) {
+		this.items = Collections.unmodifiableList(items);
+		long hash = 0;
+		for (AtmosphericInformation ai : items) {
+			hash += hash(ai);
+		}
+		this.tag = tag(hash);
+	}
+
+	@Override
+	public AtmosphericInformation get(int index) {
+		return items.get(index);
+	}
+
+	@Override
+	public int size() {
+		return items.size();
+	}
+
+	/**
+	 * @return Entity tag of the answer, equal for the same versions of the
+	 *         same items whatever their order
+	 */
+	public String getTag() {
+		return tag;
+	}
+
+	/**
+	 * @return Contribution of an item to the entity tag, summed over the items
+	 */
+	static long hash(AtmosphericInformation ai) {
+		// murmur3 finalizer: sums of spread versions hardly collide
+		long h = ai.version();
+		h = (h ^ (h >>> 33)) * 0xff51afd7ed558ccdL;
+		h = (h ^ (h >>> 33)) * 0xc4ceb9fe1a85ec53L;
+		return h ^ (h >>> 33);
+	}
+
+	/**
+	 * @return Entity tag of items whose hashes sum to the given value
+	 */
+	static String tag(long hash) {
+		return Long.toHexString(hash);
+	}
+
+	/**
+	 * Mark the answer as shared, worth keeping in serialized form.
+	 */
+	void retain() {
+		retained = true;
+	}
+
+	/**
+	 * @return The list serialized as json, do not modify
+	 */
+	public byte[] toJson() throws IOException {
+		byte[] result = json;
+		if (result == null) {
+			// concurrent writers may serialize twice, with the same outcome
+			result = WeatherJsonWriter.toBytes(items);
+			json = result;
+		}
+		return result;
+	}
+
+	/**
+	 * Write the list as json.
+	 *
+	 * @param out Destination, left open
+	 */
+	public void writeTo(OutputStream out) throws IOException {
+		if (retained || json != null) {
+			out.write(toJson());
+		} else {
+			WeatherJsonWriter.write(items, out);
+		}
+	}
+
+	/**
+	 * @return The list in the form of {@link WeatherBinaryWriter}, do not modify
+	 */
+	public byte[] toBinary() throws IOException {
+		byte[] result = binary;
+		if (result == null) {
+			result = WeatherBinaryWriter.toBytes(items);
+			binary = result;
+		}
+		return result;
+	}
+
+	/**
+	 * Write the list in the form of {@link WeatherBinaryWriter}.
+	 *
+	 * @param out Destination, left open
+	 */
+	public void writeBinaryTo(OutputStream out) throws IOException {
+		if (retained || binary != null) {
+			out.write(toBinary());
+		} else {
+			WeatherBinaryWriter.write(items, out);
+		}
+	}
+
+}
@@ -0,0 +1,49 @@
+package com.crossover.trial.weather.cache;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+
+import com.crossover.trial.weather.utility.WeatherBinaryWriter;
+
+/**
+ * Writes a {@link CachedWeather} without going through the generic json
+ * provider: a cached answer is serialized only once whatever the number of
+ * requests it serves, the others are streamed. The compact binary form is
+ * written when the client asks for {@link WeatherBinaryWriter#MEDIA_TYPE}.
+ *
+ * @author Michele Mastrogiovanni
+ */
+@Provider
+@Produces({ MediaType.APPLICATION_JSON, WeatherBinaryWriter.MEDIA_TYPE })
+public class CachedWeatherWriter implements MessageBodyWriter<CachedWeather> {
+
+	@Override
+	public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+		return CachedWeather.class.isAssignableFrom(type);
+	}
+
+	@Override
+	public long getSize(CachedWeather t, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+		return -1;
+	}
+
+	@Override
+	public void writeTo(CachedWeather t, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+			MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) throws IOException, WebApplicationException {
+		if (WeatherBinaryWriter.MEDIA_TYPE.equals(mediaType.getType() + "/" + mediaType.getSubtype())) {
+			t.writeBinaryTo(entityStream);
+		} else {
+			t.writeTo(entityStream);
+		}
+	}
+
+}
@@ -0,0 +1,364 @@
+package com.crossover.trial.weather.cache;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.crossover.trial.weather.exception.WeatherException;
+import com.crossover.trial.weather.model.AirportData;
+import com.crossover.trial.weather.model.AtmosphericInformation;
+import com.crossover.trial.weather.model.DataPoint;
+import com.crossover.trial.weather.model.DataPointType;
+import com.crossover.trial.weather.model.Repository;
+import com.crossover.trial.weather.model.RepositoryListener;
+import com.crossover.trial.weather.utility.DistanceUtility;
+
+/**
+ * Singleton cache of the answers of the weather query, keyed by IATA code and
+ * radius. Entries are dropped when they become stale:
+ * <ul>
+ * <li>a data point invalidates the entries whose airports include the updated one;</li>
+ * <li>a new airport invalidates the entries whose circle contains it;</li>
+ * <li>a deleted airport invalidates the entries that include it.</li>
+ * </ul>
+ * Past the capacity, set by the weather.cache.size system property, the least
+ * recently used entries are evicted. A capacity of 0 disables the cache.
+ *
+ * @author Michele Mastrogiovanni
+ */
+public class WeatherResponseCache implements RepositoryListener {
+
+	/** default number of cached answers */
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	/** fraction of the capacity freed by an eviction pass */
+	private static final double EVICTION_FRACTION = 0.1;
+
+	/** margin in km on the radius of a cached circle when an airport is added */
+	private static final double RADIUS_MARGIN = 1e-3;
+
+	/**
+	 * Lazy holder of the singleton instance
+	 */
+	private static class Holder {
+		private static final WeatherResponseCache INSTANCE = new WeatherResponseCache(
+				Integer.getInteger("weather.cache.size", DEFAULT_CAPACITY));
+	}
+
+	private final int capacity;
+
+	private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+
+	/**
+	 * Keys of the entries including each airport
+	 */
+	private final Map<String, Set<Key>> dependents = new ConcurrentHashMap<>();
+
+	/**
+	 * Incremented before every invalidation: an answer computed while it
+	 * changed may be stale and is not kept
+	 */
+	private final AtomicLong invalidations = new AtomicLong();
+
+	private final Object evictionLock = new Object();
+
+	private final LongAdder hits = new LongAdder();
+
+	private final LongAdder misses = new LongAdder();
+
+	private final LongAdder evictions = new LongAdder();
+
+	private final LongAdder invalidated = new LongAdder();
+
+	public static WeatherResponseCache getInstance() {
+		return Holder.INSTANCE;
+	}
+
+	private WeatherResponseCache(int capacity) {
+		this.capacity = capacity;
+		Repository.getInstance().addListener(this);
+	}
+
+	/**
+	 * Atmospheric information of the airports within a radius from an
+	 * airport, from the cache when available.
+	 *
+	 * @param iataCode the 3 letter IATA code of the origin
+	 * @param radius the radius in km
+	 * @return Information of the airports having some value
+	 * @throws WeatherException Invalid IATA code or negative radius
+	 */
+	public CachedWeather get(String iataCode, double radius) throws WeatherException {
+
+		Key key = new Key(iataCode, radius);
+
+		Entry entry = entries.get(key);
+		if (entry != null) {
+			entry.lastUsed = System.nanoTime();
+			hits.increment();
+			return entry.response;
+		}
+
+		misses.increment();
+
+		long version = invalidations.get();
+
+		Repository repository = Repository.getInstance();
+		List<AirportData> airports = repository.getAirportsFromIataInRadius(iataCode, radius);
+		List<AtmosphericInformation> result = new ArrayList<>();
+		for (AirportData airport : airports) {
+			AtmosphericInformation ai = repository.getAtmosphericInformation(airport.getIata());
+			if (ai != null && ai.hasSomeValue()) {
+				result.add(ai);
+			}
+		}
+		CachedWeather response = new CachedWeather(result);
+
+		// unknown origin: nothing to depend on
+		if (capacity == 0 || airports.isEmpty()) {
+			return response;
+		}
+
+		AirportData origin = airports.stream().filter(x -> x.getIata().equals(iataCode)).findFirst().orElse(airports.get(0));
+		entry = new Entry(key, origin, airports, response);
+
+		// dependencies first: an invalidation from now on finds the entry
+		for (String iata : entry.airports) {
+			dependents.compute(iata, (k, keys) -> {
+				Set<Key> set = keys == null ? ConcurrentHashMap.newKeySet() : keys;
+				set.add(key);
+				return set;
+			});
+		}
+		response.retain();
+		entries.put(key, entry);
+		if (invalidations.get() != version) {
+			remove(entry);
+		} else if (entries.size() > capacity) {
+			evict();
+		}
+
+		return response;
+
+	}
+
+	/**
+	 * Entity tag of the answer to a weather query, as returned by
+	 * {@link CachedWeather#getTag()}, from the cached answer when available
+	 * or else from the versions in the repository, without building the
+	 * answer.
+	 *
+	 * @param iataCode the 3 letter IATA code of the origin
+	 * @param radius the radius in km
+	 * @return The entity tag of the current answer
+	 * @throws WeatherException Invalid IATA code or negative radius
+	 */
+	public String getTag(String iataCode, double radius) throws WeatherException {
+
+		Entry entry = entries.get(new Key(iataCode, radius));
+		if (entry != null) {
+			entry.lastUsed = System.nanoTime();
+			return entry.response.getTag();
+		}
+
+		Repository repository = Repository.getInstance();
+		long hash = 0;
+		for (AirportData airport : repository.getAirportsFromIataInRadius(iataCode, radius)) {
+			AtmosphericInformation ai = repository.getAtmosphericInformation(airport.getIata());
+			if (ai != null && ai.hasSomeValue()) {
+				hash += CachedWeather.hash(ai);
+			}
+		}
+		return CachedWeather.tag(hash);
+
+	}
+
+	/**
+	 * @return Counters of the cache, for health reports
+	 */
+	public Map<String, Long> getStatistics() {
+		Map<String, Long> result = new LinkedHashMap<>();
+		result.put("size", (long) entries.size());
+		result.put("capacity", (long) capacity);
+		result.put("hits", hits.sum());
+		result.put("misses", misses.sum());
+		result.put("evictions", evictions.sum());
+		result.put("invalidations", invalidated.sum());
+		return result;
+	}
+
+	/**
+	 * Drop all entries and counters.
+	 */
+	public void reset() {
+		clear();
+		hits.reset();
+		misses.reset();
+		evictions.reset();
+		invalidated.reset();
+	}
+
+	@Override
+	public void cleared() {
+		clear();
+	}
+
+	@Override
+	public void catalogChanged() {
+		clear();
+	}
+
+	@Override
+	public void airportAdded(AirportData airport) {
+		invalidations.incrementAndGet();
+		for (Entry entry : entries.values()) {
+			double distance = DistanceUtility.calculateDistance(entry.latitude, entry.longitude, airport.getLatitude(),
+					airport.getLongitude());
+			if (distance <= entry.key.radius + RADIUS_MARGIN) {
+				invalidate(entry);
+			}
+		}
+	}
+
+	@Override
+	public void airportDeleted(AirportData airport) {
+		invalidate(airport.getIata());
+	}
+
+	@Override
+	public void dataPointAdded(String iataCode, DataPointType pointType, DataPoint dp, AtmosphericInformation updated) {
+		invalidate(iataCode);
+	}
+
+	/**
+	 * Drop the entries including an airport.
+	 */
+	private void invalidate(String iataCode) {
+		invalidations.incrementAndGet();
+		Set<Key> keys = dependents.get(iataCode);
+		if (keys == null) {
+			return;
+		}
+		for (Key key : keys) {
+			Entry entry = entries.get(key);
+			if (entry != null) {
+				invalidate(entry);
+			}
+		}
+	}
+
+	private void invalidate(Entry entry) {
+		if (remove(entry)) {
+			invalidated.increment();
+		}
+	}
+
+	/**
+	 * Remove an entry and its dependencies.
+	 *
+	 * @return True if the entry was still in the cache
+	 */
+	private boolean remove(Entry entry) {
+		if (!entries.remove(entry.key, entry)) {
+			return false;
+		}
+		for (String iata : entry.airports) {
+			dependents.computeIfPresent(iata, (k, keys) -> {
+				keys.remove(entry.key);
+				return keys.isEmpty() ? null : keys;
+			});
+		}
+		return true;
+	}
+
+	private void clear() {
+		invalidations.incrementAndGet();
+		entries.clear();
+		dependents.clear();
+	}
+
+	/**
+	 * Remove the least recently used entries, leaving room for further ones.
+	 */
+	private void evict() {
+		synchronized (evictionLock) {
+			int excess = entries.size() - capacity;
+			if (excess <= 0) {
+				return;
+			}
+			List<Entry> candidates = new ArrayList<>(entries.values());
+			candidates.sort(Comparator.comparingLong(x -> x.lastUsed));
+			int count = Math.min(candidates.size(), excess + (int) (capacity * EVICTION_FRACTION));
+			for (int i = 0; i < count; i++) {
+				if (remove(candidates.get(i))) {
+					evictions.increment();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Query parameters
+	 */
+	private static final class Key {
+
+		private final String iata;
+
+		private final double radius;
+
+		private Key(String iata, double radius) {
+			this.iata = iata;
+			this.radius = radius;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return iata.equals(other.iata) && Double.compare(radius, other.radius) == 0;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * iata.hashCode() + Double.hashCode(radius);
+		}
+
+	}
+
+	/**
+	 * Cached answer with what is needed to invalidate it
+	 */
+	private static final class Entry {
+
+		private final Key key;
+
+		private final double latitude;
+
+		private final double longitude;
+
+		/** IATA codes of the airports in the circle */
+		private final String[] airports;
+
+		private final CachedWeather response;
+
+		private volatile long lastUsed = System.nanoTime();
+
+		private Entry(Key key, AirportData origin, List<AirportData> airports, CachedWeather response) {
+			this.key = key;
+			this.latitude = origin.getLatitude();
+			this.longitude = origin.getLongitude();
+			this.airports = airports.stream().map(AirportData::getIata).toArray(String[]::new);
+			this.response = response;
+		}
+
+	}
+
+}
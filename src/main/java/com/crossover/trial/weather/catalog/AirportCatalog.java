@@ -0,0 +1,278 @@
+package com.crossover.trial.weather.catalog;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+import com.crossover.trial.weather.index.BoundingBox;
+import com.crossover.trial.weather.index.GeoGrid;
+import com.crossover.trial.weather.index.RadiusFilter;
+import com.crossover.trial.weather.model.AirportData;
+
+/**
+ * Read-only airport catalog stored in a compact binary file that is memory
+ * mapped, so that thousands of airports are available at boot without parsing
+ * text or allocating an object per airport.
+ *
+ * Layout, all values big endian:
+ * <ul>
+ * <li>header (32 bytes): magic, version, airport count, cell count, cell size in degrees, reserved</li>
+ * <li>airports (20 bytes each): IATA code as 4 ASCII bytes padded with zeros, latitude and longitude
+ * as doubles, in the order of the {@link GeoGrid} cell containing them</li>
+ * <li>cells (8 bytes each): key of a non empty cell and index of its first airport, sorted by key</li>
+ * <li>IATA index (4 bytes each): airport indexes sorted by IATA code</li>
+ * </ul>
+ *
+ * @author Michele Mastrogiovanni
+ */
+public class AirportCatalog {
+
+	private static final int MAGIC = 0x57434154;
+
+	private static final int VERSION = 1;
+
+	private static final int HEADER_SIZE = 32;
+
+	private static final int IATA_SIZE = 4;
+
+	private static final int RECORD_SIZE = IATA_SIZE + 8 + 8;
+
+	private static final int CELL_SIZE = 8;
+
+	private final ByteBuffer buffer;
+
+	private final int count;
+
+	private final int cellCount;
+
+	private final GeoGrid grid;
+
+	private final int cellsOffset;
+
+	private final int iataOffset;
+
+	private AirportCatalog(ByteBuffer buffer) throws IOException {
+		this.buffer = buffer;
+		if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+			throw new IOException("Unknown airport catalog format");
+		}
+		this.count = buffer.getInt(8);
+		this.cellCount = buffer.getInt(12);
+		this.grid = new GeoGrid(buffer.getDouble(16));
+		this.cellsOffset = HEADER_SIZE + count * RECORD_SIZE;
+		this.iataOffset = cellsOffset + cellCount * CELL_SIZE;
+		if (buffer.capacity() != iataOffset + count * 4) {
+			throw new IOException("Truncated airport catalog");
+		}
+	}
+
+	/**
+	 * Map a catalog file in memory.
+	 *
+	 * @param file Catalog file
+	 * @return The mapped catalog
+	 * @throws IOException Error reading the file or unknown format
+	 */
+	public static AirportCatalog map(File file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			return new AirportCatalog(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	/**
+	 * Write a catalog file.
+	 *
+	 * @param airports Airports to store, with distinct IATA codes
+	 * @param file Destination file
+	 * @param cellSize Size in degrees of the cells used to order the airports
+	 * @throws IOException Error writing the file
+	 */
+	public static void write(List<AirportData> airports, File file, double cellSize) throws IOException {
+
+		GeoGrid grid = new GeoGrid(cellSize);
+		int count = airports.size();
+
+		// spatial ordering: by cell, then by code
+		List<AirportData> sorted = new ArrayList<>(airports);
+		sorted.sort(Comparator.<AirportData> comparingLong(x -> grid.cellKey(x.getLatitude(), x.getLongitude()))
+				.thenComparing(AirportData::getIata));
+
+		List<int[]> cells = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			int key = (int) grid.cellKey(sorted.get(i).getLatitude(), sorted.get(i).getLongitude());
+			if (cells.isEmpty() || cells.get(cells.size() - 1)[0] != key) {
+				cells.add(new int[] { key, i });
+			}
+		}
+
+		ByteBuffer out = ByteBuffer.allocate(HEADER_SIZE + count * RECORD_SIZE + cells.size() * CELL_SIZE + count * 4);
+		out.putInt(MAGIC).putInt(VERSION).putInt(count).putInt(cells.size()).putDouble(cellSize).putLong(0);
+
+		for (AirportData airport : sorted) {
+			byte[] iata = airport.getIata().getBytes(StandardCharsets.US_ASCII);
+			if (iata.length > IATA_SIZE) {
+				throw new IllegalArgumentException("IATA code too long: " + airport.getIata());
+			}
+			out.put(iata).put(new byte[IATA_SIZE - iata.length]);
+			out.putDouble(airport.getLatitude()).putDouble(airport.getLongitude());
+		}
+
+		for (int[] cell : cells) {
+			out.putInt(cell[0]).putInt(cell[1]);
+		}
+
+		IntStream.range(0, count).boxed()
+				.sorted(Comparator.comparing(i -> sorted.get(i).getIata()))
+				.forEach(out::putInt);
+
+		out.flip();
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (out.hasRemaining()) {
+				channel.write(out);
+			}
+		}
+
+	}
+
+	/**
+	 * @return Number of airports in the catalog
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * @param iata the 3 letter IATA code
+	 * @return Index of the airport, -1 if not in the catalog
+	 */
+	public int indexOf(String iata) {
+		int low = 0;
+		int high = count - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int index = buffer.getInt(iataOffset + mid * 4);
+			int cmp = compareIata(index, iata);
+			if (cmp < 0) {
+				low = mid + 1;
+			} else if (cmp > 0) {
+				high = mid - 1;
+			} else {
+				return index;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @param index Index of an airport
+	 * @return Its IATA code
+	 */
+	public String getIata(int index) {
+		int offset = HEADER_SIZE + index * RECORD_SIZE;
+		int length = 0;
+		byte[] bytes = new byte[IATA_SIZE];
+		while (length < IATA_SIZE && buffer.get(offset + length) != 0) {
+			bytes[length] = buffer.get(offset + length);
+			length++;
+		}
+		return new String(bytes, 0, length, StandardCharsets.US_ASCII);
+	}
+
+	public double getLatitude(int index) {
+		return buffer.getDouble(HEADER_SIZE + index * RECORD_SIZE + IATA_SIZE);
+	}
+
+	public double getLongitude(int index) {
+		return buffer.getDouble(HEADER_SIZE + index * RECORD_SIZE + IATA_SIZE + 8);
+	}
+
+	/**
+	 * @param index Index of an airport
+	 * @return A new object describing the airport
+	 */
+	public AirportData getAirport(int index) {
+		return new AirportData.Builder(getIata(index)).withLat(getLatitude(index)).withLon(getLongitude(index)).build();
+	}
+
+	/**
+	 * Visit the airports whose haversine distance from a point is not greater
+	 * than the given radius. Only the cells overlapping the bounding box of the
+	 * search circle are read, and distances are checked with a {@link RadiusFilter}.
+	 *
+	 * @param latitude Latitude of the center in degrees
+	 * @param longitude Longitude of the center in degrees
+	 * @param radius Radius in km
+	 * @param action Receives the index of each airport found
+	 */
+	public void forEachInRadius(double latitude, double longitude, double radius, IntConsumer action) {
+		RadiusFilter filter = new RadiusFilter(latitude, longitude, radius);
+		BoundingBox box = filter.getBox();
+		if (grid.countCells(box) > cellCount) {
+			visit(0, count, filter, action);
+			return;
+		}
+		grid.forEachCell(box, key -> {
+			int cell = findCell((int) key);
+			if (cell >= 0) {
+				visit(firstOfCell(cell), cell + 1 < cellCount ? firstOfCell(cell + 1) : count, filter, action);
+			}
+		});
+	}
+
+	private void visit(int from, int to, RadiusFilter filter, IntConsumer action) {
+		for (int i = from; i < to; i++) {
+			if (filter.accept(getLatitude(i), getLongitude(i))) {
+				action.accept(i);
+			}
+		}
+	}
+
+	/**
+	 * @return Position of the cell in the cell table, -1 if empty
+	 */
+	private int findCell(int key) {
+		int low = 0;
+		int high = cellCount - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int midKey = buffer.getInt(cellsOffset + mid * CELL_SIZE);
+			if (midKey < key) {
+				low = mid + 1;
+			} else if (midKey > key) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -1;
+	}
+
+	private int firstOfCell(int cell) {
+		return buffer.getInt(cellsOffset + cell * CELL_SIZE + 4);
+	}
+
+	/**
+	 * Compare the code of an airport with a given code without decoding it.
+	 */
+	private int compareIata(int index, String iata) {
+		int offset = HEADER_SIZE + index * RECORD_SIZE;
+		for (int i = 0; i < IATA_SIZE; i++) {
+			int stored = buffer.get(offset + i) & 0xff;
+			int wanted = i < iata.length() ? iata.charAt(i) : 0;
+			if (stored != wanted) {
+				return stored - wanted;
+			}
+		}
+		return iata.length() > IATA_SIZE ? -1 : 0;
+	}
+
+}
@@ -0,0 +1,159 @@
+package com.crossover.trial.weather.history;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.crossover.trial.weather.model.DataPoint;
+import com.crossover.trial.weather.model.HistoryBucket;
+
+/**
+ * Fixed size ring buffer of the readings of one data point type at one
+ * airport. Readings are stored in parallel primitive arrays, 32 bytes each,
+ * and the oldest one is overwritten when the buffer is full.
+ *
+ * @author Michele Mastrogiovanni
+ */
+public class HistoryBuffer {
+
+	/** bytes used by a reading: time, mean and four int fields */
+	public static final int BYTES_PER_READING = 8 + 8 + 4 * 4;
+
+	private final long[] times;
+
+	private final double[] means;
+
+	private final int[] firsts;
+
+	private final int[] seconds;
+
+	private final int[] thirds;
+
+	private final int[] counts;
+
+	/** position of the next write */
+	private int head;
+
+	/** number of readings stored */
+	private int size;
+
+	/**
+	 * @param capacity Maximum number of readings kept
+	 */
+	public HistoryBuffer(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("capacity must be positive");
+		}
+		times = new long[capacity];
+		means = new double[capacity];
+		firsts = new int[capacity];
+		seconds = new int[capacity];
+		thirds = new int[capacity];
+		counts = new int[capacity];
+	}
+
+	/**
+	 * Store a reading, dropping the oldest one if the buffer is full.
+	 *
+	 * @param time Time of the reading in milliseconds since UTC epoch
+	 * @param dp Data point read
+	 */
+	public synchronized void add(long time, DataPoint dp) {
+		times[head] = time;
+		means[head] = dp.getMean();
+		firsts[head] = dp.getFirst();
+		seconds[head] = dp.getSecond();
+		thirds[head] = dp.getThird();
+		counts[head] = dp.getCount();
+		head = (head + 1) % times.length;
+		size = Math.min(size + 1, times.length);
+	}
+
+	/**
+	 * @return Number of readings stored
+	 */
+	public synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * Aggregate the readings of a time range in buckets of fixed width.
+	 *
+	 * @param from Start of the range, inclusive, in milliseconds since UTC epoch
+	 * @param to End of the range, inclusive
+	 * @param step Width of a bucket in milliseconds, 0 for a bucket per reading
+	 * @return The non empty buckets, oldest first
+	 */
+	public List<HistoryBucket> query(long from, long to, long step) {
+
+		Map<Long, Accumulator> buckets = new TreeMap<>();
+
+		synchronized (this) {
+			// oldest reading first
+			for (int i = 0, pos = (head - size + times.length) % times.length; i < size; i++, pos = (pos + 1) % times.length) {
+				long time = times[pos];
+				if (time < from || time > to) {
+					continue;
+				}
+				long start = step > 0 ? from + (time - from) / step * step : time;
+				Accumulator bucket = buckets.get(start);
+				if (bucket == null) {
+					bucket = new Accumulator(start);
+					buckets.put(start, bucket);
+				}
+				bucket.add(pos);
+			}
+		}
+
+		List<HistoryBucket> result = new ArrayList<>(buckets.size());
+		for (Accumulator bucket : buckets.values()) {
+			int n = bucket.samples;
+			result.add(new HistoryBucket(bucket.start, n, bucket.mean / n, bucket.min, bucket.max, bucket.first / n,
+					bucket.second / n, bucket.third / n, bucket.count));
+		}
+		return result;
+
+	}
+
+	/**
+	 * Bucket under construction
+	 */
+	private class Accumulator {
+
+		private final long start;
+
+		private int samples;
+
+		private double mean;
+
+		private double min = Double.POSITIVE_INFINITY;
+
+		private double max = Double.NEGATIVE_INFINITY;
+
+		private double first;
+
+		private double second;
+
+		private double third;
+
+		private long count;
+
+		private Accumulator(long start) {
+			this.start = start;
+		}
+
+		private void add(int pos) {
+			samples++;
+			mean += means[pos];
+			min = Math.min(min, means[pos]);
+			max = Math.max(max, means[pos]);
+			first += firsts[pos];
+			second += seconds[pos];
+			third += thirds[pos];
+			count += counts[pos];
+		}
+
+	}
+
+}
@@ -0,0 +1,124 @@
+package com.crossover.trial.weather.history;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+import com.crossover.trial.weather.model.AirportData;
+import com.crossover.trial.weather.model.AtmosphericInformation;
+import com.crossover.trial.weather.model.DataPoint;
+import com.crossover.trial.weather.model.DataPointType;
+import com.crossover.trial.weather.model.HistoryBucket;
+import com.crossover.trial.weather.model.RepositoryListener;
+
+/**
+ * Bounded history of the readings received by each airport, fed by the
+ * repository it listens to.
+ *
+ * Every airport keeps a {@link HistoryBuffer} of the same capacity for each
+ * data point type, allocated on the first reading of that type: an airport
+ * uses at most {@code DataPointType.values().length * capacity * HistoryBuffer.BYTES_PER_READING}
+ * bytes plus array headers, 54 KB with the default capacity of 288 readings
+ * (one day at one reading every 5 minutes).
+ *
+ * A reading can be notified after its airport has been deleted: the history
+ * of an airport no longer known is dropped once the reading is stored, so
+ * deleted airports do not keep their buffers.
+ *
+ * @author Michele Mastrogiovanni
+ */
+public class WeatherHistory implements RepositoryListener {
+
+	public static final int DEFAULT_CAPACITY = 288;
+
+	private static final int TYPES = DataPointType.values().length;
+
+	private final int capacity;
+
+	/**
+	 * Buffers of each airport, indexed by data point type ordinal
+	 */
+	private final Map<String, HistoryBuffer[]> buffers = new ConcurrentHashMap<>();
+
+	/**
+	 * Tells whether an airport is still known
+	 */
+	private final Predicate<String> known;
+
+	/**
+	 * @param capacity Readings kept for each airport and data point type
+	 * @param known Tells whether an airport is still known, checked after
+	 *        the removal of the airport has been notified
+	 */
+	public WeatherHistory(int capacity, Predicate<String> known) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("capacity must be positive");
+		}
+		this.capacity = capacity;
+		this.known = known;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * @return Maximum memory used by the readings of an airport, in bytes
+	 */
+	public long getMaxBytesPerAirport() {
+		return (long) TYPES * capacity * HistoryBuffer.BYTES_PER_READING;
+	}
+
+	/**
+	 * Aggregate the readings of an airport in a time range.
+	 *
+	 * @param iataCode the 3 letter IATA code
+	 * @param pointType the point type {@link DataPointType}
+	 * @param from Start of the range, inclusive, in milliseconds since UTC epoch
+	 * @param to End of the range, inclusive
+	 * @param step Width of a bucket in milliseconds, 0 for a bucket per reading
+	 * @return The non empty buckets, oldest first
+	 */
+	public List<HistoryBucket> query(String iataCode, DataPointType pointType, long from, long to, long step) {
+		HistoryBuffer[] airport = buffers.get(iataCode);
+		HistoryBuffer buffer = airport == null ? null : airport[pointType.ordinal()];
+		if (buffer == null) {
+			return new ArrayList<>();
+		}
+		return buffer.query(from, to, step);
+	}
+
+	@Override
+	public void cleared() {
+		buffers.clear();
+	}
+
+	@Override
+	public void airportDeleted(AirportData airport) {
+		buffers.remove(airport.getIata());
+	}
+
+	@Override
+	public void dataPointAdded(String iataCode, DataPointType pointType, DataPoint dp, AtmosphericInformation updated) {
+		HistoryBuffer[] airport = buffers.computeIfAbsent(iataCode, k -> new HistoryBuffer[TYPES]);
+		HistoryBuffer buffer = airport[pointType.ordinal()];
+		if (buffer == null) {
+			synchronized (airport) {
+				buffer = airport[pointType.ordinal()];
+				if (buffer == null) {
+					buffer = new HistoryBuffer(capacity);
+					airport[pointType.ordinal()] = buffer;
+				}
+			}
+		}
+		buffer.add(updated.getLastUpdateTime(), dp);
+		// the airport is removed before its deletion is notified: if it is gone
+		// now, the buffers may have been created after the notification
+		if (!known.test(iataCode)) {
+			buffers.remove(iataCode, airport);
+		}
+	}
+
+}
@@ -0,0 +1,86 @@
+package com.crossover.trial.weather.index;
+
+import java.util.Arrays;
+
+import com.crossover.trial.weather.model.AirportData;
+import com.crossover.trial.weather.utility.DistanceUtility;
+
+/**
+ * Immutable group of airports with their coordinates laid out as parallel
+ * arrays of sines and cosines, the input of
+ * {@link DistanceUtility#haversines(double, double, double, double, double[], double[], double[], double[], int, double[])}.
+ * Changes return a new block.
+ *
+ * @author Michele Mastrogiovanni
+ */
+final class AirportBlock {
+
+	final AirportData[] airports;
+
+	final double[] sinLats;
+
+	final double[] cosLats;
+
+	final double[] sinLons;
+
+	final double[] cosLons;
+
+	private AirportBlock(AirportData[] airports, double[] sinLats, double[] cosLats, double[] sinLons, double[] cosLons) {
+		this.airports = airports;
+		this.sinLats = sinLats;
+		this.cosLats = cosLats;
+		this.sinLons = sinLons;
+		this.cosLons = cosLons;
+	}
+
+	/**
+	 * @return A block of the given airports
+	 */
+	static AirportBlock of(AirportData... airports) {
+		int size = airports.length;
+		AirportBlock block = new AirportBlock(airports, new double[size], new double[size], new double[size], new double[size]);
+		for (int i = 0; i < size; i++) {
+			block.set(i, airports[i]);
+		}
+		return block;
+	}
+
+	int size() {
+		return airports.length;
+	}
+
+	/**
+	 * @return A block with the airport appended
+	 */
+	AirportBlock with(AirportData airport) {
+		int size = airports.length;
+		AirportBlock block = new AirportBlock(Arrays.copyOf(airports, size + 1), Arrays.copyOf(sinLats, size + 1),
+				Arrays.copyOf(cosLats, size + 1), Arrays.copyOf(sinLons, size + 1), Arrays.copyOf(cosLons, size + 1));
+		block.set(size, airport);
+		return block;
+	}
+
+	/**
+	 * @return A block without the airports with the given code, null if empty
+	 */
+	AirportBlock without(String iata) {
+		AirportData[] result = Arrays.stream(airports)
+				.filter(x -> !x.getIata().equals(iata))
+				.toArray(AirportData[]::new);
+		return result.length == 0 ? null : of(result);
+	}
+
+	/**
+	 * Store an airport and its coordinates, only while building a block.
+	 */
+	private void set(int index, AirportData airport) {
+		double lat = Math.toRadians(airport.getLatitude());
+		double lon = Math.toRadians(airport.getLongitude());
+		airports[index] = airport;
+		sinLats[index] = Math.sin(lat);
+		cosLats[index] = Math.cos(lat);
+		sinLons[index] = Math.sin(lon);
+		cosLons[index] = Math.cos(lon);
+	}
+
+}
@@ -0,0 +1,115 @@
+package com.crossover.trial.weather.index;
+
+import com.crossover.trial.weather.utility.DistanceUtility;
+
+/**
+ * Latitude/longitude rectangle enclosing every point within a given distance
+ * from a center. When the box crosses the antimeridian the minimum longitude
+ * is greater than the maximum one.
+ *
+ * @author Michele Mastrogiovanni
+ */
+public class BoundingBox {
+
+	/** margin in degrees added on each side to absorb rounding errors */
+	private static final double EPSILON = 1e-9;
+
+	private final double minLatitude;
+
+	private final double maxLatitude;
+
+	private final double minLongitude;
+
+	private final double maxLongitude;
+
+	private final boolean fullLongitude;
+
+	private BoundingBox(double minLatitude, double maxLatitude, double minLongitude, double maxLongitude, boolean fullLongitude) {
+		this.minLatitude = minLatitude;
+		this.maxLatitude = maxLatitude;
+		this.minLongitude = minLongitude;
+		this.maxLongitude = maxLongitude;
+		this.fullLongitude = fullLongitude;
+	}
+
+	/**
+	 * Build the smallest box containing the spherical cap of the given radius.
+	 *
+	 * @param latitude Latitude of the center in degrees
+	 * @param longitude Longitude of the center in degrees
+	 * @param radius Radius in km
+	 * @return Enclosing bounding box
+	 */
+	public static BoundingBox around(double latitude, double longitude, double radius) {
+
+		double angularRadius = radius / DistanceUtility.R;
+		double latDelta = Math.toDegrees(angularRadius) + EPSILON;
+
+		double minLat = latitude - latDelta;
+		double maxLat = latitude + latDelta;
+
+		// the cap contains a pole: every longitude is reachable
+		if (minLat <= -90 || maxLat >= 90 || angularRadius >= Math.PI / 2) {
+			return new BoundingBox(Math.max(minLat, -90), Math.min(maxLat, 90), -180, 180, true);
+		}
+
+		double lonDelta = Math.toDegrees(Math.asin(Math.sin(angularRadius) / Math.cos(Math.toRadians(latitude)))) + EPSILON;
+		if (lonDelta >= 180) {
+			return new BoundingBox(minLat, maxLat, -180, 180, true);
+		}
+
+		double minLon = longitude - lonDelta;
+		double maxLon = longitude + lonDelta;
+		if (minLon < -180) {
+			minLon += 360;
+		}
+		if (maxLon > 180) {
+			maxLon -= 360;
+		}
+
+		return new BoundingBox(minLat, maxLat, minLon, maxLon, false);
+
+	}
+
+	/**
+	 * @param latitude Latitude in degrees
+	 * @param longitude Longitude in degrees
+	 * @return True if the point lies inside the box
+	 */
+	public boolean contains(double latitude, double longitude) {
+		if (latitude < minLatitude || latitude > maxLatitude) {
+			return false;
+		}
+		if (fullLongitude) {
+			return true;
+		}
+		if (minLongitude <= maxLongitude) {
+			return longitude >= minLongitude && longitude <= maxLongitude;
+		}
+		return longitude >= minLongitude || longitude <= maxLongitude;
+	}
+
+	public double getMinLatitude() {
+		return minLatitude;
+	}
+
+	public double getMaxLatitude() {
+		return maxLatitude;
+	}
+
+	public double getMinLongitude() {
+		return minLongitude;
+	}
+
+	public double getMaxLongitude() {
+		return maxLongitude;
+	}
+
+	/**
+	 * @return True if the box spans every longitude
+	 */
+	public boolean isFullLongitude() {
+		return fullLongitude;
+	}
+
+}
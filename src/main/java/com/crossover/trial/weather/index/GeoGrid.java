@@ -0,0 +1,94 @@
+package com.crossover.trial.weather.index;
+
+import java.util.function.LongConsumer;
+
+/**
+ * Regular latitude/longitude partitioning of the globe in square cells (the
+ * same partitioning used by geohash at a fixed precision). Cells are
+ * identified by a key growing with latitude first and longitude second.
+ *
+ * @author Michele Mastrogiovanni
+ */
+public class GeoGrid {
+
+	/** size of a cell side in degrees */
+	private final double cellSize;
+
+	/** number of cells along a parallel */
+	private final int lonCells;
+
+	/** number of cells along a meridian */
+	private final int latCells;
+
+	/**
+	 * @param cellSize Size of a cell side in degrees
+	 */
+	public GeoGrid(double cellSize) {
+		if (cellSize <= 0 || cellSize > 180) {
+			throw new IllegalArgumentException("cell size must be in (0, 180] degrees");
+		}
+		this.cellSize = cellSize;
+		this.lonCells = (int) Math.ceil(360 / cellSize);
+		this.latCells = (int) Math.ceil(180 / cellSize);
+	}
+
+	public double getCellSize() {
+		return cellSize;
+	}
+
+	/**
+	 * @param latitude Latitude in degrees
+	 * @param longitude Longitude in degrees
+	 * @return Key of the cell containing the point
+	 */
+	public long cellKey(double latitude, double longitude) {
+		return cellKey(latIndex(latitude), lonIndex(longitude));
+	}
+
+	/**
+	 * @param box Area to cover
+	 * @return Number of cells overlapping the box
+	 */
+	public long countCells(BoundingBox box) {
+		return (long) (latIndex(box.getMaxLatitude()) - latIndex(box.getMinLatitude()) + 1) * lonCount(box);
+	}
+
+	/**
+	 * Visit the keys of all the cells overlapping a box.
+	 *
+	 * @param box Area to cover
+	 * @param action Receives each cell key
+	 */
+	public void forEachCell(BoundingBox box, LongConsumer action) {
+		int minLat = latIndex(box.getMinLatitude());
+		int maxLat = latIndex(box.getMaxLatitude());
+		int firstLon = box.isFullLongitude() ? 0 : lonIndex(box.getMinLongitude());
+		int lonCount = lonCount(box);
+		for (int lat = minLat; lat <= maxLat; lat++) {
+			for (int i = 0; i < lonCount; i++) {
+				action.accept(cellKey(lat, (firstLon + i) % lonCells));
+			}
+		}
+	}
+
+	private int lonCount(BoundingBox box) {
+		if (box.isFullLongitude()) {
+			return lonCells;
+		}
+		int firstLon = lonIndex(box.getMinLongitude());
+		return Math.min(lonCells, Math.floorMod(lonIndex(box.getMaxLongitude()) - firstLon, lonCells) + 1);
+	}
+
+	private int latIndex(double latitude) {
+		return Math.max(0, Math.min(latCells - 1, (int) Math.floor((latitude + 90) / cellSize)));
+	}
+
+	private int lonIndex(double longitude) {
+		return Math.max(0, Math.min(lonCells - 1, (int) Math.floor((longitude + 180) / cellSize)));
+	}
+
+	private long cellKey(int latIndex, int lonIndex) {
+		return (long) latIndex * lonCells + lonIndex;
+	}
+
+}
@@ -0,0 +1,138 @@
+package com.crossover.trial.weather.index;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.crossover.trial.weather.model.AirportData;
+import com.crossover.trial.weather.utility.DistanceUtility;
+
+/**
+ * Spatial index that buckets airports into the cells of a {@link GeoGrid}. A radius query
+ * only visits the cells overlapping the bounding box of the search circle and
+ * then checks the exact distance of the airports found there, a whole cell at
+ * a time with the batch haversine kernel of {@link DistanceUtility}.
+ * 
+ * Cells are immutable {@link AirportBlock}s replaced on every change, so
+ * queries never lock and always see a consistent cell.
+ *
+ * @author Michele Mastrogiovanni
+ */
+public class GridSpatialIndex implements SpatialIndex {
+
+	/** default size of a cell side in degrees (about 111 km at the equator) */
+	public static final double DEFAULT_CELL_SIZE = 1.0;
+
+	/** partitioning of the globe in cells */
+	private final GeoGrid grid;
+
+	/**
+	 * Non empty cells. Key is computed by {@link GeoGrid#cellKey(double, double)}.
+	 */
+	private final Map<Long, AirportBlock> cells = new ConcurrentHashMap<>();
+
+	public GridSpatialIndex() {
+		this(DEFAULT_CELL_SIZE);
+	}
+
+	/**
+	 * @param cellSize Size of a cell side in degrees
+	 */
+	public GridSpatialIndex(double cellSize) {
+		this.grid = new GeoGrid(cellSize);
+	}
+
+	@Override
+	public void add(AirportData airport) {
+		long key = grid.cellKey(airport.getLatitude(), airport.getLongitude());
+		cells.merge(key, AirportBlock.of(airport), (cell, added) -> cell.with(airport));
+	}
+
+	@Override
+	public void remove(AirportData airport) {
+		long key = grid.cellKey(airport.getLatitude(), airport.getLongitude());
+		cells.computeIfPresent(key, (k, cell) -> cell.without(airport.getIata()));
+	}
+
+	@Override
+	public void clear() {
+		cells.clear();
+	}
+
+	@Override
+	public List<AirportData> findInRadius(AirportData origin, double radius) {
+
+		Query query = new Query(origin, radius);
+
+		BoundingBox box = BoundingBox.around(origin.getLatitude(), origin.getLongitude(), radius);
+
+		// a wide box would visit mostly empty cells: walk the occupied ones instead
+		if (grid.countCells(box) > cells.size()) {
+			for (AirportBlock cell : cells.values()) {
+				query.collect(cell);
+			}
+			return query.result;
+		}
+
+		grid.forEachCell(box, key -> {
+			AirportBlock cell = cells.get(key);
+			if (cell != null) {
+				query.collect(cell);
+			}
+		});
+
+		return query.result;
+
+	}
+
+	/**
+	 * State of a radius query: the origin coordinates prepared for the batch
+	 * kernel and a scratch array for the haversine terms of a cell.
+	 */
+	private static class Query {
+
+		private final double sinLat;
+
+		private final double cosLat;
+
+		private final double sinLon;
+
+		private final double cosLon;
+
+		private final double limit;
+
+		private final List<AirportData> result = new ArrayList<>();
+
+		private double[] haversines = new double[16];
+
+		private Query(AirportData origin, double radius) {
+			double lat = Math.toRadians(origin.getLatitude());
+			double lon = Math.toRadians(origin.getLongitude());
+			sinLat = Math.sin(lat);
+			cosLat = Math.cos(lat);
+			sinLon = Math.sin(lon);
+			cosLon = Math.cos(lon);
+			limit = DistanceUtility.haversineLimit(radius);
+		}
+
+		/**
+		 * Add to result the airports of a cell within the radius.
+		 */
+		private void collect(AirportBlock cell) {
+			int size = cell.size();
+			if (haversines.length < size) {
+				haversines = new double[Math.max(size, haversines.length * 2)];
+			}
+			DistanceUtility.haversines(sinLat, cosLat, sinLon, cosLon, cell.sinLats, cell.cosLats, cell.sinLons,
+					cell.cosLons, size, haversines);
+			for (int i = 0; i < size; i++) {
+				if (haversines[i] <= limit) {
+					result.add(cell.airports[i]);
+				}
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,49 @@
+package com.crossover.trial.weather.index;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.crossover.trial.weather.model.AirportData;
+import com.crossover.trial.weather.utility.DistanceUtility;
+
+/**
+ * Reference index that measures the distance to every airport on each query.
+ *
+ * @author Michele Mastrogiovanni
+ */
+public class LinearScanIndex implements SpatialIndex {
+
+	/**
+	 * Indexed airports. Key corresponds with iata of the related airport.
+	 */
+	private final Map<String, AirportData> airports = new ConcurrentHashMap<>();
+
+	@Override
+	public void add(AirportData airport) {
+		airports.put(airport.getIata(), airport);
+	}
+
+	@Override
+	public void remove(AirportData airport) {
+		airports.remove(airport.getIata());
+	}
+
+	@Override
+	public void clear() {
+		airports.clear();
+	}
+
+	@Override
+	public List<AirportData> findInRadius(AirportData origin, double radius) {
+		List<AirportData> result = new ArrayList<>();
+		for (AirportData airport : airports.values()) {
+			if (DistanceUtility.calculateDistance(origin, airport) <= radius) {
+				result.add(airport);
+			}
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,317 @@
+package com.crossover.trial.weather.index;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.crossover.trial.weather.model.AirportData;
+import com.crossover.trial.weather.utility.DistanceUtility;
+
+/**
+ * Spatial index that keeps, for every airport, the list of the airports
+ * within a maximum radius sorted by distance. A query up to that radius is a
+ * binary search in the list of the origin followed by a read of its prefix;
+ * larger radii and origins not indexed are answered by a
+ * {@link GridSpatialIndex}, also used to build the lists.
+ *
+ * Airports are identified by a slot number, so a list is a pair of compact
+ * int and float arrays. Adding or removing an airport updates only the lists
+ * of its neighbours. Lists are immutable and replaced on change, so queries
+ * never lock. Slots of removed airports are reused by the next airports
+ * added; as a query may still be reading a list that refers to a removed
+ * airport, list entries carry the generation of their slot, bumped on each
+ * removal, and entries of an older generation are ignored.
+ *
+ * @author Michele Mastrogiovanni
+ */
+public class NeighbourIndex implements SpatialIndex {
+
+	/** default maximum radius of the neighbour lists in km */
+	public static final double DEFAULT_MAX_RADIUS = 200;
+
+	private static final int INITIAL_SLOTS = 64;
+
+	/** list entries hold the slot in the low bits and its generation in the high ones */
+	private static final int SLOT_BITS = 24;
+
+	private static final int SLOT_MASK = (1 << SLOT_BITS) - 1;
+
+	private static final int GENERATION_MASK = -1 >>> SLOT_BITS;
+
+	private final double maxRadius;
+
+	private final GridSpatialIndex grid;
+
+	/** slot of each indexed airport, by IATA code */
+	private final Map<String, Integer> slots = new ConcurrentHashMap<>();
+
+	/** indexed airports by slot, null once removed */
+	private volatile AtomicReferenceArray<AirportData> airports = new AtomicReferenceArray<>(INITIAL_SLOTS);
+
+	/** neighbour lists by slot, null while building and once removed */
+	private volatile AtomicReferenceArray<Neighbours> neighbours = new AtomicReferenceArray<>(INITIAL_SLOTS);
+
+	/** generation of each slot, incremented when its airport is removed */
+	private volatile AtomicIntegerArray generations = new AtomicIntegerArray(INITIAL_SLOTS);
+
+	/** slots allocated, in use or free, guarded by this */
+	private int size;
+
+	/** slots of removed airports, guarded by this */
+	private final Deque<Integer> free = new ArrayDeque<>();
+
+	public NeighbourIndex() {
+		this(DEFAULT_MAX_RADIUS);
+	}
+
+	/**
+	 * @param maxRadius Largest radius in km answered from the neighbour lists
+	 */
+	public NeighbourIndex(double maxRadius) {
+		this.maxRadius = maxRadius;
+		this.grid = new GridSpatialIndex();
+	}
+
+	public double getMaxRadius() {
+		return maxRadius;
+	}
+
+	/**
+	 * @return Number of slots allocated, at most the largest number of
+	 *         airports indexed at the same time
+	 */
+	public synchronized int getSlots() {
+		return size;
+	}
+
+	@Override
+	public synchronized void add(AirportData airport) {
+
+		if (slots.containsKey(airport.getIata())) {
+			remove(airport);
+		}
+
+		grid.add(airport);
+
+		int slot;
+		if (!free.isEmpty()) {
+			slot = free.pop();
+		} else {
+			if (size > SLOT_MASK) {
+				throw new IllegalStateException("too many airports in the neighbour index");
+			}
+			slot = size++;
+			if (slot == airports.length()) {
+				airports = grow(airports);
+				neighbours = grow(neighbours);
+				generations = grow(generations);
+			}
+		}
+		airports.set(slot, airport);
+		slots.put(airport.getIata(), slot);
+		int entry = entry(slot);
+
+		List<AirportData> near = grid.findInRadius(airport, maxRadius);
+		int[] ids = new int[near.size()];
+		float[] distances = new float[near.size()];
+		int count = 0;
+		for (AirportData other : near) {
+			double distance = DistanceUtility.calculateDistance(airport, other);
+			if (distance > maxRadius) {
+				continue;
+			}
+			int id = slots.get(other.getIata());
+			if (id != slot) {
+				neighbours.set(id, neighbours.get(id).with(entry, (float) distance));
+			}
+			ids[count] = entry(id);
+			distances[count] = (float) distance;
+			count++;
+		}
+		neighbours.set(slot, Neighbours.sorted(ids, distances, count));
+
+	}
+
+	@Override
+	public synchronized void remove(AirportData airport) {
+		Integer slot = slots.remove(airport.getIata());
+		if (slot == null) {
+			return;
+		}
+		Neighbours list = neighbours.get(slot);
+		neighbours.set(slot, null);
+		int entry = entry(slot);
+		for (int other : list.ids) {
+			int id = other & SLOT_MASK;
+			Neighbours near = neighbours.get(id);
+			if (id != slot && near != null) {
+				neighbours.set(id, near.without(entry));
+			}
+		}
+		grid.remove(airports.get(slot));
+		// bumped before the slot is emptied: a query seeing the next airport of the slot sees the new generation
+		generations.incrementAndGet(slot);
+		airports.set(slot, null);
+		free.push(slot);
+	}
+
+	@Override
+	public synchronized void clear() {
+		grid.clear();
+		slots.clear();
+		airports = new AtomicReferenceArray<>(INITIAL_SLOTS);
+		neighbours = new AtomicReferenceArray<>(INITIAL_SLOTS);
+		generations = new AtomicIntegerArray(INITIAL_SLOTS);
+		size = 0;
+		free.clear();
+	}
+
+	@Override
+	public List<AirportData> findInRadius(AirportData origin, double radius) {
+
+		if (radius > maxRadius) {
+			return grid.findInRadius(origin, radius);
+		}
+
+		Integer slot = slots.get(origin.getIata());
+		Neighbours list = slot == null ? null : neighbours.get(slot);
+		AtomicReferenceArray<AirportData> airports = this.airports;
+		AtomicIntegerArray generations = this.generations;
+		AirportData indexed = slot == null ? null : airports.get(slot);
+		if (list == null || indexed == null || indexed.getLatitude() != origin.getLatitude()
+				|| indexed.getLongitude() != origin.getLongitude()) {
+			return grid.findInRadius(origin, radius);
+		}
+
+		// distances rounded to float are checked exactly near the radius
+		float tolerance = 4 * Math.ulp((float) radius);
+		int sure = list.countBelow((float) radius - tolerance);
+		int end = list.countBelow((float) radius + tolerance);
+
+		List<AirportData> result = new ArrayList<>(end);
+		for (int i = 0; i < end; i++) {
+			int entry = list.ids[i];
+			AirportData airport = airports.get(entry & SLOT_MASK);
+			// read after the airport: an airport added to a reused slot comes with a new generation
+			if (airport != null && (generations.get(entry & SLOT_MASK) & GENERATION_MASK) == entry >>> SLOT_BITS
+					&& (i < sure || DistanceUtility.calculateDistance(origin, airport) <= radius)) {
+				result.add(airport);
+			}
+		}
+		return result;
+
+	}
+
+	/**
+	 * @return List entry of a slot with its current generation
+	 */
+	private int entry(int slot) {
+		return (generations.get(slot) & GENERATION_MASK) << SLOT_BITS | slot;
+	}
+
+	private static AtomicIntegerArray grow(AtomicIntegerArray array) {
+		AtomicIntegerArray result = new AtomicIntegerArray(array.length() * 2);
+		for (int i = 0; i < array.length(); i++) {
+			result.set(i, array.get(i));
+		}
+		return result;
+	}
+
+	private static <T> AtomicReferenceArray<T> grow(AtomicReferenceArray<T> array) {
+		AtomicReferenceArray<T> result = new AtomicReferenceArray<>(array.length() * 2);
+		for (int i = 0; i < array.length(); i++) {
+			result.set(i, array.get(i));
+		}
+		return result;
+	}
+
+	/**
+	 * Immutable list of the airports near to one, by increasing distance.
+	 */
+	private static final class Neighbours {
+
+		/** slots of the airports, with their generation */
+		private final int[] ids;
+
+		/** distances in km */
+		private final float[] distances;
+
+		private Neighbours(int[] ids, float[] distances) {
+			this.ids = ids;
+			this.distances = distances;
+		}
+
+		/**
+		 * @return The first count pairs sorted by distance
+		 */
+		private static Neighbours sorted(int[] ids, float[] distances, int count) {
+			long[] pairs = new long[count];
+			for (int i = 0; i < count; i++) {
+				// non negative floats sort like their bits
+				pairs[i] = (long) Float.floatToIntBits(distances[i]) << 32 | ids[i] & 0xffffffffL;
+			}
+			Arrays.sort(pairs);
+			Neighbours result = new Neighbours(new int[count], new float[count]);
+			for (int i = 0; i < count; i++) {
+				result.ids[i] = (int) pairs[i];
+				result.distances[i] = Float.intBitsToFloat((int) (pairs[i] >>> 32));
+			}
+			return result;
+		}
+
+		/**
+		 * @return Number of airports with distance not greater than the given one
+		 */
+		private int countBelow(float distance) {
+			int low = 0;
+			int high = distances.length;
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				if (distances[mid] <= distance) {
+					low = mid + 1;
+				} else {
+					high = mid;
+				}
+			}
+			return low;
+		}
+
+		private Neighbours with(int id, float distance) {
+			int position = countBelow(distance);
+			int length = ids.length;
+			Neighbours result = new Neighbours(new int[length + 1], new float[length + 1]);
+			System.arraycopy(ids, 0, result.ids, 0, position);
+			System.arraycopy(distances, 0, result.distances, 0, position);
+			result.ids[position] = id;
+			result.distances[position] = distance;
+			System.arraycopy(ids, position, result.ids, position + 1, length - position);
+			System.arraycopy(distances, position, result.distances, position + 1, length - position);
+			return result;
+		}
+
+		private Neighbours without(int id) {
+			int length = ids.length;
+			int position = 0;
+			while (position < length && ids[position] != id) {
+				position++;
+			}
+			if (position == length) {
+				return this;
+			}
+			Neighbours result = new Neighbours(new int[length - 1], new float[length - 1]);
+			System.arraycopy(ids, 0, result.ids, 0, position);
+			System.arraycopy(distances, 0, result.distances, 0, position);
+			System.arraycopy(ids, position + 1, result.ids, position, length - position - 1);
+			System.arraycopy(distances, position + 1, result.distances, position, length - position - 1);
+			return result;
+		}
+
+	}
+
+}
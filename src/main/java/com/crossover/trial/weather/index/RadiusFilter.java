@@ -0,0 +1,113 @@
+package com.crossover.trial.weather.index;
+
+import com.crossover.trial.weather.utility.DistanceUtility;
+
+/**
+ * Tells whether points lie within a radius from an origin, computing the
+ * exact haversine distance only when cheaper tests cannot decide:
+ * <ol>
+ * <li>points outside the {@link BoundingBox} of the circle are rejected;</li>
+ * <li>for short radii the equirectangular approximation, a few multiplications
+ * without any trigonometric call, accepts points clearly inside and rejects
+ * points clearly outside;</li>
+ * <li>the remaining borderline points get the exact haversine distance.</li>
+ * </ol>
+ *
+ * The approximation, with the cosine of the mean latitude expanded at first
+ * order around the origin, has a relative error below
+ * {@link #APPROXIMATION_ERROR} for distances up to {@link #FAST_PATH_RADIUS}
+ * km between latitudes within {@link #FAST_PATH_LATITUDE} degrees (measured
+ * worst case 0.16%). Outside that range every candidate in the box is checked
+ * exactly.
+ *
+ * @author Michele Mastrogiovanni
+ */
+public class RadiusFilter {
+
+	/** largest radius in km using the approximation */
+	public static final double FAST_PATH_RADIUS = 200;
+
+	/** largest absolute latitude in degrees using the approximation */
+	public static final double FAST_PATH_LATITUDE = 80;
+
+	/** bound of the relative error of the approximation in its range */
+	public static final double APPROXIMATION_ERROR = 0.005;
+
+	private final double latitude;
+
+	private final double longitude;
+
+	private final double radius;
+
+	private final BoundingBox box;
+
+	private final boolean fastPath;
+
+	private final double sinLat;
+
+	private final double cosLat;
+
+	/** squared angular distance below which a point is surely inside */
+	private final double innerSquared;
+
+	/** squared angular distance above which a point is surely outside */
+	private final double outerSquared;
+
+	/**
+	 * @param latitude Latitude of the origin in degrees
+	 * @param longitude Longitude of the origin in degrees
+	 * @param radius Radius in km
+	 */
+	public RadiusFilter(double latitude, double longitude, double radius) {
+		this.latitude = latitude;
+		this.longitude = longitude;
+		this.radius = radius;
+		this.box = BoundingBox.around(latitude, longitude, radius);
+		this.fastPath = radius <= FAST_PATH_RADIUS && box.getMinLatitude() >= -FAST_PATH_LATITUDE
+				&& box.getMaxLatitude() <= FAST_PATH_LATITUDE;
+		this.sinLat = Math.sin(Math.toRadians(latitude));
+		this.cosLat = Math.cos(Math.toRadians(latitude));
+		double inner = radius * (1 - APPROXIMATION_ERROR) / DistanceUtility.R;
+		double outer = radius * (1 + APPROXIMATION_ERROR) / DistanceUtility.R;
+		this.innerSquared = inner * inner;
+		this.outerSquared = outer * outer;
+	}
+
+	public BoundingBox getBox() {
+		return box;
+	}
+
+	/**
+	 * @param latitude Latitude in degrees
+	 * @param longitude Longitude in degrees
+	 * @return True if the point is within radius from the origin
+	 */
+	public boolean accept(double latitude, double longitude) {
+
+		if (!box.contains(latitude, longitude)) {
+			return false;
+		}
+
+		if (fastPath) {
+			double deltaLon = longitude - this.longitude;
+			if (deltaLon > 180) {
+				deltaLon -= 360;
+			} else if (deltaLon < -180) {
+				deltaLon += 360;
+			}
+			double y = Math.toRadians(latitude - this.latitude);
+			double x = Math.toRadians(deltaLon) * (cosLat - sinLat * y / 2);
+			double squared = x * x + y * y;
+			if (squared <= innerSquared) {
+				return true;
+			}
+			if (squared > outerSquared) {
+				return false;
+			}
+		}
+
+		return DistanceUtility.calculateDistance(this.latitude, this.longitude, latitude, longitude) <= radius;
+
+	}
+
+}
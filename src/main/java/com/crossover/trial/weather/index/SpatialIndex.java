@@ -0,0 +1,48 @@
+package com.crossover.trial.weather.index;
+
+import java.util.List;
+
+import com.crossover.trial.weather.model.AirportData;
+
+/**
+ * Index of airports by position, used to answer radius queries without
+ * measuring the distance to every known airport.
+ * 
+ * Implementations must allow queries to run without locking, concurrently
+ * with each other and with a modification.
+ *
+ * @author Michele Mastrogiovanni
+ */
+public interface SpatialIndex {
+
+	/**
+	 * Add an airport to the index.
+	 *
+	 * @param airport Airport to add
+	 */
+	void add(AirportData airport);
+
+	/**
+	 * Remove an airport from the index.
+	 *
+	 * @param airport Airport to remove
+	 */
+	void remove(AirportData airport);
+
+	/**
+	 * Remove all airports from the index.
+	 */
+	void clear();
+
+	/**
+	 * Find all indexed airports whose haversine distance from the origin is
+	 * not greater than the given radius. The origin itself is included if it
+	 * is indexed.
+	 *
+	 * @param origin Center of the query
+	 * @param radius Radius in km
+	 * @return Matching airports, in no particular order
+	 */
+	List<AirportData> findInRadius(AirportData origin, double radius);
+
+}
@@ -0,0 +1,43 @@
+package com.crossover.trial.weather.model;
+
+/**
+ * An airport to register, as sent in a bulk registration. Coordinates are
+ * kept as strings so they are validated like the path parameters of a single
+ * registration.
+ *
+ * @author Michele Mastrogiovanni
+ */
+public class AirportRecord {
+
+	/** the 3 letter IATA code */
+	private String iata;
+
+	/** the airport's latitude in degrees as a string [-90, 90] */
+	private String latitude;
+
+	/** the airport's longitude in degrees as a string [-180, 180] */
+	private String longitude;
+
+	/** used by json deserialization */
+	private AirportRecord() {
+	}
+
+	public AirportRecord(String iata, String latitude, String longitude) {
+		this.iata = iata;
+		this.latitude = latitude;
+		this.longitude = longitude;
+	}
+
+	public String getIata() {
+		return iata;
+	}
+
+	public String getLatitude() {
+		return latitude;
+	}
+
+	public String getLongitude() {
+		return longitude;
+	}
+
+}
@@ -1,85 +1,98 @@
 package com.crossover.trial.weather.model;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
- * encapsulates sensor information for a particular location
+ * encapsulates sensor information for a particular location.
+ *
+ * Instances are immutable snapshots: an update produces a new instance through
+ * {@link #with(DataPointType, DataPoint, long)}, so a reader always sees one
+ * consistent version.
  */
 public class AtmosphericInformation {
 
+	/**
+	 * Source of the versions, unique across airports. Seeded with the clock
+	 * so versions keep increasing across restarts.
+	 */
+	private static final AtomicLong VERSIONS = new AtomicLong(System.currentTimeMillis() << 20);
+
 	/** temperature in degrees celsius */
-	private DataPoint temperature;
+	private final DataPoint temperature;
 
 	/** wind speed in km/h */
-	private DataPoint wind;
+	private final DataPoint wind;
 
 	/** humidity in percent */
-	private DataPoint humidity;
+	private final DataPoint humidity;
 
 	/** precipitation in cm */
-	private DataPoint precipitation;
+	private final DataPoint precipitation;
 
 	/** pressure in mmHg */
-	private DataPoint pressure;
+	private final DataPoint pressure;
 
 	/** cloud cover percent from 0 - 100 (integer) */
-	private DataPoint cloudCover;
+	private final DataPoint cloudCover;
 
 	/** the last time this data was updated, in milliseconds since UTC epoch */
-	private long lastUpdateTime;
+	private final long lastUpdateTime;
 
-	public DataPoint getTemperature() {
-		return temperature;
+	/** version of the snapshot, not part of the serialized form */
+	private final transient long version = VERSIONS.incrementAndGet();
+
+	/**
+	 * Create an empty information, without any data point
+	 */
+	public AtmosphericInformation() {
+		this(null, null, null, null, null, null, 0);
 	}
 
-	void setTemperature(DataPoint temperature) {
+	private AtmosphericInformation(DataPoint temperature, DataPoint wind, DataPoint humidity, DataPoint precipitation,
+			DataPoint pressure, DataPoint cloudCover, long lastUpdateTime) {
 		this.temperature = temperature;
+		this.wind = wind;
+		this.humidity = humidity;
+		this.precipitation = precipitation;
+		this.pressure = pressure;
+		this.cloudCover = cloudCover;
+		this.lastUpdateTime = lastUpdateTime;
 	}
 
-	public DataPoint getWind() {
-		return wind;
+	public DataPoint getTemperature() {
+		return temperature;
 	}
 
-	void setWind(DataPoint wind) {
-		this.wind = wind;
+	public DataPoint getWind() {
+		return wind;
 	}
 
 	public DataPoint getHumidity() {
 		return humidity;
 	}
 
-	void setHumidity(DataPoint humidity) {
-		this.humidity = humidity;
-	}
-
 	public DataPoint getPrecipitation() {
 		return precipitation;
 	}
 
-	void setPrecipitation(DataPoint precipitation) {
-		this.precipitation = precipitation;
-	}
-
 	public DataPoint getPressure() {
 		return pressure;
 	}
 
-	void setPressure(DataPoint pressure) {
-		this.pressure = pressure;
-	}
-
 	public DataPoint getCloudCover() {
 		return cloudCover;
 	}
 
-	void setCloudCover(DataPoint cloudCover) {
-		this.cloudCover = cloudCover;
-	}
-
 	public long getLastUpdateTime() {
 		return this.lastUpdateTime;
 	}
 
-	void setLastUpdateTime(long lastUpdateTime) {
-		this.lastUpdateTime = lastUpdateTime;
+	/**
+	 * @return Version of this snapshot: every update gets a larger one, and
+	 *         no two snapshots share it, whatever their airport
+	 */
+	public long version() {
+		return version;
 	}
 
 	public boolean hasSomeValue() {
@@ -87,4 +100,46 @@ public class AtmosphericInformation {
 				|| getTemperature() != null || getWind() != null;
 	}
 
+	/**
+	 * @param type Type of the data point
+	 * @return The data point of the given type, null if never collected
+	 */
+	public DataPoint get(DataPointType type) {
+		switch (type) {
+		case TEMPERATURE:
+			return temperature;
+		case WIND:
+			return wind;
+		case HUMIDTY:
+			return humidity;
+		case PRECIPITATION:
+			return precipitation;
+		case PRESSURE:
+			return pressure;
+		case CLOUDCOVER:
+			return cloudCover;
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Create a copy of this information with a data point replaced.
+	 *
+	 * @param type Type of the data point to replace
+	 * @param dp New data point
+	 * @param lastUpdateTime Time of the update, in milliseconds since UTC epoch
+	 * @return Updated information
+	 */
+	AtmosphericInformation with(DataPointType type, DataPoint dp, long lastUpdateTime) {
+		return new AtmosphericInformation(
+				type == DataPointType.TEMPERATURE ? dp : temperature,
+				type == DataPointType.WIND ? dp : wind,
+				type == DataPointType.HUMIDTY ? dp : humidity,
+				type == DataPointType.PRECIPITATION ? dp : precipitation,
+				type == DataPointType.PRESSURE ? dp : pressure,
+				type == DataPointType.CLOUDCOVER ? dp : cloudCover,
+				lastUpdateTime);
+	}
+
 }
@@ -0,0 +1,42 @@
+package com.crossover.trial.weather.model;
+
+/**
+ * A data point addressed to an airport and a point type, as sent by
+ * collectors in a batch update.
+ *
+ * @author Michele Mastrogiovanni
+ */
+public class DataPointRecord {
+
+	/** the 3 letter IATA code */
+	private String iata;
+
+	/** the point type, {@link DataPointType} for a complete list */
+	private String pointType;
+
+	/** the collected data point */
+	private DataPoint dataPoint;
+
+	/** used by json deserialization */
+	private DataPointRecord() {
+	}
+
+	public DataPointRecord(String iata, String pointType, DataPoint dataPoint) {
+		this.iata = iata;
+		this.pointType = pointType;
+		this.dataPoint = dataPoint;
+	}
+
+	public String getIata() {
+		return iata;
+	}
+
+	public String getPointType() {
+		return pointType;
+	}
+
+	public DataPoint getDataPoint() {
+		return dataPoint;
+	}
+
+}
@@ -0,0 +1,215 @@
+package com.crossover.trial.weather.model;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Approximate counts of the most frequent keys of a stream, in memory
+ * bounded whatever the number of distinct keys.
+ *
+ * A count-min sketch of depth rows by width counters estimates the count of
+ * any key: an estimate is never below the true count, and exceeds it by more
+ * than e / width of the total with probability at most e^-depth. Next to it
+ * the heaviest keys are tracked in a summary of fixed capacity that, as in
+ * Space-Saving, makes room for a heavier key by evicting its lightest one.
+ *
+ * Counting a key takes no lock: the summary is only entered, under a lock,
+ * by a key heavier than its lightest one, which gets rarer as the counts
+ * grow. Tracked keys store no count, they are estimated from the sketch
+ * when a report is built.
+ *
+ * @author Michele Mastrogiovanni
+ */
+public class HeavyHitterSketch {
+
+	private final int depth;
+
+	private final int mask;
+
+	/** counters of all the rows, row after row */
+	private final AtomicLongArray counters;
+
+	private final LongAdder total = new LongAdder();
+
+	private final int capacity;
+
+	/** heaviest keys seen, at most capacity */
+	private final Set<String> tracked = ConcurrentHashMap.newKeySet();
+
+	/** smallest estimate of a tracked key when last computed, estimates only grow */
+	private volatile long threshold;
+
+	/**
+	 * @param width Counters per row, rounded up to a power of two
+	 * @param depth Number of rows
+	 * @param capacity Number of heavy keys tracked
+	 */
+	public HeavyHitterSketch(int width, int depth, int capacity) {
+		if (width < 1 || depth < 1 || capacity < 1) {
+			throw new IllegalArgumentException("width, depth and capacity must be positive");
+		}
+		int size = Integer.highestOneBit(width);
+		size = size < width ? size << 1 : size;
+		this.depth = depth;
+		this.mask = size - 1;
+		this.counters = new AtomicLongArray(size * depth);
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Count an occurrence of a key.
+	 */
+	public void add(String key) {
+		total.increment();
+		long estimate = increment(key);
+		if (estimate <= threshold || tracked.contains(key)) {
+			return;
+		}
+		synchronized (this) {
+			if (tracked.contains(key)) {
+				return;
+			}
+			if (tracked.size() < capacity) {
+				tracked.add(key);
+				if (tracked.size() == capacity) {
+					threshold = estimate(lightest());
+				}
+				return;
+			}
+			String lightest = lightest();
+			if (estimate > estimate(lightest)) {
+				tracked.remove(lightest);
+				tracked.add(key);
+			}
+			threshold = estimate(lightest());
+		}
+	}
+
+	/**
+	 * @return Estimated count of a key, never below the true count
+	 */
+	public long estimate(String key) {
+		long hash = hash(key);
+		long min = Long.MAX_VALUE;
+		for (int row = 0; row < depth; row++) {
+			min = Math.min(min, counters.get(index(row, hash)));
+		}
+		return min;
+	}
+
+	/**
+	 * @return Number of occurrences counted
+	 */
+	public long total() {
+		return total.sum();
+	}
+
+	/**
+	 * @return Largest overestimation of a count with probability
+	 *         {@link #confidence()}: e / width of the total
+	 */
+	public long error() {
+		return (long) Math.ceil(Math.E / (mask + 1) * total());
+	}
+
+	/**
+	 * @return Probability for an estimate to be within {@link #error()}
+	 */
+	public double confidence() {
+		return 1 - Math.exp(-depth);
+	}
+
+	/**
+	 * @return Estimated count of the heaviest keys, heaviest first
+	 */
+	public Map<String, Long> top() {
+		List<Map.Entry<String, Long>> entries = new ArrayList<>();
+		for (String key : tracked) {
+			entries.add(new AbstractMap.SimpleImmutableEntry<>(key, estimate(key)));
+		}
+		Collections.sort(entries, Map.Entry.<String, Long> comparingByValue().reversed());
+		Map<String, Long> result = new LinkedHashMap<>();
+		for (Map.Entry<String, Long> entry : entries) {
+			result.put(entry.getKey(), entry.getValue());
+		}
+		return result;
+	}
+
+	/**
+	 * Forget all keys.
+	 */
+	public synchronized void clear() {
+		for (int i = 0; i < counters.length(); i++) {
+			counters.set(i, 0);
+		}
+		total.reset();
+		tracked.clear();
+		threshold = 0;
+	}
+
+	/**
+	 * Increment the counters of a key, one per row.
+	 *
+	 * @return Estimate of the key after the increment
+	 */
+	private long increment(String key) {
+		long hash = hash(key);
+		long min = Long.MAX_VALUE;
+		for (int row = 0; row < depth; row++) {
+			min = Math.min(min, counters.incrementAndGet(index(row, hash)));
+		}
+		return min;
+	}
+
+	/**
+	 * @return Tracked key with the smallest estimate, called holding the lock
+	 */
+	private String lightest() {
+		String result = null;
+		long min = Long.MAX_VALUE;
+		for (String key : tracked) {
+			long estimate = estimate(key);
+			if (estimate < min) {
+				min = estimate;
+				result = key;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return Index of the counter of a key hash in a row
+	 */
+	private int index(int row, long hash) {
+		int h1 = (int) hash;
+		int h2 = (int) (hash >>> 32) | 1;
+		return row * (mask + 1) + ((h1 + row * h2) & mask);
+	}
+
+	/**
+	 * Two independent row hashes are taken from the halves of a 64 bit hash,
+	 * row i using h1 + i * h2. The hash is computed over the characters, not
+	 * from {@link String#hashCode()}: keys sharing their 32 bit hash code
+	 * would share the counters of every row.
+	 */
+	private static long hash(String key) {
+		// 64 bit FNV-1a over the characters
+		long h = 0xcbf29ce484222325L;
+		for (int i = 0; i < key.length(); i++) {
+			h = (h ^ key.charAt(i)) * 0x100000001b3L;
+		}
+		// murmur3 finalizer spreads the bits to both halves
+		h = (h ^ (h >>> 33)) * 0xff51afd7ed558ccdL;
+		h = (h ^ (h >>> 33)) * 0xc4ceb9fe1a85ec53L;
+		return h ^ (h >>> 33);
+	}
+
+}
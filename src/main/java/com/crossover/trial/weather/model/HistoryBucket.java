@@ -0,0 +1,88 @@
+package com.crossover.trial.weather.model;
+
+/**
+ * Aggregate of the readings of one data point type collected in a time
+ * interval. With a single reading the values are the ones of its
+ * {@link DataPoint}; otherwise quartiles are approximated by their averages.
+ *
+ * @author Michele Mastrogiovanni
+ */
+public class HistoryBucket {
+
+	/** start of the interval, in milliseconds since UTC epoch */
+	private final long time;
+
+	/** number of readings in the interval */
+	private final int samples;
+
+	/** average of the means of the readings */
+	private final double mean;
+
+	/** lowest mean of the readings */
+	private final double min;
+
+	/** highest mean of the readings */
+	private final double max;
+
+	/** average of the first quartiles of the readings */
+	private final double first;
+
+	/** average of the medians of the readings */
+	private final double second;
+
+	/** average of the third quartiles of the readings */
+	private final double third;
+
+	/** total number of observations of the readings */
+	private final long count;
+
+	public HistoryBucket(long time, int samples, double mean, double min, double max, double first, double second,
+			double third, long count) {
+		this.time = time;
+		this.samples = samples;
+		this.mean = mean;
+		this.min = min;
+		this.max = max;
+		this.first = first;
+		this.second = second;
+		this.third = third;
+		this.count = count;
+	}
+
+	public long getTime() {
+		return time;
+	}
+
+	public int getSamples() {
+		return samples;
+	}
+
+	public double getMean() {
+		return mean;
+	}
+
+	public double getMin() {
+		return min;
+	}
+
+	public double getMax() {
+		return max;
+	}
+
+	public double getFirst() {
+		return first;
+	}
+
+	public double getSecond() {
+		return second;
+	}
+
+	public double getThird() {
+		return third;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+}
@@ -0,0 +1,119 @@
+package com.crossover.trial.weather.model;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts the items whose last update falls in a sliding time window, without
+ * scanning them. Update times are grouped in buckets of one minute kept in a
+ * ring as long as the window: a bucket is recycled when its minute leaves the
+ * window, so expiry needs no background work.
+ *
+ * Each bucket packs its minute and its count in one long updated with a
+ * compare-and-set: writers never block each other or the readers, and
+ * {@link #count(long)} reads a fixed number of buckets whatever the number of
+ * items. Items expire with a resolution of one minute.
+ *
+ * @author Michele Mastrogiovanni
+ */
+public class RecentUpdateCounter {
+
+	private static final long BUCKET_MILLIS = 60_000;
+
+	/** minute and count of each bucket */
+	private final AtomicLongArray buckets;
+
+	/** window length in minutes */
+	private final int window;
+
+	/**
+	 * @param windowMillis Length of the window in milliseconds
+	 */
+	public RecentUpdateCounter(long windowMillis) {
+		this.window = (int) (windowMillis / BUCKET_MILLIS);
+		this.buckets = new AtomicLongArray(window + 1);
+	}
+
+	/**
+	 * Count an item updated at the given time.
+	 *
+	 * @param time Update time in milliseconds since UTC epoch
+	 */
+	public void add(long time) {
+		update(time, 1);
+	}
+
+	/**
+	 * Stop counting an item previously added with the given time.
+	 *
+	 * @param time Update time the item was added with
+	 */
+	public void remove(long time) {
+		update(time, -1);
+	}
+
+	/**
+	 * @param now Current time in milliseconds since UTC epoch
+	 * @return Number of items updated in the window ending at now
+	 */
+	public int count(long now) {
+		int oldest = minute(now) - window;
+		int total = 0;
+		for (int i = 0; i < buckets.length(); i++) {
+			long bucket = buckets.get(i);
+			if (minuteOf(bucket) > oldest) {
+				total += countOf(bucket);
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * Forget all items.
+	 */
+	public void clear() {
+		for (int i = 0; i < buckets.length(); i++) {
+			buckets.set(i, 0);
+		}
+	}
+
+	private void update(long time, int delta) {
+		int minute = minute(time);
+		int index = Math.floorMod(minute, buckets.length());
+		while (true) {
+			long bucket = buckets.get(index);
+			int current = minuteOf(bucket);
+			long updated;
+			if (current == minute) {
+				updated = pack(minute, countOf(bucket) + delta);
+			} else if (current < minute) {
+				// bucket holds an older minute, out of the window: recycle it.
+				// A removal can arrive before the matching addition when two
+				// updates of the same item race, so it recycles the bucket too
+				updated = pack(minute, delta);
+			} else {
+				// time already out of the window
+				return;
+			}
+			if (buckets.compareAndSet(index, bucket, updated)) {
+				return;
+			}
+		}
+	}
+
+	private static int minute(long time) {
+		return (int) Math.floorDiv(time, BUCKET_MILLIS);
+	}
+
+	private static long pack(int minute, int count) {
+		return ((long) minute << 32) | (count & 0xffffffffL);
+	}
+
+	private static int minuteOf(long bucket) {
+		return (int) (bucket >> 32);
+	}
+
+	private static int countOf(long bucket) {
+		return (int) bucket;
+	}
+
+}
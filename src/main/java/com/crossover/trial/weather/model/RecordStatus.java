@@ -0,0 +1,44 @@
+package com.crossover.trial.weather.model;
+
+import javax.ws.rs.core.Response.Status;
+
+import com.crossover.trial.weather.exception.WeatherException;
+
+/**
+ * Outcome of a single record of a batch request.
+ *
+ * @author Michele Mastrogiovanni
+ */
+public class RecordStatus {
+
+	/** shared outcome of a successful record */
+	public static final RecordStatus OK = new RecordStatus(Status.OK.getStatusCode(), null);
+
+	/** HTTP status code the record would have had as a single request */
+	private final int status;
+
+	/** error message, null on success */
+	private final String message;
+
+	private RecordStatus(int status, String message) {
+		this.status = status;
+		this.message = message;
+	}
+
+	/**
+	 * @param e Error raised by the record
+	 * @return Failed outcome
+	 */
+	public static RecordStatus of(WeatherException e) {
+		return new RecordStatus(e.getStatus().getStatusCode(), e.getMessage());
+	}
+
+	public int getStatus() {
+		return status;
+	}
+
+	public String getMessage() {
+		return message;
+	}
+
+}
@@ -1,69 +1,217 @@
 package com.crossover.trial.weather.model;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import javax.ws.rs.core.Response.Status;
 
+import com.crossover.trial.weather.catalog.AirportCatalog;
 import com.crossover.trial.weather.exception.WeatherException;
-import com.crossover.trial.weather.utility.DistanceUtility;
+import com.crossover.trial.weather.history.WeatherHistory;
+import com.crossover.trial.weather.index.GridSpatialIndex;
+import com.crossover.trial.weather.index.NeighbourIndex;
+import com.crossover.trial.weather.index.SpatialIndex;
 import com.crossover.trial.weather.utility.ValidationUtility;
 
 /**
- * Singleton class used to maintain all data
+ * Singleton class used to maintain all data.
+ * 
+ * Reads never lock: all data lives in concurrent maps and in a spatial index
+ * that supports readers concurrent with a writer. Structural changes (adding
+ * or removing airports) are rare and serialized on a private lock, while
+ * weather updates swap immutable snapshots of atmospheric information with a
+ * compare-and-set on the airport they touch.
+ * 
+ * Airports can also come from a read-only {@link AirportCatalog}: catalog
+ * airports are served straight from the mapped file and get their own entry
+ * in the maps only when they receive weather data.
  * 
  * @author Michele Mastrogiovanni
  */
 public class Repository {
 
 	/**
-	 * Singleton instance of repository
+	 * Lazy holder of the singleton instance
+	 */
+	private static class Holder {
+		private static final Repository INSTANCE = new Repository();
+	}
+
+	/**
+	 * Only airports updated in this time span count in the data size
 	 */
-	private static Repository instance;
+	private static final long DATA_SIZE_WINDOW = 86400000;
+
+	/**
+	 * Order of the airports returned by radius queries
+	 */
+	private static final Comparator<AirportData> BY_IATA = Comparator.comparing(AirportData::getIata);
 
 	/**
 	 * All known airports infos. Key corresponds with iata of the related
 	 * airport.
 	 */
-	private Map<String, AirportData> airportData;
+	private final Map<String, AirportData> airportData;
 
 	/**
 	 * Atmospheric information for each airport. Key corresponds with iata of
 	 * the related airport.
 	 */
-	private Map<String, AtmosphericInformation> atmosphericInformation;
+	private final Map<String, AtmosphericInformation> atmosphericInformation;
+
+	/**
+	 * Spatial index of all known airports, used for radius queries. Neighbour
+	 * lists up to the weather.neighbours.radius system property (km) are
+	 * precomputed.
+	 */
+	private volatile SpatialIndex spatialIndex;
+
+	/**
+	 * Read-only airports known in addition to the ones added one by one, null if none.
+	 */
+	private volatile AirportCatalog catalog;
+
+	/**
+	 * Catalog airports deleted since the catalog was loaded
+	 */
+	private final Set<String> deletedFromCatalog = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Lock serializing changes to the set of known airports
+	 */
+	private final Object structureLock = new Object();
+
+	/**
+	 * Observers of the changes applied to the repository
+	 */
+	private final List<RepositoryListener> listeners = new CopyOnWriteArrayList<>();
+
+	/**
+	 * Recent readings of each airport. Capacity is set by the
+	 * weather.history.capacity system property.
+	 */
+	private final WeatherHistory history;
+
+	/**
+	 * Airports with some value updated in the last day
+	 */
+	private final RecentUpdateCounter recentlyUpdated = new RecentUpdateCounter(DATA_SIZE_WINDOW);
 
 	public static Repository getInstance() {
-		if (instance == null) {
-			instance = new Repository();
-		}
-		return instance;
+		return Holder.INSTANCE;
 	}
 
 	private Repository() {
-		airportData = new TreeMap<>();
-		atmosphericInformation = new TreeMap<>();
+		airportData = new ConcurrentHashMap<>();
+		atmosphericInformation = new ConcurrentHashMap<>();
+		spatialIndex = createSpatialIndex(Double.parseDouble(
+				System.getProperty("weather.neighbours.radius", String.valueOf(NeighbourIndex.DEFAULT_MAX_RADIUS))));
+		history = new WeatherHistory(Integer.getInteger("weather.history.capacity", WeatherHistory.DEFAULT_CAPACITY),
+				atmosphericInformation::containsKey);
+		listeners.add(history);
 		reset();
 	}
 
-	public synchronized void reset() {
-		airportData.clear();
-		atmosphericInformation.clear();
+	/**
+	 * @param neighbourRadius Largest radius answered from precomputed neighbour lists, 0 to disable them
+	 * @return An empty spatial index
+	 */
+	private static SpatialIndex createSpatialIndex(double neighbourRadius) {
+		return neighbourRadius > 0 ? new NeighbourIndex(neighbourRadius) : new GridSpatialIndex();
+	}
+
+	/**
+	 * Register an observer of the changes applied from now on.
+	 * 
+	 * @param listener Listener to add
+	 */
+	public void addListener(RepositoryListener listener) {
+		listeners.add(listener);
+	}
 
-		// Initializing data
-		addAirport("BOS", 42.364347, -71.005181);
-		addAirport("EWR", 40.6925, -74.168667);
-		addAirport("JFK", 40.639751, -73.778925);
-		addAirport("LGA", 40.777245, -73.872608);
-		addAirport("MMU", 40.79935, -74.4148747);
+	/**
+	 * @param listener Listener to remove
+	 */
+	public void removeListener(RepositoryListener listener) {
+		listeners.remove(listener);
 	}
 
 	/**
-	 * Update the airports weather data with the collected data.
+	 * Use a catalog as the base set of airports. Airports already added keep
+	 * precedence over the catalog ones with the same IATA code. Listeners are
+	 * not notified of the catalog airports, only of the catalog change.
+	 * 
+	 * @param catalog Catalog to use, null to remove the current one
+	 */
+	public void setCatalog(AirportCatalog catalog) {
+		synchronized (structureLock) {
+			deletedFromCatalog.clear();
+			this.catalog = catalog;
+			listeners.forEach(RepositoryListener::catalogChanged);
+		}
+	}
+
+	/**
+	 * @return Catalog in use, null if none
+	 */
+	public AirportCatalog getCatalog() {
+		return catalog;
+	}
+
+	/**
+	 * Remove all airports, catalog included, and their weather data.
+	 */
+	public void clear() {
+		synchronized (structureLock) {
+			catalog = null;
+			clearChanges();
+		}
+	}
+
+	/**
+	 * Remove the airports added one by one, the deletions of catalog airports
+	 * and all weather data, leaving the catalog as it was loaded.
+	 */
+	public void clearChanges() {
+		synchronized (structureLock) {
+			deletedFromCatalog.clear();
+			airportData.clear();
+			atmosphericInformation.clear();
+			recentlyUpdated.clear();
+			spatialIndex.clear();
+			listeners.forEach(RepositoryListener::cleared);
+		}
+	}
+
+	/**
+	 * Restore the initial content of the repository.
+	 */
+	public void reset() {
+		synchronized (structureLock) {
+			clear();
+
+			// Initializing data
+			addAirport("BOS", 42.364347, -71.005181);
+			addAirport("EWR", 40.6925, -74.168667);
+			addAirport("JFK", 40.639751, -73.778925);
+			addAirport("LGA", 40.777245, -73.872608);
+			addAirport("MMU", 40.79935, -74.4148747);
+		}
+	}
+
+	/**
+	 * Update the airports weather data with the collected data. The
+	 * atmospheric information of the airport is replaced by an updated
+	 * snapshot with a compare-and-set, so updates of different airports run
+	 * in parallel and readers always see a consistent version.
 	 * 
 	 * @param iataCode the 3 letter IATA code
 	 * @param pointType the point type {@link DataPointType}
@@ -71,46 +219,211 @@ public class Repository {
 	 * @return True is data point was added. False if airport for given IATA code was not found
 	 * @throws WeatherException 
 	 */
-	public synchronized boolean addDataPoint(String iataCode, DataPointType pointType, DataPoint dp) throws WeatherException {
-		AtmosphericInformation ai = atmosphericInformation.get(iataCode);
-		if (ai == null) {
-			throw new WeatherException("airport not found", Status.BAD_REQUEST);
+	public boolean addDataPoint(String iataCode, DataPointType pointType, DataPoint dp) throws WeatherException {
+		return addDataPoint(iataCode, pointType, dp, System.currentTimeMillis());
+	}
+
+	/**
+	 * Update the airports weather data with data collected at a given time.
+	 * 
+	 * @param iataCode the 3 letter IATA code
+	 * @param pointType the point type {@link DataPointType}
+	 * @param dp a datapoint object holding pointType data
+	 * @param updateTime time of the update in milliseconds since UTC epoch
+	 * @return True is data point was added
+	 * @throws WeatherException airport not found or data point not valid
+	 * @see #addDataPoint(String, DataPointType, DataPoint)
+	 */
+	public boolean addDataPoint(String iataCode, DataPointType pointType, DataPoint dp, long updateTime) throws WeatherException {
+		checkDataPoint(pointType, dp);
+		AtmosphericInformation current;
+		AtmosphericInformation updated;
+		do {
+			current = getOrCreateAtmosphericInformation(iataCode);
+			if (current == null) {
+				throw new WeatherException("airport not found", Status.BAD_REQUEST);
+			}
+			updated = current.with(pointType, dp, updateTime);
+		} while (!atmosphericInformation.replace(iataCode, current, updated));
+		countUpdate(current, updated);
+		for (RepositoryListener listener : listeners) {
+			listener.dataPointAdded(iataCode, pointType, dp, updated);
 		}
-		update(ai, pointType, dp);
 		return true;
 	}
 
-	public synchronized List<AirportData> getAirportsFromIataInRadius(String iataCode, double radius) throws WeatherException {
+	/**
+	 * Update the weather data of many airports in a single pass. Records are
+	 * validated one by one; the valid ones are grouped by airport so each
+	 * airport snapshot is replaced only once, whatever the number of its
+	 * records in the batch.
+	 *
+	 * @param records the data points to store
+	 * @return the outcome of each record, in the same order of records
+	 */
+	public List<RecordStatus> addDataPoints(List<DataPointRecord> records) {
+
+		RecordStatus[] result = new RecordStatus[records.size()];
+
+		// indexes of valid records grouped by normalized IATA code
+		Map<String, List<Integer>> byAirport = new LinkedHashMap<>();
+		DataPointType[] types = new DataPointType[records.size()];
+
+		for (int i = 0; i < records.size(); i++) {
+			DataPointRecord record = records.get(i);
+			try {
+				if (record == null) {
+					throw new WeatherException("record cannot be an empty value", Status.BAD_REQUEST);
+				}
+				String iataCode = ValidationUtility.checkIataCode(record.getIata());
+				ValidationUtility.checkNotNull("point type", record.getPointType());
+				types[i] = ValidationUtility.isADataPoint("point type", record.getPointType());
+				checkDataPoint(types[i], record.getDataPoint());
+				byAirport.computeIfAbsent(iataCode, k -> new ArrayList<>()).add(i);
+			} catch (WeatherException e) {
+				result[i] = RecordStatus.of(e);
+			}
+		}
+
+		for (Map.Entry<String, List<Integer>> entry : byAirport.entrySet()) {
+			RecordStatus status = RecordStatus.OK;
+			AtmosphericInformation current;
+			AtmosphericInformation updated = null;
+			do {
+				current = getOrCreateAtmosphericInformation(entry.getKey());
+				if (current == null) {
+					status = RecordStatus.of(new WeatherException("airport not found", Status.BAD_REQUEST));
+					break;
+				}
+				long now = System.currentTimeMillis();
+				updated = current;
+				for (int i : entry.getValue()) {
+					updated = updated.with(types[i], records.get(i).getDataPoint(), now);
+				}
+			} while (!atmosphericInformation.replace(entry.getKey(), current, updated));
+			if (status == RecordStatus.OK) {
+				countUpdate(current, updated);
+			}
+			for (int i : entry.getValue()) {
+				result[i] = status;
+				if (status == RecordStatus.OK) {
+					for (RepositoryListener listener : listeners) {
+						listener.dataPointAdded(entry.getKey(), types[i], records.get(i).getDataPoint(), updated);
+					}
+				}
+			}
+		}
+
+		return Arrays.asList(result);
+
+	}
+
+	/**
+	 * Find the airports within a radius from a given airport.
+	 *
+	 * @param iataCode the 3 letter IATA code of the origin
+	 * @param radius the radius in km
+	 * @return Airports in radius, origin included, sorted by IATA code. Empty if origin is unknown.
+	 *         Only the origin for a zero radius
+	 * @throws WeatherException Invalid IATA code or negative radius
+	 */
+	public List<AirportData> getAirportsFromIataInRadius(String iataCode, double radius) throws WeatherException {
 
 		ValidationUtility.checkRadius(radius);
 
 		iataCode = ValidationUtility.checkIataCode(iataCode);
 
-		AirportData origin = airportData.get(iataCode);
-
-		List<AirportData> result = new ArrayList<>();
+		AirportData origin = findAirportData(iataCode);
 
 		if (origin == null) {
+			return new ArrayList<>();
+		}
+
+		// the most frequent query: the airport itself, no geometry needed
+		if (radius == 0) {
+			List<AirportData> result = new ArrayList<>(1);
+			result.add(origin);
 			return result;
 		}
 
-		airportData.values().stream()
-			.filter(x -> DistanceUtility.calculateDistance(origin, x) <= radius)
-			.forEach(result::add);
-		
+		List<AirportData> result = spatialIndex.findInRadius(origin, radius);
+
+		AirportCatalog catalog = this.catalog;
+		if (catalog != null) {
+			catalog.forEachInRadius(origin.getLatitude(), origin.getLongitude(), radius, i -> {
+				String iata = catalog.getIata(i);
+				if (!airportData.containsKey(iata) && !deletedFromCatalog.contains(iata)) {
+					result.add(catalog.getAirport(i));
+				}
+			});
+		}
+
+		// the spatial index returns them in its own order
+		result.sort(BY_IATA);
+
 		return result;
 
 	}
 
-	public synchronized AtmosphericInformation getAtmosphericInformation(String iataCode) {
-		return atmosphericInformation.get(iataCode);
+	/**
+	 * Replace the spatial index used for radius queries. The new index is
+	 * populated with all known airports.
+	 * 
+	 * @param index Empty index to use from now on
+	 */
+	public void setSpatialIndex(SpatialIndex index) {
+		synchronized (structureLock) {
+			index.clear();
+			airportData.values().forEach(index::add);
+			spatialIndex = index;
+		}
+	}
+
+	/**
+	 * @return Recent readings of the airports
+	 */
+	public WeatherHistory getHistory() {
+		return history;
+	}
+
+	public AtmosphericInformation getAtmosphericInformation(String iataCode) {
+		AtmosphericInformation ai = atmosphericInformation.get(iataCode);
+		if (ai == null && findInCatalog(iataCode) >= 0) {
+			return new AtmosphericInformation();
+		}
+		return ai;
 	}
 
 	/**
 	 * @return Return list of iata code of contained airports
 	 */
-	public synchronized Set<String> getAirports() {
-		return new TreeSet<String>(airportData.keySet());
+	public Set<String> getAirports() {
+		Set<String> result = new TreeSet<String>(airportData.keySet());
+		AirportCatalog catalog = this.catalog;
+		if (catalog != null) {
+			for (int i = 0; i < catalog.size(); i++) {
+				result.add(catalog.getIata(i));
+			}
+			result.removeAll(deletedFromCatalog);
+			result.addAll(airportData.keySet());
+		}
+		return result;
+	}
+
+	/**
+	 * @return IATA codes of the airports added one by one and of the catalog
+	 *         airports that received weather data: what differs from the
+	 *         catalog besides the deletions
+	 */
+	public Set<String> getChangedAirports() {
+		return new TreeSet<String>(atmosphericInformation.keySet());
+	}
+
+	/**
+	 * @return IATA codes of the catalog airports deleted since the catalog was loaded
+	 */
+	public Set<String> getDeletedFromCatalog() {
+		return new TreeSet<String>(deletedFromCatalog);
 	}
 
 	/**
@@ -122,22 +435,59 @@ public class Repository {
 	 *
 	 * @return the added airport
 	 */
-	public synchronized AirportData addAirport(String iataCode, double latitude, double longitude) {
+	public AirportData addAirport(String iataCode, double latitude, double longitude) {
 
-		AirportData ad = new AirportData.Builder(iataCode).withLat(latitude).withLon(longitude).build();
+		synchronized (structureLock) {
 
-		AirportData old = null;
+			AirportData old = findAirportData(iataCode);
+			if (old != null) {
+				return old;
+			}
+
+			AirportData ad = new AirportData.Builder(iataCode).withLat(latitude).withLon(longitude).build();
+
+			// atmospheric information must be there before the airport is visible to queries
+			atmosphericInformation.put(iataCode, new AtmosphericInformation());
+			airportData.put(iataCode, ad);
+			spatialIndex.add(ad);
+
+			for (RepositoryListener listener : listeners) {
+				listener.airportAdded(ad);
+			}
+
+			return ad;
 
-		old = airportData.get(iataCode);
-		if (old != null) {
-			return old;
 		}
-		airportData.put(iataCode, ad);
 
-		AtmosphericInformation ai = new AtmosphericInformation();
-		atmosphericInformation.put(iataCode, ai);
+	}
 
-		return ad;
+	/**
+	 * Add many airports to our list in a single operation. Invalid records are
+	 * skipped and reported; airports already known are left untouched.
+	 *
+	 * @param records the airports to add
+	 * @return the outcome of each record, in the same order of records
+	 */
+	public List<RecordStatus> addAirports(List<AirportRecord> records) {
+
+		List<RecordStatus> result = new ArrayList<>(records.size());
+
+		synchronized (structureLock) {
+			for (AirportRecord record : records) {
+				try {
+					if (record == null) {
+						throw new WeatherException("record cannot be an empty value", Status.BAD_REQUEST);
+					}
+					AirportData ad = ValidationUtility.isAnAirport(record.getIata(), record.getLatitude(), record.getLongitude());
+					addAirport(ad.getIata(), ad.getLatitude(), ad.getLongitude());
+					result.add(RecordStatus.OK);
+				} catch (WeatherException e) {
+					result.add(RecordStatus.of(e));
+				}
+			}
+		}
+
+		return result;
 
 	}
 
@@ -146,13 +496,30 @@ public class Repository {
 	 * 
 	 * @return True if airport was deleted
 	 */
-	public synchronized boolean deleteAirport(String iataCode) {
-		boolean ret = airportData.remove(iataCode) != null;
-		if (ret == false) {
-			return ret;
+	public boolean deleteAirport(String iataCode) {
+		synchronized (structureLock) {
+			AirportData ad = airportData.remove(iataCode);
+			if (ad != null) {
+				spatialIndex.remove(ad);
+			} else {
+				int index = findInCatalog(iataCode);
+				if (index < 0) {
+					return false;
+				}
+				ad = catalog.getAirport(index);
+			}
+			if (catalog != null && catalog.indexOf(iataCode) >= 0) {
+				deletedFromCatalog.add(iataCode);
+			}
+			AtmosphericInformation ai = atmosphericInformation.remove(iataCode);
+			if (ai != null && ai.hasSomeValue()) {
+				recentlyUpdated.remove(ai.getLastUpdateTime());
+			}
+			for (RepositoryListener listener : listeners) {
+				listener.airportDeleted(ad);
+			}
+			return true;
 		}
-		atmosphericInformation.remove(iataCode);
-		return ret;
 	}
 
 	/**
@@ -162,91 +529,110 @@ public class Repository {
 	 *            as a string
 	 * @return airport data or null if not found
 	 */
-	public synchronized AirportData findAirportData(String iataCode) {
-		return airportData.get(iataCode);
+	public AirportData findAirportData(String iataCode) {
+		AirportData ad = airportData.get(iataCode);
+		if (ad == null) {
+			int index = findInCatalog(iataCode);
+			if (index >= 0) {
+				return catalog.getAirport(index);
+			}
+		}
+		return ad;
+	}
+
+	/**
+	 * @param iataCode the 3 letter IATA code
+	 * @return Index of the airport in the catalog, -1 if missing or deleted
+	 */
+	private int findInCatalog(String iataCode) {
+		AirportCatalog catalog = this.catalog;
+		if (catalog == null || iataCode == null || deletedFromCatalog.contains(iataCode)) {
+			return -1;
+		}
+		return catalog.indexOf(iataCode);
 	}
 
-	public synchronized int getDataSize() {
-		int datasize = 0;
-		for (AtmosphericInformation ai : atmosphericInformation.values()) {
-			// we only count recent readings
-			if (ai.hasSomeValue()) {
-				// updated in the last day
-				if (ai.getLastUpdateTime() > System.currentTimeMillis() - 86400000) {
-					datasize++;
+	/**
+	 * Atmospheric information of an airport, created on the first update of
+	 * a catalog airport.
+	 *
+	 * @return null if the airport is unknown
+	 */
+	private AtmosphericInformation getOrCreateAtmosphericInformation(String iataCode) {
+		AtmosphericInformation ai = atmosphericInformation.get(iataCode);
+		if (ai == null && findInCatalog(iataCode) >= 0) {
+			synchronized (structureLock) {
+				if (findInCatalog(iataCode) >= 0) {
+					ai = atmosphericInformation.computeIfAbsent(iataCode, k -> new AtmosphericInformation());
 				}
 			}
 		}
-		return datasize;
+		return ai;
 	}
 
 	/**
-	 * update atmospheric information with the given data point for the given
-	 * point type
+	 * @return Number of airports with some value updated in the last day
+	 */
+	public int getDataSize() {
+		return recentlyUpdated.count(System.currentTimeMillis());
+	}
+
+	/**
+	 * Move an airport from the time of its previous update to the new one in
+	 * the count of recently updated airports.
+	 */
+	private void countUpdate(AtmosphericInformation previous, AtmosphericInformation updated) {
+		if (previous.hasSomeValue()) {
+			recentlyUpdated.remove(previous.getLastUpdateTime());
+		}
+		recentlyUpdated.add(updated.getLastUpdateTime());
+	}
+
+	/**
+	 * Verify that a data point can be stored for the given point type
 	 *
-	 * @param ai the atmospheric information object to update
-	 * @param pointType the data point type as a string
+	 * @param dptype the data point type
 	 * @param dp the actual data point
+	 * @throws WeatherException type is missing or data point is out of the range of its type
 	 */
-	private void update(AtmosphericInformation ai, DataPointType dptype, DataPoint dp) throws WeatherException {
+	private void checkDataPoint(DataPointType dptype, DataPoint dp) throws WeatherException {
 		
 		if ( dptype == null ) {
 			throw new WeatherException("type of data to upload must be specified", Status.BAD_REQUEST);
 		}
 
+		if ( dp == null || !isInRange(dptype, dp.getMean()) ) {
+			throw new WeatherException("couldn't update atmospheric data", Status.BAD_REQUEST);
+		}
+
+	}
+
+	/**
+	 * @param dptype the data point type
+	 * @param mean the mean of the observations
+	 * @return True if mean is an acceptable value for the point type
+	 */
+	private static boolean isInRange(DataPointType dptype, double mean) {
+
 		switch (dptype) {
 		case WIND:
-			if (dp.getMean() >= 0) {
-				ai.setWind(dp);
-				ai.setLastUpdateTime(System.currentTimeMillis());
-				return;
-			}
-			break;
+			return mean >= 0;
 
 		case CLOUDCOVER:
-			if (dp.getMean() >= 0 && dp.getMean() < 100) {
-				ai.setCloudCover(dp);
-				ai.setLastUpdateTime(System.currentTimeMillis());
-				return;
-			}
-			break;
-
 		case HUMIDTY:
-			if (dp.getMean() >= 0 && dp.getMean() < 100) {
-				ai.setHumidity(dp);
-				ai.setLastUpdateTime(System.currentTimeMillis());
-				return;
-			}
-			break;
-
 		case PRECIPITATION:
-			if (dp.getMean() >= 0 && dp.getMean() < 100) {
-				ai.setPrecipitation(dp);
-				ai.setLastUpdateTime(System.currentTimeMillis());
-				return;
-			}
-			break;
+			return mean >= 0 && mean < 100;
 
 		case PRESSURE:
-			if (dp.getMean() >= 650 && dp.getMean() < 800) {
-				ai.setPressure(dp);
-				ai.setLastUpdateTime(System.currentTimeMillis());
-				return;
-			}
-			break;
+			return mean >= 650 && mean < 800;
 
 		case TEMPERATURE:
-			if (dp.getMean() >= -50 && dp.getMean() < 100) {
-				ai.setTemperature(dp);
-				ai.setLastUpdateTime(System.currentTimeMillis());
-				return;
-			}
-			break;
+			return mean >= -50 && mean < 100;
 
+		default:
+			return false;
 		}
 
-		throw new WeatherException("couldn't update atmospheric data", Status.BAD_REQUEST);
-
 	}
 
 }
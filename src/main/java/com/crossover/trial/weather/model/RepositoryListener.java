@@ -0,0 +1,48 @@
+package com.crossover.trial.weather.model;
+
+/**
+ * Receives the changes applied to the {@link Repository}. Structural changes
+ * are notified while the repository structure lock is held, so they arrive in
+ * the order they were applied; data point notifications arrive on the thread
+ * of the writer, after the new snapshot is visible.
+ *
+ * Listeners are invoked on the request path and must return quickly.
+ *
+ * @author Michele Mastrogiovanni
+ */
+public interface RepositoryListener {
+
+	/**
+	 * All airports and their weather data have been removed.
+	 */
+	default void cleared() {
+	}
+
+	/**
+	 * The airport catalog has been replaced or removed.
+	 */
+	default void catalogChanged() {
+	}
+
+	/**
+	 * @param airport Airport added to the repository
+	 */
+	default void airportAdded(AirportData airport) {
+	}
+
+	/**
+	 * @param airport Airport removed from the repository
+	 */
+	default void airportDeleted(AirportData airport) {
+	}
+
+	/**
+	 * @param iataCode the 3 letter IATA code of the updated airport
+	 * @param pointType the type of the stored data point
+	 * @param dp the stored data point
+	 * @param updated the atmospheric information of the airport after the update
+	 */
+	default void dataPointAdded(String iataCode, DataPointType pointType, DataPoint dp, AtmosphericInformation updated) {
+	}
+
+}
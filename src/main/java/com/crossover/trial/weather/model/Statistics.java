@@ -1,17 +1,48 @@
 package com.crossover.trial.weather.model;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Singleton class used to maintain all statistics.
- * 
+ *
+ * Recording a request takes no lock and allocates nothing: counters are
+ * {@link LongAdder}s, striped across threads, found by index. Reports are
+ * built on demand from the current sums.
+ *
+ * Requests of IATA codes are counted exactly by default, and reported by
+ * {@link #getIataFreq()}. With the system property
+ * weather.statistics.mode=sketch they are counted by a
+ * {@link HeavyHitterSketch} instead, in memory bounded whatever the codes
+ * requested: {@link #getIataFreq()} is then not available, and only the most
+ * requested airports are reported by {@link #getTopRequests()}, with the
+ * error bound of their fractions. The sketch size is set by the properties
+ * weather.statistics.sketchWidth (default 4096),
+ * weather.statistics.sketchDepth (default 4) and
+ * weather.statistics.topAirports (default 100).
+ *
  * @author Michele Mastrogiovanni
  */
 public class Statistics {
-	
-	private static Statistics instance;
-	
+
+	/** letters of an IATA code */
+	private static final int LETTERS = 26;
+
+	/** radius histogram buckets: queries are counted by radius modulo 10 */
+	private static final int RADIUS_BUCKETS = 10;
+
+	/**
+	 * Lazy holder of the singleton instance
+	 */
+	private static class Holder {
+		private static final Statistics INSTANCE = new Statistics(
+				"sketch".equals(System.getProperty("weather.statistics.mode")));
+	}
+
 	/**
 	 * Internal performance counter to better understand most requested
 	 * information, this map can be improved but for now provides the basis for
@@ -19,26 +50,68 @@ public class Statistics {
 	 * architecture we don't want to write this to disk, but will pull it off
 	 * using a REST request and aggregate with other performance metrics
 	 * {@link #ping()}
+	 *
+	 * Requests of each IATA code made of three letters, at the dense index
+	 * given by {@link #indexOf(String)}.
 	 */
-	private Map<String, Integer> requestFrequency;
-	
-	private Map<Double, Integer> radiusFreq;
+	private final LongAdder[] requestFrequency;
+
+	/**
+	 * Requests of IATA codes that are not three letters, null in sketch mode
+	 */
+	private final Map<String, LongAdder> otherRequestFrequency;
+
+	/**
+	 * Approximate requests of IATA codes, replacing the exact counters in
+	 * sketch mode, null otherwise
+	 */
+	private final HeavyHitterSketch topRequests;
+
+	private final LongAdder[] radiusFreq;
+
+	/** largest radius requested, truncated to integer */
+	private final LongAccumulator maxRadius;
 
 	public static Statistics getInstance() {
-		if ( instance == null ) {
-			instance = new Statistics();
-		}
-		return instance;
+		return Holder.INSTANCE;
 	}
-	
-	private Statistics() {
-		requestFrequency = new HashMap<String, Integer>();
-		radiusFreq = new HashMap<Double, Integer>();
+
+	private Statistics(boolean sketch) {
+		if (sketch) {
+			requestFrequency = new LongAdder[0];
+			otherRequestFrequency = null;
+			topRequests = new HeavyHitterSketch(
+					Integer.getInteger("weather.statistics.sketchWidth", 4096),
+					Integer.getInteger("weather.statistics.sketchDepth", 4),
+					Integer.getInteger("weather.statistics.topAirports", 100));
+		} else {
+			requestFrequency = new LongAdder[LETTERS * LETTERS * LETTERS];
+			for (int i = 0; i < requestFrequency.length; i++) {
+				requestFrequency[i] = new LongAdder();
+			}
+			otherRequestFrequency = new ConcurrentHashMap<>();
+			topRequests = null;
+		}
+		radiusFreq = new LongAdder[RADIUS_BUCKETS];
+		for (int i = 0; i < radiusFreq.length; i++) {
+			radiusFreq[i] = new LongAdder();
+		}
+		maxRadius = new LongAccumulator(Math::max, -1);
 	}
 
-	public synchronized void reset() {
-		requestFrequency.clear();
-		radiusFreq.clear();
+	public void reset() {
+		for (LongAdder counter : requestFrequency) {
+			counter.reset();
+		}
+		if (topRequests != null) {
+			topRequests.clear();
+		} else {
+			otherRequestFrequency.clear();
+		}
+		for (LongAdder counter : radiusFreq) {
+			counter.reset();
+		}
+		maxRadius.reset();
 	}
 
     /**
@@ -47,47 +120,126 @@ public class Statistics {
      * @param iata an iata code
      * @param radius query radius
      */
-    public void updateRequestFrequency(String iata, Double radius) {
-    	synchronized (this) {
-    		requestFrequency.put(iata, requestFrequency.getOrDefault(iata, 0) + 1);
-    		radiusFreq.put(radius, radiusFreq.getOrDefault(radius, 0) + 1);
+    public void updateRequestFrequency(String iata, double radius) {
+    	int index;
+    	if ( topRequests != null ) {
+    		topRequests.add(iata);
+    	} else if ( (index = indexOf(iata)) >= 0 ) {
+    		requestFrequency[index].increment();
+    	} else {
+    		LongAdder counter = otherRequestFrequency.get(iata);
+    		if ( counter == null ) {
+    			counter = otherRequestFrequency.computeIfAbsent(iata, k -> new LongAdder());
+    		}
+    		counter.increment();
     	}
+    	int intRadius = (int) radius;
+    	radiusFreq[intRadius % RADIUS_BUCKETS].increment();
+    	maxRadius.accumulate(intRadius);
     }
 
+	/**
+	 * Requests made for each known airport, divided by the number of distinct
+	 * IATA codes requested.
+	 *
+	 * @return Frequency of requests by IATA code, null in sketch mode
+	 */
 	public Map<String, Double> getIataFreq() {
-		
-    	synchronized (this) {
 
-    		Map<String, Double> freq = new HashMap<>();
+		if (topRequests != null) {
+			return null;
+		}
 
-    		// fraction of queries
-    		for (String iata : Repository.getInstance().getAirports()) {
-    			double frac = (double) requestFrequency.getOrDefault(iata, 0) / requestFrequency.size();
-    			freq.put(iata, frac);
-    		}
+		Map<String, Double> freq = new HashMap<>();
 
-    		return freq;
+		// number of distinct codes requested
+		long requested = otherRequestFrequency.size();
+		for (LongAdder counter : requestFrequency) {
+			if (counter.sum() > 0) {
+				requested++;
+			}
+		}
 
-    	}
-    	
+		// fraction of queries, none before the first request
+		for (String iata : Repository.getInstance().getAirports()) {
+			double frac = (double) count(iata) / Math.max(requested, 1);
+			freq.put(iata, frac);
+		}
+
+		return freq;
+
+	}
+
+	/**
+	 * Most requested airports in sketch mode, each with its estimated fraction
+	 * of all the requests: the true fraction is at most the reported one and,
+	 * with the given confidence, at least the reported one minus the error.
+	 *
+	 * @return Number of requests counted, error, confidence and the fraction
+	 *         of each airport, most requested first, null unless in sketch mode
+	 */
+	public Map<String, Object> getTopRequests() {
+		if (topRequests == null) {
+			return null;
+		}
+		long requests = topRequests.total();
+		double total = Math.max(requests, 1);
+		Map<String, Double> airports = new LinkedHashMap<>();
+		for (Map.Entry<String, Long> entry : topRequests.top().entrySet()) {
+			airports.put(entry.getKey(), entry.getValue() / total);
+		}
+		Map<String, Object> result = new LinkedHashMap<>();
+		result.put("requests", requests);
+		result.put("error", topRequests.error() / total);
+		result.put("confidence", topRequests.confidence());
+		result.put("airports", airports);
+		return result;
 	}
-	
+
 	public int[] getRadiusFreqHistogram() {
-		
-    	synchronized (this) {
 
-    		int m = radiusFreq.keySet().stream().max(Double::compare).orElse(1000.0).intValue() + 1;
+		long max = maxRadius.get();
+		int m = (max < 0 ? 1000 : (int) max) + 1;
 
-    		int[] hist = new int[m];
-    		for (Map.Entry<Double, Integer> e : radiusFreq.entrySet()) {
-    			int i = e.getKey().intValue() % 10;
-    			hist[i] += e.getValue();
-    		}
+		int[] hist = new int[m];
+		for (int i = 0; i < RADIUS_BUCKETS && i < m; i++) {
+			hist[i] = (int) radiusFreq[i].sum();
+		}
 
-    		return hist;
-    		
-    	}
-		
+		return hist;
+
+	}
+
+	/**
+	 * @return Number of requests of an IATA code
+	 */
+	private long count(String iata) {
+		int index = indexOf(iata);
+		if (index >= 0) {
+			return requestFrequency[index].sum();
+		}
+		LongAdder counter = otherRequestFrequency.get(iata);
+		return counter == null ? 0 : counter.sum();
+	}
+
+	/**
+	 * Dense index of an IATA code made of three upper case letters.
+	 *
+	 * @return Index in [0, 26^3), -1 for any other code
+	 */
+	private static int indexOf(String iata) {
+		if (iata == null || iata.length() != 3) {
+			return -1;
+		}
+		int index = 0;
+		for (int i = 0; i < 3; i++) {
+			int letter = iata.charAt(i) - 'A';
+			if (letter < 0 || letter >= LETTERS) {
+				return -1;
+			}
+			index = index * LETTERS + letter;
+		}
+		return index;
 	}
 
 }
@@ -0,0 +1,277 @@
+package com.crossover.trial.weather.persistence;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.crossover.trial.weather.exception.WeatherException;
+import com.crossover.trial.weather.model.AirportData;
+import com.crossover.trial.weather.model.AtmosphericInformation;
+import com.crossover.trial.weather.model.DataPoint;
+import com.crossover.trial.weather.model.DataPointType;
+import com.crossover.trial.weather.model.Repository;
+import com.crossover.trial.weather.model.RepositoryListener;
+
+/**
+ * Optional persistence of the {@link Repository}: every change is appended to
+ * a {@link WriteAheadLog} and a {@link SnapshotStore} periodically saves the
+ * whole state, so the log only has to be replayed from the last snapshot.
+ *
+ * With a catalog in use, snapshot and log only hold the changes made on top
+ * of it: the catalog stays mapped after a restart, nothing of it is copied.
+ *
+ * Data points are appended after the compare-and-set that stored them, so two
+ * concurrent updates of an airport can reach the log in the opposite order.
+ * Each record carries the version of the atmospheric information it produced
+ * and the replay skips a record older than the one already applied for the
+ * same airport and point type, or than the airport in the snapshot.
+ *
+ * @author Michele Mastrogiovanni
+ */
+public class PersistenceManager implements RepositoryListener, Closeable {
+
+	private static final Logger LOGGER = Logger.getLogger(PersistenceManager.class.getName());
+
+	private static final byte CLEAR = 0;
+
+	private static final byte ADD_AIRPORT = 1;
+
+	private static final byte DELETE_AIRPORT = 2;
+
+	private static final byte VERSIONED_DATA_POINT = 4;
+
+	private static final DataPointType[] TYPES = DataPointType.values();
+
+	private final File directory;
+
+	private final long syncMillis;
+
+	private final long snapshotSeconds;
+
+	private final SnapshotStore snapshots;
+
+	private Repository repository;
+
+	private WriteAheadLog log;
+
+	private ScheduledExecutorService scheduler;
+
+	/** version of each airport in the snapshot, used during the replay */
+	private final Map<String, Long> snapshotVersions = new HashMap<>();
+
+	/** version of the last record applied for an airport and point type, used during the replay */
+	private final Map<String, Long> appliedVersions = new HashMap<>();
+
+	/**
+	 * @param directory Directory holding snapshot and log
+	 * @param syncMillis Interval between two forces of the log to disk
+	 * @param snapshotSeconds Interval between two snapshots
+	 */
+	public PersistenceManager(File directory, long syncMillis, long snapshotSeconds) {
+		this.directory = directory;
+		this.syncMillis = syncMillis;
+		this.snapshotSeconds = snapshotSeconds;
+		this.snapshots = new SnapshotStore(directory);
+	}
+
+	/**
+	 * Recover the repository from the last snapshot and the log written after
+	 * it, then start logging the changes of the repository.
+	 *
+	 * @param repository Repository to recover and persist
+	 * @throws IOException Error reading or writing the files
+	 */
+	public void start(Repository repository) throws IOException {
+
+		this.repository = repository;
+
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Cannot create data directory " + directory);
+		}
+
+		long start = System.currentTimeMillis();
+		long fromSequence = snapshots.exists() ? snapshots.read(repository, snapshotVersions) : 0;
+		long replayed = WriteAheadLog.replay(directory, fromSequence, this::apply);
+		snapshotVersions.clear();
+		appliedVersions.clear();
+		LOGGER.log(Level.INFO, String.format("Recovered %d airports and %d log records in %d ms",
+				repository.getAirports().size(), replayed, System.currentTimeMillis() - start));
+
+		log = new WriteAheadLog(directory, syncMillis);
+		repository.addListener(this);
+
+		// start from a clean state: the recovered data becomes the first snapshot
+		snapshot();
+
+		scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "snapshot-writer");
+			thread.setDaemon(true);
+			return thread;
+		});
+		scheduler.scheduleWithFixedDelay(this::snapshotQuietly, snapshotSeconds, snapshotSeconds, TimeUnit.SECONDS);
+
+	}
+
+	/**
+	 * Save the whole repository and drop the log segments it covers.
+	 *
+	 * @throws IOException Error writing snapshot or log
+	 */
+	public synchronized void snapshot() throws IOException {
+		long start = System.currentTimeMillis();
+		long sequence = log.rotate();
+		int airports = snapshots.write(repository, sequence);
+		log.deleteBefore(sequence);
+		LOGGER.log(Level.FINE, String.format("Snapshot of %d airports written in %d ms", airports, System.currentTimeMillis() - start));
+	}
+
+	/**
+	 * Stop logging and write the pending records.
+	 */
+	@Override
+	public void close() throws IOException {
+		repository.removeListener(this);
+		scheduler.shutdown();
+		log.close();
+	}
+
+	@Override
+	public void cleared() {
+		// the second byte tells whether the catalog was kept
+		log.append(new byte[] { CLEAR, (byte) (repository.getCatalog() != null ? 1 : 0) });
+	}
+
+	@Override
+	public void airportAdded(AirportData airport) {
+		log.append(encode(out -> {
+			out.writeByte(ADD_AIRPORT);
+			out.writeUTF(airport.getIata());
+			out.writeDouble(airport.getLatitude());
+			out.writeDouble(airport.getLongitude());
+		}));
+	}
+
+	@Override
+	public void airportDeleted(AirportData airport) {
+		log.append(encode(out -> {
+			out.writeByte(DELETE_AIRPORT);
+			out.writeUTF(airport.getIata());
+		}));
+	}
+
+	@Override
+	public void dataPointAdded(String iataCode, DataPointType pointType, DataPoint dp, AtmosphericInformation updated) {
+		log.append(encode(out -> {
+			out.writeByte(VERSIONED_DATA_POINT);
+			out.writeUTF(iataCode);
+			out.writeByte(pointType.ordinal());
+			out.writeLong(updated.version());
+			out.writeLong(updated.getLastUpdateTime());
+			SnapshotStore.writeDataPoint(out, dp);
+		}));
+	}
+
+	/**
+	 * Apply a log record to the repository.
+	 */
+	private void apply(byte[] record) {
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(record))) {
+			switch (in.readByte()) {
+			case CLEAR:
+				if (record.length > 1 && record[1] != 0) {
+					repository.clearChanges();
+				} else {
+					repository.clear();
+				}
+				snapshotVersions.clear();
+				appliedVersions.clear();
+				break;
+			case ADD_AIRPORT:
+				repository.addAirport(in.readUTF(), in.readDouble(), in.readDouble());
+				break;
+			case DELETE_AIRPORT:
+				repository.deleteAirport(in.readUTF());
+				break;
+			case VERSIONED_DATA_POINT:
+				String iata = in.readUTF();
+				DataPointType type = TYPES[in.readByte()];
+				long version = in.readLong();
+				long time = in.readLong();
+				if (isStale(iata, type, version)) {
+					break;
+				}
+				repository.addDataPoint(iata, type, SnapshotStore.readDataPoint(in), time);
+				break;
+			default:
+				LOGGER.log(Level.WARNING, "Unknown log record type " + record[0]);
+			}
+		} catch (WeatherException e) {
+			// airport deleted later in the log
+			LOGGER.log(Level.FINE, "Skipping log record: " + e.getMessage());
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Tell whether a data point record is older than the state already
+	 * recovered. Versions of the atmospheric information of an airport grow
+	 * with each update, so a version not above the one in the snapshot is
+	 * covered by it; records of one batch share their version and are applied
+	 * in log order.
+	 *
+	 * @return True if the record must be skipped
+	 */
+	private boolean isStale(String iata, DataPointType type, long version) {
+		Long snapshot = snapshotVersions.get(iata);
+		if (snapshot != null && version <= snapshot) {
+			return true;
+		}
+		String key = iata + '/' + type.ordinal();
+		Long applied = appliedVersions.get(key);
+		if (applied != null && version < applied) {
+			return true;
+		}
+		appliedVersions.put(key, version);
+		return false;
+	}
+
+	private void snapshotQuietly() {
+		try {
+			snapshot();
+		} catch (IOException e) {
+			LOGGER.log(Level.SEVERE, "Cannot write the snapshot", e);
+		}
+	}
+
+	/**
+	 * Writes the fields of a record
+	 */
+	private interface RecordWriter {
+		void write(DataOutputStream out) throws IOException;
+	}
+
+	private static byte[] encode(RecordWriter writer) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			writer.write(out);
+		} catch (IOException e) {
+			// writing to memory
+			throw new UncheckedIOException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+}
@@ -0,0 +1,191 @@
+package com.crossover.trial.weather.persistence;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Set;
+
+import com.crossover.trial.weather.exception.WeatherException;
+import com.crossover.trial.weather.model.AirportData;
+import com.crossover.trial.weather.model.AtmosphericInformation;
+import com.crossover.trial.weather.model.DataPoint;
+import com.crossover.trial.weather.model.DataPointType;
+import com.crossover.trial.weather.model.Repository;
+
+/**
+ * Compact binary image of the whole repository. The snapshot records the
+ * sequence number of the first log segment to replay on top of it.
+ *
+ * Layout: magic, version, log sequence, then since format 3 whether a
+ * catalog was in use and the count and IATA codes of the deleted catalog
+ * airports, then for each airport a presence byte, the IATA code, latitude,
+ * longitude, version of its atmospheric information (since format 2), last
+ * update time, a bit mask of the collected point types and their data points.
+ * A zero presence byte ends the airports.
+ *
+ * Only the airports added one by one and the catalog airports with weather
+ * data are written: the others are in the catalog already.
+ *
+ * @author Michele Mastrogiovanni
+ */
+public class SnapshotStore {
+
+	private static final int MAGIC = 0x57454154;
+
+	private static final int VERSION = 3;
+
+	private static final DataPointType[] TYPES = DataPointType.values();
+
+	private final File file;
+
+	private final File temporary;
+
+	/**
+	 * @param directory Directory holding the snapshot
+	 */
+	public SnapshotStore(File directory) {
+		this.file = new File(directory, "snapshot.bin");
+		this.temporary = new File(directory, "snapshot.tmp");
+	}
+
+	/**
+	 * @return True if a snapshot has been written
+	 */
+	public boolean exists() {
+		return file.exists();
+	}
+
+	/**
+	 * Write a snapshot of the repository, replacing the previous one only once
+	 * the new one is safely on disk. The repository may change while it is
+	 * being written: changes after the rotation of the log to logSequence are
+	 * replayed from the log anyway.
+	 *
+	 * @param repository Repository to save
+	 * @param logSequence First log segment not covered by this snapshot
+	 * @return Number of airports written
+	 * @throws IOException Error writing the snapshot
+	 */
+	public int write(Repository repository, long logSequence) throws IOException {
+		int count = 0;
+		try (FileOutputStream fos = new FileOutputStream(temporary);
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos, 64 * 1024))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(logSequence);
+			out.writeBoolean(repository.getCatalog() != null);
+			Set<String> deleted = repository.getDeletedFromCatalog();
+			out.writeInt(deleted.size());
+			for (String iata : deleted) {
+				out.writeUTF(iata);
+			}
+			for (String iata : repository.getChangedAirports()) {
+				AirportData ad = repository.findAirportData(iata);
+				AtmosphericInformation ai = repository.getAtmosphericInformation(iata);
+				if (ad == null || ai == null) {
+					continue;
+				}
+				out.writeBoolean(true);
+				out.writeUTF(ad.getIata());
+				out.writeDouble(ad.getLatitude());
+				out.writeDouble(ad.getLongitude());
+				out.writeLong(ai.version());
+				out.writeLong(ai.getLastUpdateTime());
+				int mask = 0;
+				for (DataPointType type : TYPES) {
+					if (ai.get(type) != null) {
+						mask |= 1 << type.ordinal();
+					}
+				}
+				out.writeByte(mask);
+				for (DataPointType type : TYPES) {
+					if (ai.get(type) != null) {
+						writeDataPoint(out, ai.get(type));
+					}
+				}
+				count++;
+			}
+			out.writeBoolean(false);
+			out.flush();
+			fos.getFD().sync();
+		}
+		Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		return count;
+	}
+
+	/**
+	 * Replace the content of the repository with the snapshot. The catalog
+	 * of the repository is kept, unless there was none when the snapshot was
+	 * written.
+	 *
+	 * @param repository Repository to fill
+	 * @param versions Receives the version of the atmospheric information of
+	 *        each airport when the snapshot was written
+	 * @return First log segment to replay on top of the snapshot
+	 * @throws IOException Error reading the snapshot or unknown format
+	 */
+	public long read(Repository repository, Map<String, Long> versions) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024))) {
+			int format;
+			if (in.readInt() != MAGIC || (format = in.readInt()) < 1 || format > VERSION) {
+				throw new IOException("Unknown snapshot format: " + file);
+			}
+			long logSequence = in.readLong();
+			if (format >= 3 && !in.readBoolean()) {
+				repository.clear();
+			} else {
+				repository.clearChanges();
+			}
+			if (format >= 3) {
+				// before the airports: a deleted catalog airport may have been added again
+				for (int count = in.readInt(); count > 0; count--) {
+					repository.deleteAirport(in.readUTF());
+				}
+			}
+			while (in.readBoolean()) {
+				String iata = in.readUTF();
+				repository.addAirport(iata, in.readDouble(), in.readDouble());
+				if (format >= 2) {
+					versions.put(iata, in.readLong());
+				}
+				long lastUpdateTime = in.readLong();
+				int mask = in.readByte();
+				for (DataPointType type : TYPES) {
+					if ((mask & 1 << type.ordinal()) != 0) {
+						repository.addDataPoint(iata, type, readDataPoint(in), lastUpdateTime);
+					}
+				}
+			}
+			return logSequence;
+		} catch (WeatherException e) {
+			throw new IOException("Invalid data in snapshot: " + e.getMessage(), e);
+		}
+	}
+
+	static void writeDataPoint(DataOutputStream out, DataPoint dp) throws IOException {
+		out.writeDouble(dp.getMean());
+		out.writeInt(dp.getFirst());
+		out.writeInt(dp.getSecond());
+		out.writeInt(dp.getThird());
+		out.writeInt(dp.getCount());
+	}
+
+	static DataPoint readDataPoint(DataInputStream in) throws IOException {
+		return new DataPoint.Builder()
+				.withMean(in.readDouble())
+				.withFirst(in.readInt())
+				.withMedian(in.readInt())
+				.withLast(in.readInt())
+				.withCount(in.readInt())
+				.build();
+	}
+
+}
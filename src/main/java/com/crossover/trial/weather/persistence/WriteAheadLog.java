@@ -0,0 +1,254 @@
+package com.crossover.trial.weather.persistence;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log split in numbered segment files. Writers only enqueue their
+ * records; a background thread writes the pending records and forces them to
+ * disk every sync interval, so a single fsync covers all the records collected
+ * in the meantime. On a crash the records of the last interval may be lost.
+ *
+ * Each record is framed as length, CRC32 and payload, so a torn write at the
+ * end of a segment is detected and ignored when the log is replayed.
+ *
+ * @author Michele Mastrogiovanni
+ */
+public class WriteAheadLog implements Closeable {
+
+	private static final Logger LOGGER = Logger.getLogger(WriteAheadLog.class.getName());
+
+	private static final String PREFIX = "wal-";
+
+	private static final String SUFFIX = ".log";
+
+	/** size of the frame header: length and checksum */
+	private static final int HEADER = 8;
+
+	/** larger lengths can only come from a corrupted frame */
+	private static final int MAX_RECORD = 1 << 20;
+
+	private final File directory;
+
+	/** records waiting to be written */
+	private final Queue<byte[]> pending = new ConcurrentLinkedQueue<>();
+
+	private final ScheduledExecutorService flusher;
+
+	/** buffer reused by the flusher to assemble the records of an interval */
+	private ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+
+	/** sequence number of the current segment */
+	private long sequence;
+
+	private FileChannel channel;
+
+	/**
+	 * Open the log, appending to a new segment that follows the existing ones.
+	 *
+	 * @param directory Directory holding the segments
+	 * @param syncMillis Interval between two forces to disk
+	 * @throws IOException Impossible to create the segment
+	 */
+	public WriteAheadLog(File directory, long syncMillis) throws IOException {
+		this.directory = directory;
+		List<Long> segments = segments(directory);
+		this.sequence = segments.isEmpty() ? 0 : segments.get(segments.size() - 1) + 1;
+		this.channel = open(sequence);
+		this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "wal-flusher");
+			thread.setDaemon(true);
+			return thread;
+		});
+		flusher.scheduleWithFixedDelay(this::flushQuietly, syncMillis, syncMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Enqueue a record. It becomes durable at the next sync.
+	 *
+	 * @param payload Encoded record
+	 */
+	public void append(byte[] payload) {
+		pending.add(payload);
+	}
+
+	/**
+	 * Write and force to disk all the pending records.
+	 *
+	 * @throws IOException Error writing the segment
+	 */
+	public synchronized void flush() throws IOException {
+		byte[] payload;
+		boolean written = false;
+		CRC32 crc = new CRC32();
+		while ((payload = pending.poll()) != null) {
+			if (buffer.remaining() < payload.length + HEADER) {
+				drain();
+				if (buffer.capacity() < payload.length + HEADER) {
+					buffer = ByteBuffer.allocateDirect(payload.length + HEADER);
+				}
+			}
+			crc.reset();
+			crc.update(payload, 0, payload.length);
+			buffer.putInt(payload.length).putInt((int) crc.getValue()).put(payload);
+			written = true;
+		}
+		if (written) {
+			drain();
+			channel.force(false);
+		}
+	}
+
+	/**
+	 * Flush the pending records and continue on a new segment. Records
+	 * appended after the rotation go to the new segment.
+	 *
+	 * @return Sequence number of the new segment
+	 * @throws IOException Error writing the segments
+	 */
+	public synchronized long rotate() throws IOException {
+		flush();
+		channel.close();
+		sequence++;
+		channel = open(sequence);
+		return sequence;
+	}
+
+	/**
+	 * Delete the segments older than the given sequence number.
+	 *
+	 * @param sequence First sequence number to keep
+	 */
+	public void deleteBefore(long sequence) {
+		for (long segment : segments(directory)) {
+			if (segment < sequence && !file(directory, segment).delete()) {
+				LOGGER.log(Level.WARNING, "Cannot delete log segment " + segment);
+			}
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		flusher.shutdown();
+		try {
+			flusher.awaitTermination(10, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		synchronized (this) {
+			flush();
+			channel.close();
+		}
+	}
+
+	/**
+	 * Read the records of all segments starting from the given sequence
+	 * number, in the order they were appended. Replay of a segment stops at the
+	 * first incomplete or corrupted record.
+	 *
+	 * @param directory Directory holding the segments
+	 * @param fromSequence First segment to replay
+	 * @param consumer Receives the payload of each record
+	 * @return Number of records replayed
+	 * @throws IOException Error reading a segment
+	 */
+	public static long replay(File directory, long fromSequence, Consumer<byte[]> consumer) throws IOException {
+		long count = 0;
+		CRC32 crc = new CRC32();
+		for (long segment : segments(directory)) {
+			if (segment < fromSequence) {
+				continue;
+			}
+			try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file(directory, segment)), 64 * 1024))) {
+				while (true) {
+					int length;
+					try {
+						length = in.readInt();
+					} catch (EOFException e) {
+						break;
+					}
+					int checksum = in.readInt();
+					if (length < 0 || length > MAX_RECORD) {
+						LOGGER.log(Level.WARNING, "Corrupted record in log segment " + segment + ", skipping the rest of it");
+						break;
+					}
+					byte[] payload = new byte[length];
+					in.readFully(payload);
+					crc.reset();
+					crc.update(payload, 0, length);
+					if ((int) crc.getValue() != checksum) {
+						LOGGER.log(Level.WARNING, "Corrupted record in log segment " + segment + ", skipping the rest of it");
+						break;
+					}
+					consumer.accept(payload);
+					count++;
+				}
+			} catch (EOFException e) {
+				LOGGER.log(Level.WARNING, "Truncated record at the end of log segment " + segment);
+			}
+		}
+		return count;
+	}
+
+	private void flushQuietly() {
+		try {
+			flush();
+		} catch (IOException e) {
+			LOGGER.log(Level.SEVERE, "Cannot write the log", e);
+		}
+	}
+
+	private void drain() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	private FileChannel open(long sequence) throws IOException {
+		return FileChannel.open(file(directory, sequence).toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.APPEND);
+	}
+
+	private static File file(File directory, long sequence) {
+		return new File(directory, String.format("%s%020d%s", PREFIX, sequence, SUFFIX));
+	}
+
+	/**
+	 * @return Sequence numbers of the existing segments, in ascending order
+	 */
+	private static List<Long> segments(File directory) {
+		List<Long> result = new ArrayList<>();
+		String[] names = directory.list((dir, name) -> name.startsWith(PREFIX) && name.endsWith(SUFFIX));
+		if (names == null) {
+			return result;
+		}
+		Arrays.sort(names);
+		for (String name : names) {
+			result.add(Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length())));
+		}
+		return result;
+	}
+
+}
@@ -47,6 +47,22 @@ public interface WeatherCollectorEndpoint {
                            @PathParam("pointType") String pointType,
                            String datapointJson);
 
+    /**
+     * Update the atmospheric information of many airports at once. Each record
+     * is validated and applied independently, as if it was sent through
+     * {@link #updateWeather(String, String, String)}.
+     *
+     * @param recordsJson a json list of dicts containing iata, pointType and dataPoint keys
+     *
+     * @return HTTP Response code and a json formatted list with the status of each record,
+     * in the same order of the request
+     */
+    @POST
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("/weather")
+    Response updateWeatherBatch(String recordsJson);
+
     /**
      * Return a list of known airports as a json formatted list
      *
@@ -84,6 +100,21 @@ public interface WeatherCollectorEndpoint {
                         @PathParam("lat") String latString,
                         @PathParam("long") String longString);
 
+    /**
+     * Add many airports to the known airport list at once. Each record is
+     * validated independently, as if it was sent through
+     * {@link #addAirport(String, String, String)}.
+     *
+     * @param airportsJson a json list of dicts containing iata, latitude and longitude keys
+     * @return HTTP Response code and a json formatted list with the status of each record,
+     * in the same order of the request
+     */
+    @POST
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("/airports")
+    Response addAirports(String airportsJson);
+
     /**
      * Remove an airport from the known airport list
      *
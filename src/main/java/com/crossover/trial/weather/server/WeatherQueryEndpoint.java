@@ -4,9 +4,14 @@ import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
+import com.crossover.trial.weather.model.DataPointType;
+import com.crossover.trial.weather.model.HistoryBucket;
+import com.crossover.trial.weather.utility.WeatherBinaryWriter;
+
 /**
  * The query only API for the Weather Server App. This API is made available to the public internet.
  *
@@ -32,11 +37,47 @@ public interface WeatherQueryEndpoint {
      * @param iata the three letter airport code
      * @param radiusString the radius, in km, from which to collect weather data
      *
+     * JSON is the default; clients accepting {@value WeatherBinaryWriter#MEDIA_TYPE} get the compact form
+     * described in {@link WeatherBinaryWriter}.
+     *
      * @return an HTTP Response and a list of {@link AtmosphericInformation} from the requested airport and
      * airports in the given radius
      */
     @GET
     @Path("/weather/{iata}/{radius}")
-    @Produces(MediaType.APPLICATION_JSON)
+    @Produces({ MediaType.APPLICATION_JSON, WeatherBinaryWriter.MEDIA_TYPE + ";qs=0.5" })
     Response weather(@PathParam("iata") String iata, @PathParam("radius") String radiusString);
+
+    /**
+     * Subscribe to the atmospheric information of the given airport and other airports in the given radius, as a
+     * stream of Server-Sent Events. A "snapshot" event carries the current information, then an "update" event
+     * carries the information of the airports changed since the previous event; both are JSON objects keyed by
+     * IATA code.
+     *
+     * @param iata the three letter airport code
+     * @param radiusString the radius, in km, from which to collect weather data
+     *
+     * @return an HTTP Response streaming the events
+     */
+    @GET
+    @Path("/subscribe/{iata}/{radius}")
+    @Produces("text/event-stream")
+    Response subscribe(@PathParam("iata") String iata, @PathParam("radius") String radiusString);
+
+    /**
+     * Retrieve the recent readings of a point type at the given airport, downsampled in buckets of fixed width.
+     *
+     * @param iata the three letter airport code
+     * @param pointType the point type, {@link DataPointType} for a complete list
+     * @param from start of the time range in milliseconds since UTC epoch, 24 hours before its end if missing
+     * @param to end of the time range in milliseconds since UTC epoch, now if missing
+     * @param step width of a bucket in milliseconds, one bucket per reading if missing
+     *
+     * @return an HTTP Response and a list of {@link HistoryBucket}, oldest first
+     */
+    @GET
+    @Path("/history/{iata}/{pointType}")
+    @Produces(MediaType.APPLICATION_JSON)
+    Response history(@PathParam("iata") String iata, @PathParam("pointType") String pointType,
+            @QueryParam("from") String from, @QueryParam("to") String to, @QueryParam("step") String step);
 }
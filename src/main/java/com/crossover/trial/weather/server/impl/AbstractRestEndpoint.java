@@ -6,8 +6,6 @@ import java.util.logging.Logger;
 import javax.ws.rs.core.Response;
 
 import com.crossover.trial.weather.exception.WeatherException;
-import com.crossover.trial.weather.model.Repository;
-import com.crossover.trial.weather.model.Statistics;
 
 /**
  * This is a base class for all Rest Endpoint
@@ -19,14 +17,6 @@ public class AbstractRestEndpoint {
 	// Logger user in the Endpoints
 	protected final Logger LOGGER = Logger.getLogger(getClass().getName());
 
-	/**
-	 * Initialization of the system
-	 */
-	static {
-		Repository.getInstance().reset();
-		Statistics.getInstance().reset();
-	}
-	
 	/**
 	 * Manage internal error
 	 * 
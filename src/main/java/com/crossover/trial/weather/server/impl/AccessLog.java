@@ -0,0 +1,93 @@
+package com.crossover.trial.weather.server.impl;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Access log of every n-th request, written by a background thread: request
+ * threads only offer a line to a bounded queue, lines are dropped (and
+ * counted) rather than slowing requests down when the writer falls behind.
+ *
+ * @author Michele Mastrogiovanni
+ */
+public class AccessLog {
+
+	private static final Logger LOGGER = Logger.getLogger("WeatherAccess");
+
+	private static final int QUEUE_SIZE = 4096;
+
+	/** one request logged every sample, 0 for none */
+	private final int sample;
+
+	/** requests seen by {@link #sample()} */
+	private final AtomicLong requests = new AtomicLong();
+
+	private final BlockingQueue<String> lines = new ArrayBlockingQueue<>(QUEUE_SIZE);
+
+	private final AtomicLong dropped = new AtomicLong();
+
+	private final Thread writer;
+
+	/**
+	 * @param sample Log one request every sample, 0 to disable
+	 */
+	public AccessLog(int sample) {
+		this.sample = Math.max(0, sample);
+		this.writer = new Thread(this::drain, "weather-access-log");
+		this.writer.setDaemon(true);
+		if (this.sample > 0) {
+			writer.start();
+		}
+	}
+
+	/**
+	 * Count a request.
+	 *
+	 * @return True if the request should be logged: the first one, then one every sample
+	 */
+	public boolean sample() {
+		return sample == 1 || sample > 1 && requests.getAndIncrement() % sample == 0;
+	}
+
+	/**
+	 * Queue a request for logging.
+	 */
+	public void log(String method, String uri, String remote, int status, long nanos) {
+		String line = remote + " " + method + " " + uri + " " + status + " " + (nanos / 1000) + "us";
+		if (!lines.offer(line)) {
+			dropped.incrementAndGet();
+		}
+	}
+
+	/**
+	 * @return Number of lines lost because the queue was full
+	 */
+	public long getDropped() {
+		return dropped.get();
+	}
+
+	public void close() {
+		writer.interrupt();
+	}
+
+	private void drain() {
+		long reported = 0;
+		try {
+			while (true) {
+				String line = lines.take();
+				long lost = dropped.get();
+				if (lost > reported) {
+					LOGGER.log(Level.WARNING, "{0} access log lines dropped", lost - reported);
+					reported = lost;
+				}
+				LOGGER.info(line);
+			}
+		} catch (InterruptedException e) {
+			// closed
+		}
+	}
+
+}
@@ -0,0 +1,213 @@
+package com.crossover.trial.weather.server.impl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+
+/**
+ * Compresses the responses of clients accepting gzip or deflate, as told by
+ * their Accept-Encoding header. Small responses are sent as they are: the
+ * first bytes are held until the entity reaches the minimum size, and only
+ * then is the compression started and the Content-Encoding header set.
+ * Event streams are never compressed, their events must not be held back.
+ *
+ * @author Michele Mastrogiovanni
+ */
+public class CompressionInterceptor implements WriterInterceptor {
+
+	private static final String GZIP = "gzip";
+
+	private static final String DEFLATE = "deflate";
+
+	private static final String EVENT_STREAM = "text/event-stream";
+
+	private final int minSize;
+
+	private final int level;
+
+	@Context
+	private HttpHeaders requestHeaders;
+
+	/**
+	 * @param minSize Smallest response compressed, in bytes
+	 * @param level Compression level, from 1 (fastest) to 9 (smallest)
+	 */
+	public CompressionInterceptor(int minSize, int level) {
+		if (level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION) {
+			throw new IllegalArgumentException("compression level must be between 1 and 9");
+		}
+		this.minSize = minSize;
+		this.level = level;
+	}
+
+	@Override
+	public void aroundWriteTo(WriterInterceptorContext context) throws IOException, WebApplicationException {
+		MediaType mediaType = context.getMediaType();
+		MultivaluedMap<String, Object> headers = context.getHeaders();
+		if (mediaType != null && EVENT_STREAM.equals(mediaType.getType() + "/" + mediaType.getSubtype())
+				|| headers.containsKey(HttpHeaders.CONTENT_ENCODING)) {
+			context.proceed();
+			return;
+		}
+		headers.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+		String encoding = negotiate(requestHeaders.getHeaderString(HttpHeaders.ACCEPT_ENCODING));
+		if (encoding == null) {
+			context.proceed();
+			return;
+		}
+		ThresholdOutputStream out = new ThresholdOutputStream(context.getOutputStream(), headers, encoding);
+		context.setOutputStream(out);
+		try {
+			context.proceed();
+		} finally {
+			out.finish();
+		}
+	}
+
+	/**
+	 * @param acceptEncoding Value of the Accept-Encoding header, may be null
+	 * @return gzip or deflate, the first one accepted in this order, null if none
+	 */
+	static String negotiate(String acceptEncoding) {
+		if (acceptEncoding == null) {
+			return null;
+		}
+		double gzip = -1;
+		double deflate = -1;
+		double any = -1;
+		for (String item : acceptEncoding.split(",")) {
+			String[] parts = item.split(";");
+			String coding = parts[0].trim().toLowerCase();
+			double quality = 1;
+			for (int i = 1; i < parts.length; i++) {
+				String parameter = parts[i].trim();
+				if (parameter.startsWith("q=")) {
+					try {
+						quality = Double.parseDouble(parameter.substring(2));
+					} catch (NumberFormatException e) {
+						quality = 0;
+					}
+				}
+			}
+			if (coding.equals(GZIP) || coding.equals("x-gzip")) {
+				gzip = quality;
+			} else if (coding.equals(DEFLATE)) {
+				deflate = quality;
+			} else if (coding.equals("*")) {
+				any = quality;
+			}
+		}
+		gzip = gzip < 0 ? any : gzip;
+		deflate = deflate < 0 ? any : deflate;
+		if (gzip > 0 && gzip >= deflate) {
+			return GZIP;
+		}
+		return deflate > 0 ? DEFLATE : null;
+	}
+
+	/**
+	 * Holds the beginning of the entity and switches to a compressed stream
+	 * past the minimum size.
+	 */
+	private final class ThresholdOutputStream extends OutputStream {
+
+		private final OutputStream out;
+
+		private final MultivaluedMap<String, Object> headers;
+
+		private final String encoding;
+
+		private byte[] held = new byte[Math.max(minSize, 0)];
+
+		private int count;
+
+		private Deflater deflater;
+
+		private DeflaterOutputStream compressed;
+
+		private ThresholdOutputStream(OutputStream out, MultivaluedMap<String, Object> headers, String encoding) {
+			this.out = out;
+			this.headers = headers;
+			this.encoding = encoding;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			if (compressed == null) {
+				if (count + len < held.length) {
+					System.arraycopy(b, off, held, count, len);
+					count += len;
+					return;
+				}
+				start();
+			}
+			compressed.write(b, off, len);
+		}
+
+		@Override
+		public void flush() throws IOException {
+			// held bytes wait for the decision, compressed ones for the end of a block
+		}
+
+		@Override
+		public void close() throws IOException {
+			finish();
+		}
+
+		/**
+		 * Write what is left, compressed or not.
+		 */
+		private void finish() throws IOException {
+			byte[] rest = held;
+			if (rest == null) {
+				return;
+			}
+			held = null;
+			if (compressed == null) {
+				out.write(rest, 0, count);
+				out.flush();
+				return;
+			}
+			try {
+				compressed.finish();
+				out.flush();
+			} finally {
+				deflater.end();
+			}
+		}
+
+		private void start() throws IOException {
+			headers.putSingle(HttpHeaders.CONTENT_ENCODING, encoding);
+			headers.remove(HttpHeaders.CONTENT_LENGTH);
+			if (encoding.equals(GZIP)) {
+				compressed = new GZIPOutputStream(out, 8192) {
+					{
+						def.setLevel(level);
+						deflater = def;
+					}
+				};
+			} else {
+				deflater = new Deflater(level);
+				compressed = new DeflaterOutputStream(out, deflater, 8192);
+			}
+			compressed.write(held, 0, count);
+		}
+
+	}
+
+}
@@ -0,0 +1,144 @@
+package com.crossover.trial.weather.server.impl;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.glassfish.grizzly.http.server.HttpHandler;
+import org.glassfish.grizzly.http.server.Request;
+import org.glassfish.grizzly.http.server.RequestExecutorProvider;
+import org.glassfish.grizzly.http.server.Response;
+import org.glassfish.grizzly.http.util.HttpStatus;
+
+/**
+ * Runs the requests of a handler on two executors, one for the collect
+ * endpoint and one for everything else, so that a burst of updates cannot
+ * hold the threads answering queries. A request refused by its executor
+ * (e.g. a full pool queue) is answered 503 Service Unavailable; requests are
+ * timed and passed to the access log.
+ *
+ * @author Michele Mastrogiovanni
+ */
+public class PooledHttpHandler extends HttpHandler {
+
+	private static final String COLLECT_PREFIX = "/collect";
+
+	/** set while a request refused by its pool runs on the calling thread */
+	private static final ThreadLocal<Boolean> REJECTED = new ThreadLocal<>();
+
+	private final HttpHandler delegate;
+
+	private final ExecutorService queryPool;
+
+	private final ExecutorService collectPool;
+
+	private final AccessLog accessLog;
+
+	private final RequestExecutorProvider executorProvider = new RequestExecutorProvider() {
+		@Override
+		public Executor getExecutor(Request request) {
+			return request.getRequestURI().startsWith(COLLECT_PREFIX) ? collectExecutor : queryExecutor;
+		}
+	};
+
+	private final Executor queryExecutor;
+
+	private final Executor collectExecutor;
+
+	/**
+	 * @param delegate Handler serving the requests
+	 * @param queryPool Executor serving queries
+	 * @param collectPool Executor serving the collect endpoint
+	 * @param accessLog Log of the requests
+	 */
+	public PooledHttpHandler(HttpHandler delegate, ExecutorService queryPool, ExecutorService collectPool, AccessLog accessLog) {
+		this.delegate = delegate;
+		this.queryPool = queryPool;
+		this.collectPool = collectPool;
+		this.queryExecutor = rejecting(queryPool);
+		this.collectExecutor = rejecting(collectPool);
+		this.accessLog = accessLog;
+	}
+
+	@Override
+	public RequestExecutorProvider getRequestExecutorProvider() {
+		return executorProvider;
+	}
+
+	@Override
+	public void service(Request request, Response response) throws Exception {
+		boolean logged = accessLog.sample();
+		long start = logged ? System.nanoTime() : 0;
+		try {
+			if (REJECTED.get() != null) {
+				response.sendError(HttpStatus.SERVICE_UNAVAILABLE_503.getStatusCode());
+			} else {
+				delegate.service(request, response);
+			}
+		} finally {
+			if (logged) {
+				accessLog.log(request.getMethod().getMethodString(), request.getRequestURI(), request.getRemoteAddr(),
+						response.getStatus(), System.nanoTime() - start);
+			}
+		}
+	}
+
+	@Override
+	public void start() {
+		delegate.start();
+	}
+
+	@Override
+	public void destroy() {
+		delegate.destroy();
+		queryPool.shutdown();
+		collectPool.shutdown();
+		accessLog.close();
+	}
+
+	/**
+	 * @param name Prefix of the thread names
+	 * @param threads Threads of the pool
+	 * @param queueLimit Requests waiting for a thread, 0 to refuse requests when
+	 *        all threads are busy, negative for no limit
+	 * @return A fixed pool of daemon threads refusing requests past the queue limit
+	 */
+	public static ExecutorService createPool(String name, int threads, int queueLimit) {
+		BlockingQueue<Runnable> queue = queueLimit < 0 ? new LinkedBlockingQueue<>()
+				: queueLimit == 0 ? new SynchronousQueue<>() : new ArrayBlockingQueue<>(queueLimit);
+		AtomicInteger counter = new AtomicInteger();
+		return new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, queue, runnable -> {
+			Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * When the pool is saturated the request still runs on the calling
+	 * thread, only to send back the 503: Grizzly keeps the response suspended
+	 * until the task has run.
+	 */
+	private static Executor rejecting(ExecutorService pool) {
+		return task -> {
+			try {
+				pool.execute(task);
+			} catch (RejectedExecutionException e) {
+				REJECTED.set(Boolean.TRUE);
+				try {
+					task.run();
+				} finally {
+					REJECTED.remove();
+				}
+			}
+		};
+	}
+
+}
@@ -1,13 +1,14 @@
 package com.crossover.trial.weather.server.impl;
 
 import static com.crossover.trial.weather.utility.ValidationUtility.checkIataCode;
-import static com.crossover.trial.weather.utility.ValidationUtility.checkLatitude;
-import static com.crossover.trial.weather.utility.ValidationUtility.checkLongitude;
 import static com.crossover.trial.weather.utility.ValidationUtility.checkNotNull;
 import static com.crossover.trial.weather.utility.ValidationUtility.isADataPoint;
-import static com.crossover.trial.weather.utility.ValidationUtility.isADouble;
+import static com.crossover.trial.weather.utility.ValidationUtility.isAnAirport;
 import static com.crossover.trial.weather.utility.ValidationUtility.jsonIsA;
+import static com.crossover.trial.weather.utility.ValidationUtility.jsonIsADataPoint;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.logging.Level;
 
 import javax.ws.rs.Path;
@@ -16,8 +17,11 @@ import javax.ws.rs.core.Response;
 
 import com.crossover.trial.weather.exception.WeatherException;
 import com.crossover.trial.weather.model.AirportData;
+import com.crossover.trial.weather.model.AirportRecord;
 import com.crossover.trial.weather.model.DataPoint;
+import com.crossover.trial.weather.model.DataPointRecord;
 import com.crossover.trial.weather.model.DataPointType;
+import com.crossover.trial.weather.model.RecordStatus;
 import com.crossover.trial.weather.model.Repository;
 import com.crossover.trial.weather.server.WeatherCollectorEndpoint;
 
@@ -48,7 +52,7 @@ public class RestWeatherCollectorEndpoint extends AbstractRestEndpoint implement
 			
 			checkNotNull("point type", pointType);
 			
-			DataPoint dataPoint = jsonIsA(DataPoint.class, "request body", datapointJson);
+			DataPoint dataPoint = jsonIsADataPoint("request body", datapointJson);
 			
 			DataPointType dp = isADataPoint("point type", pointType);
 			
@@ -62,6 +66,27 @@ public class RestWeatherCollectorEndpoint extends AbstractRestEndpoint implement
 		
 	}
 
+	@Override
+	public Response updateWeatherBatch(String recordsJson) {
+
+		LOGGER.log(Level.FINE, "Requesting batch update weater information");
+
+		try {
+
+			checkNotNull("request body", recordsJson);
+
+			DataPointRecord[] records = jsonIsA(DataPointRecord[].class, "request body", recordsJson);
+
+			List<RecordStatus> statuses = Repository.getInstance().addDataPoints(Arrays.asList(records));
+
+			return Response.status(Response.Status.OK).entity(statuses).build();
+
+		} catch (WeatherException e) {
+			return getResponseByException(e);
+		}
+
+	}
+
 	@Override
 	public Response getAirports() {
 		return Response
@@ -95,19 +120,9 @@ public class RestWeatherCollectorEndpoint extends AbstractRestEndpoint implement
 		
 		try {
 			
-			checkNotNull("latitude", latString);
-			checkNotNull("longitude", longString);
-			
-			double latitude = isADouble("latitude", latString);
-			double longitude = isADouble("longitude", longString);
-			
-			iataCode = checkIataCode(iataCode);
-			
-			checkLatitude(latitude);
-			
-			checkLongitude(longitude);
+			AirportData ad = isAnAirport(iataCode, latString, longString);
 			
-			Repository.getInstance().addAirport(iataCode, latitude, longitude);
+			Repository.getInstance().addAirport(ad.getIata(), ad.getLatitude(), ad.getLongitude());
 			
 		} catch (WeatherException e) {
 			return getResponseByException(e);
@@ -116,6 +131,25 @@ public class RestWeatherCollectorEndpoint extends AbstractRestEndpoint implement
 		return Response.status(Response.Status.OK).build();
 	}
 
+	@Override
+	public Response addAirports(String airportsJson) {
+
+		try {
+
+			checkNotNull("request body", airportsJson);
+
+			AirportRecord[] records = jsonIsA(AirportRecord[].class, "request body", airportsJson);
+
+			List<RecordStatus> statuses = Repository.getInstance().addAirports(Arrays.asList(records));
+
+			return Response.status(Response.Status.OK).entity(statuses).build();
+
+		} catch (WeatherException e) {
+			return getResponseByException(e);
+		}
+
+	}
+
 	@Override
 	public Response deleteAirport(@PathParam("iata") String iataCode) {
 		
@@ -1,19 +1,29 @@
 package com.crossover.trial.weather.server.impl;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Logger;
 
 import javax.ws.rs.Path;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
+import javax.ws.rs.core.Response.Status;
 
+import com.crossover.trial.weather.cache.CachedWeather;
+import com.crossover.trial.weather.cache.WeatherResponseCache;
 import com.crossover.trial.weather.exception.WeatherException;
-import com.crossover.trial.weather.model.AtmosphericInformation;
+import com.crossover.trial.weather.model.DataPointType;
+import com.crossover.trial.weather.model.HistoryBucket;
 import com.crossover.trial.weather.model.Repository;
 import com.crossover.trial.weather.model.Statistics;
 import com.crossover.trial.weather.server.WeatherQueryEndpoint;
+import com.crossover.trial.weather.subscription.Subscription;
+import com.crossover.trial.weather.subscription.WeatherSubscriptions;
 import static com.crossover.trial.weather.utility.ValidationUtility.*;
 
 /**
@@ -28,6 +38,20 @@ public class RestWeatherQueryEndpoint extends AbstractRestEndpoint implements We
 
 	public final static Logger LOGGER = Logger.getLogger("WeatherQuery");
 
+	/** default length of the time range of a history query */
+	private static final long DEFAULT_HISTORY_MILLIS = 24 * 3600 * 1000L;
+
+	/** headers of the current request, null when not deployed */
+	@Context
+	private HttpHeaders headers;
+
+	@Context
+	private Request request;
+
+	/** container request, giving the connection of a subscriber, null when not deployed */
+	@Context
+	private org.glassfish.grizzly.http.server.Request containerRequest;
+
 	/**
 	 * Retrieve service health including total size of valid data points and
 	 * request frequency information.
@@ -40,8 +64,17 @@ public class RestWeatherQueryEndpoint extends AbstractRestEndpoint implements We
 		Map<String, Object> healthStatus = new HashMap<>();
 
 		healthStatus.put("datasize", Repository.getInstance().getDataSize());
-		healthStatus.put("iata_freq", Statistics.getInstance().getIataFreq());
+		Map<String, Double> iataFreq = Statistics.getInstance().getIataFreq();
+		if (iataFreq != null) {
+			healthStatus.put("iata_freq", iataFreq);
+		}
+		Map<String, Object> topRequests = Statistics.getInstance().getTopRequests();
+		if (topRequests != null) {
+			healthStatus.put("iata_top", topRequests);
+		}
 		healthStatus.put("radius_freq", Statistics.getInstance().getRadiusFreqHistogram());
+		healthStatus.put("cache", WeatherResponseCache.getInstance().getStatistics());
+		healthStatus.put("subscriptions", WeatherSubscriptions.getInstance().getStatistics());
 
 		return gson.toJson(healthStatus);
 
@@ -73,13 +106,88 @@ public class RestWeatherQueryEndpoint extends AbstractRestEndpoint implements We
 			// Update statistics on data
 			Statistics.getInstance().updateRequestFrequency(iataCode, radius);
 
-			// Result of atmosferical conditions
-			List<AtmosphericInformation> result = new ArrayList<>();
+			WeatherResponseCache cache = WeatherResponseCache.getInstance();
+
+			// a client already holding the current answer gets 304, nothing is built
+			if (headers != null && headers.getHeaderString(HttpHeaders.IF_NONE_MATCH) != null) {
+				ResponseBuilder notModified = request.evaluatePreconditions(new EntityTag(cache.getTag(iataCode, radius), true));
+				if (notModified != null) {
+					return notModified.build();
+				}
+			}
+
+			// Result of atmosferical conditions, serialized once per cache entry
+			CachedWeather result = cache.get(iataCode, radius);
+
+			return Response.status(Response.Status.OK).entity(result).tag(new EntityTag(result.getTag(), true))
+					.header(HttpHeaders.VARY, HttpHeaders.ACCEPT).build();
+
+		} catch (WeatherException e) {
+			return getResponseByException(e);
+		}
+
+	}
+
+	/**
+	 * Open a stream of the changes of the atmospheric information around an
+	 * airport.
+	 *
+	 * @return the event stream
+	 */
+	@Override
+	public Response subscribe(String iataCode, String radiusString) {
+
+		try {
+
+			iataCode = checkIataCode(iataCode);
+
+			double radius = isADouble("radius", radiusString);
+
+			checkRadius(radius);
+
+			Subscription subscription = WeatherSubscriptions.getInstance().subscribe(iataCode, radius);
+			if (containerRequest != null) {
+				// terminated at once: a graceful close would wait for the stalled writes
+				subscription.setAbort(containerRequest.getContext().getConnection()::terminateSilently);
+			}
+
+			return Response.status(Response.Status.OK)
+					.entity(subscription)
+					.header("Cache-Control", "no-cache")
+					.build();
+
+		} catch (WeatherException e) {
+			return getResponseByException(e);
+		}
+
+	}
+
+	/**
+	 * Retrieve the readings of a point type at an airport in a time range.
+	 *
+	 * @return a list of buckets, empty if the airport has no reading
+	 */
+	@Override
+	public Response history(String iataCode, String pointType, String from, String to, String step) {
+
+		try {
+
+			iataCode = checkIataCode(iataCode);
+
+			DataPointType type = isADataPoint("point type", pointType);
+
+			long end = to == null ? System.currentTimeMillis() : isALong("to", to);
+			long start = from == null ? end - DEFAULT_HISTORY_MILLIS : isALong("from", from);
+			long width = step == null ? 0 : isALong("step", step);
+
+			if (start > end) {
+				throw new WeatherException("from cannot be after to", Status.BAD_REQUEST);
+			}
+			if (width < 0) {
+				throw new WeatherException("step cannot be negative", Status.BAD_REQUEST);
+			}
 
-			Repository.getInstance().getAirportsFromIataInRadius(iataCode, radius).stream()
-					.map(airport -> Repository.getInstance().getAtmosphericInformation(airport.getIata()))
-					.filter(ai -> ai.hasSomeValue())
-					.forEach(result::add);
+			List<HistoryBucket> result = Repository.getInstance().getHistory().query(iataCode, type, start, end, width);
 
 			return Response.status(Response.Status.OK).entity(result).build();
 
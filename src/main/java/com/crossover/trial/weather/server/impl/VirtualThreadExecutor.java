@@ -0,0 +1,112 @@
+package com.crossover.trial.weather.server.impl;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs each task on a new virtual thread, with a cap on the tasks running at
+ * once: blocked requests cost no platform thread, but their number is still
+ * bounded and the ones over the cap are refused.
+ *
+ * Virtual threads need Java 21; they are looked up by reflection so the
+ * application still builds for and runs on Java 8 when the mode is not used.
+ *
+ * @author Michele Mastrogiovanni
+ */
+public class VirtualThreadExecutor extends AbstractExecutorService {
+
+	private final ExecutorService delegate;
+
+	private final Semaphore permits;
+
+	/**
+	 * @param name Prefix of the thread names
+	 * @param maxRunning Tasks running at most
+	 * @throws IllegalStateException If the JVM has no virtual threads
+	 */
+	public VirtualThreadExecutor(String name, int maxRunning) {
+		this.delegate = newThreadPerTaskExecutor(name);
+		this.permits = new Semaphore(maxRunning);
+	}
+
+	/**
+	 * @return True if the JVM supports virtual threads
+	 */
+	public static boolean isSupported() {
+		try {
+			Thread.class.getMethod("ofVirtual");
+			return true;
+		} catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+
+	@Override
+	public void execute(Runnable task) {
+		if (!permits.tryAcquire()) {
+			throw new RejectedExecutionException("Too many requests running");
+		}
+		try {
+			delegate.execute(() -> {
+				try {
+					task.run();
+				} finally {
+					permits.release();
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			permits.release();
+			throw e;
+		}
+	}
+
+	@Override
+	public void shutdown() {
+		delegate.shutdown();
+	}
+
+	@Override
+	public List<Runnable> shutdownNow() {
+		return delegate.shutdownNow();
+	}
+
+	@Override
+	public boolean isShutdown() {
+		return delegate.isShutdown();
+	}
+
+	@Override
+	public boolean isTerminated() {
+		return delegate.isTerminated();
+	}
+
+	@Override
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		return delegate.awaitTermination(timeout, unit);
+	}
+
+	/**
+	 * @return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-", 1).factory())
+	 */
+	private static ExecutorService newThreadPerTaskExecutor(String name) {
+		if (!isSupported()) {
+			throw new IllegalStateException("Virtual threads need Java 21, running on " + System.getProperty("java.version"));
+		}
+		try {
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+			builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, name + "-", 1L);
+			ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+			return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class).invoke(null, factory);
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("Cannot create virtual threads", e);
+		}
+	}
+
+}
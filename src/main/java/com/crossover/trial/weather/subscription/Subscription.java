@@ -0,0 +1,169 @@
+package com.crossover.trial.weather.subscription;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.glassfish.jersey.server.ChunkedOutput;
+
+import com.crossover.trial.weather.model.AtmosphericInformation;
+import com.crossover.trial.weather.utility.WeatherJsonWriter;
+
+/**
+ * Stream of Server-Sent Events of a subscriber to the weather around an
+ * airport: a snapshot event first, then update events with the airports
+ * changed since the previous one, as json objects keyed by IATA code.
+ *
+ * Changes waiting to be written are merged, the latest information of an
+ * airport replacing the previous one, so a slow subscriber receives fewer
+ * and larger events instead of a growing backlog.
+ *
+ * @author Michele Mastrogiovanni
+ */
+public class Subscription extends ChunkedOutput<String> {
+
+	private final WeatherSubscriptions owner;
+
+	private final String iata;
+
+	private final double radius;
+
+	/** information not yet written, latest per airport */
+	private final Map<String, AtmosphericInformation> pending = new ConcurrentHashMap<>();
+
+	/** true while a writer is assigned to the subscription */
+	private final AtomicBoolean scheduled = new AtomicBoolean();
+
+	/** start of the write in progress, 0 if none */
+	private volatile long writingSince;
+
+	private volatile boolean cancelled;
+
+	/** closes the connection of the subscriber, null if unknown */
+	private volatile Runnable abort;
+
+	private boolean started;
+
+	Subscription(WeatherSubscriptions owner, String iata, double radius) {
+		super(String.class);
+		this.owner = owner;
+		this.iata = iata;
+		this.radius = radius;
+	}
+
+	String getIata() {
+		return iata;
+	}
+
+	double getRadius() {
+		return radius;
+	}
+
+	/**
+	 * Set how to close the connection of the subscriber when it is dropped,
+	 * failing a write blocked on it.
+	 *
+	 * @param abort Closes the connection
+	 */
+	public void setAbort(Runnable abort) {
+		this.abort = abort;
+	}
+
+	/**
+	 * Queue the latest information of an airport.
+	 *
+	 * @return True if the subscription needs a writer
+	 */
+	boolean offer(String airport, AtmosphericInformation ai) {
+		if (cancelled) {
+			return false;
+		}
+		pending.put(airport, ai);
+		return scheduled.compareAndSet(false, true);
+	}
+
+	/**
+	 * Queue the information of an airport for the snapshot, unless the
+	 * dispatcher already queued a more recent one.
+	 */
+	void offerInitial(String airport, AtmosphericInformation ai) {
+		pending.putIfAbsent(airport, ai);
+	}
+
+	/**
+	 * Reserve the writer of the first event, sent even with no information.
+	 */
+	void schedule() {
+		scheduled.set(true);
+	}
+
+	/**
+	 * @return True if a write has been blocked since before the given time
+	 */
+	boolean isStalled(long before) {
+		long since = writingSince;
+		return since != 0 && since - before < 0;
+	}
+
+	/**
+	 * Stop queueing changes; the stream is closed by its writer.
+	 */
+	void cancel() {
+		cancelled = true;
+		pending.clear();
+	}
+
+	/**
+	 * Stop queueing changes and close the connection, so that a writer
+	 * blocked on it fails and is released.
+	 */
+	void abort() {
+		cancel();
+		Runnable abort = this.abort;
+		if (abort != null) {
+			abort.run();
+		}
+	}
+
+	/**
+	 * Write the pending changes until none is left. Runs on one writer at a
+	 * time.
+	 */
+	void flush() {
+		try {
+			while (!cancelled) {
+				Map<String, AtmosphericInformation> batch = new LinkedHashMap<>();
+				for (Map.Entry<String, AtmosphericInformation> entry : pending.entrySet()) {
+					if (pending.remove(entry.getKey(), entry.getValue())) {
+						batch.put(entry.getKey(), entry.getValue());
+					}
+				}
+				if (batch.isEmpty() && started) {
+					scheduled.set(false);
+					// a change queued after the drain may have found the writer still assigned
+					if (pending.isEmpty() || !scheduled.compareAndSet(false, true)) {
+						return;
+					}
+					continue;
+				}
+				writingSince = System.nanoTime();
+				write(event(started ? "update" : "snapshot", batch));
+				writingSince = 0;
+				started = true;
+			}
+			close();
+		} catch (IOException e) {
+			// the subscriber went away
+			writingSince = 0;
+			owner.unsubscribe(this);
+		}
+	}
+
+	private static String event(String name, Map<String, AtmosphericInformation> batch) throws IOException {
+		return "event: " + name + "\ndata: " + new String(WeatherJsonWriter.toBytes(batch), StandardCharsets.UTF_8) + "\n\n";
+	}
+
+}
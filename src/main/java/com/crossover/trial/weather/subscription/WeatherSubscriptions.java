@@ -0,0 +1,315 @@
+package com.crossover.trial.weather.subscription;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.ws.rs.core.Response.Status;
+
+import com.crossover.trial.weather.exception.WeatherException;
+import com.crossover.trial.weather.model.AirportData;
+import com.crossover.trial.weather.model.AtmosphericInformation;
+import com.crossover.trial.weather.model.DataPoint;
+import com.crossover.trial.weather.model.DataPointType;
+import com.crossover.trial.weather.model.Repository;
+import com.crossover.trial.weather.model.RepositoryListener;
+
+/**
+ * Singleton registry of the subscriptions to the weather around an airport.
+ *
+ * The collector path only marks the updated airport as changed. A dispatcher
+ * thread wakes up at most once per coalescing window, reads the latest
+ * information of the changed airports and hands it to the subscriptions
+ * watching them; a small pool of writers sends the events, one writer per
+ * subscription at a time. A subscriber not reading blocks at most a writer:
+ * its changes keep being merged, and once a write has been stuck for too
+ * long it is dropped and its connection closed, releasing the writer.
+ *
+ * Settings are read from system properties:
+ * <ul>
+ * <li>weather.subscription.coalesceMillis: window merging the changes (default 200)</li>
+ * <li>weather.subscription.max: subscriptions open at most (default 10000)</li>
+ * <li>weather.subscription.writers: threads writing events (default 4)</li>
+ * <li>weather.subscription.stallSeconds: time a write can block before the subscriber is dropped (default 30)</li>
+ * </ul>
+ *
+ * @author Michele Mastrogiovanni
+ */
+public class WeatherSubscriptions implements RepositoryListener {
+
+	private static final Logger LOGGER = Logger.getLogger(WeatherSubscriptions.class.getName());
+
+	/**
+	 * Lazy holder of the singleton instance
+	 */
+	private static class Holder {
+		private static final WeatherSubscriptions INSTANCE = new WeatherSubscriptions(
+				Long.getLong("weather.subscription.coalesceMillis", 200),
+				Integer.getInteger("weather.subscription.max", 10000),
+				Integer.getInteger("weather.subscription.writers", 4),
+				Long.getLong("weather.subscription.stallSeconds", 30));
+	}
+
+	private final long coalesceMillis;
+
+	private final int maxSubscriptions;
+
+	private final int writerThreads;
+
+	private final long stallNanos;
+
+	private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+
+	/** airports updated since the last dispatch */
+	private final Set<String> changed = ConcurrentHashMap.newKeySet();
+
+	/** incremented when airports or subscriptions change, the dispatcher recomputes the neighbourhoods */
+	private final AtomicLong structureVersion = new AtomicLong();
+
+	private final Semaphore wakeup = new Semaphore(0);
+
+	private ExecutorService writers;
+
+	private Thread dispatcher;
+
+	/** subscriptions watching each airport, owned by the dispatcher */
+	private Map<String, List<Subscription>> watchers = new HashMap<>();
+
+	private long indexedVersion = -1;
+
+	public static WeatherSubscriptions getInstance() {
+		return Holder.INSTANCE;
+	}
+
+	/**
+	 * @param coalesceMillis Window merging the changes
+	 * @param maxSubscriptions Subscriptions open at most
+	 * @param writerThreads Threads writing events
+	 * @param stallSeconds Time a write can block before the subscriber is dropped
+	 */
+	public WeatherSubscriptions(long coalesceMillis, int maxSubscriptions, int writerThreads, long stallSeconds) {
+		this.coalesceMillis = coalesceMillis;
+		this.maxSubscriptions = maxSubscriptions;
+		this.writerThreads = writerThreads;
+		this.stallNanos = TimeUnit.SECONDS.toNanos(stallSeconds);
+		Repository.getInstance().addListener(this);
+	}
+
+	/**
+	 * Open a subscription to the airports within a radius from an airport.
+	 * The first event is a snapshot of their current information.
+	 *
+	 * @param iataCode the 3 letter IATA code of the origin
+	 * @param radius the radius in km
+	 * @return The event stream
+	 * @throws WeatherException Unknown airport, invalid radius or too many subscriptions
+	 */
+	public Subscription subscribe(String iataCode, double radius) throws WeatherException {
+
+		if (subscriptions.size() >= maxSubscriptions) {
+			throw new WeatherException("too many subscriptions", Status.SERVICE_UNAVAILABLE);
+		}
+
+		Repository repository = Repository.getInstance();
+		List<AirportData> airports = repository.getAirportsFromIataInRadius(iataCode, radius);
+		if (airports.isEmpty()) {
+			throw new WeatherException("airport not found", Status.NOT_FOUND);
+		}
+
+		// registered before reading, so no update falls between the snapshot and the stream
+		Subscription subscription = new Subscription(this, iataCode, radius);
+		subscription.schedule();
+		start();
+		subscriptions.add(subscription);
+		structureVersion.incrementAndGet();
+
+		for (AirportData airport : airports) {
+			AtmosphericInformation ai = repository.getAtmosphericInformation(airport.getIata());
+			if (ai != null && ai.hasSomeValue()) {
+				subscription.offerInitial(airport.getIata(), ai);
+			}
+		}
+		writers.execute(subscription::flush);
+		wakeup.release();
+
+		return subscription;
+
+	}
+
+	/**
+	 * @return Number of open subscriptions
+	 */
+	public int size() {
+		return subscriptions.size();
+	}
+
+	/**
+	 * Close all the subscriptions, stop the threads and stop listening to
+	 * the repository. No subscription can be opened afterwards.
+	 */
+	public synchronized void shutdown() {
+		Repository.getInstance().removeListener(this);
+		for (Subscription subscription : subscriptions) {
+			subscription.abort();
+			unsubscribe(subscription);
+		}
+		if (dispatcher != null) {
+			dispatcher.interrupt();
+			writers.shutdownNow();
+		}
+	}
+
+	void unsubscribe(Subscription subscription) {
+		subscription.cancel();
+		if (subscriptions.remove(subscription)) {
+			structureVersion.incrementAndGet();
+		}
+	}
+
+	@Override
+	public void cleared() {
+		structureChanged();
+	}
+
+	@Override
+	public void catalogChanged() {
+		structureChanged();
+	}
+
+	@Override
+	public void airportAdded(AirportData airport) {
+		structureChanged();
+	}
+
+	@Override
+	public void airportDeleted(AirportData airport) {
+		structureChanged();
+	}
+
+	@Override
+	public void dataPointAdded(String iataCode, DataPointType pointType, DataPoint dp, AtmosphericInformation updated) {
+		if (!subscriptions.isEmpty() && changed.add(iataCode)) {
+			wakeup.release();
+		}
+	}
+
+	private void structureChanged() {
+		if (!subscriptions.isEmpty()) {
+			structureVersion.incrementAndGet();
+			wakeup.release();
+		}
+	}
+
+	/**
+	 * Start the dispatcher and the writers on the first subscription.
+	 */
+	private synchronized void start() {
+		if (dispatcher != null) {
+			return;
+		}
+		AtomicInteger counter = new AtomicInteger();
+		writers = Executors.newFixedThreadPool(writerThreads, runnable -> {
+			Thread thread = new Thread(runnable, "weather-subscription-writer-" + counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		dispatcher = new Thread(this::dispatchLoop, "weather-subscription-dispatcher");
+		dispatcher.setDaemon(true);
+		dispatcher.start();
+	}
+
+	private void dispatchLoop() {
+		while (true) {
+			try {
+				wakeup.acquire();
+				Thread.sleep(coalesceMillis);
+				wakeup.drainPermits();
+				dispatch();
+			} catch (InterruptedException e) {
+				return;
+			} catch (RuntimeException e) {
+				LOGGER.log(Level.SEVERE, "Cannot dispatch weather updates", e);
+			}
+		}
+	}
+
+	/**
+	 * Hand the latest information of the changed airports to their watchers.
+	 */
+	private void dispatch() {
+
+		long version = structureVersion.get();
+		if (version != indexedVersion) {
+			index();
+			indexedVersion = version;
+		}
+
+		Repository repository = Repository.getInstance();
+		for (String iata : changed) {
+			// removed before reading: a later update marks the airport again
+			changed.remove(iata);
+			List<Subscription> list = watchers.get(iata);
+			AtmosphericInformation ai = repository.getAtmosphericInformation(iata);
+			if (list == null || ai == null) {
+				continue;
+			}
+			for (Subscription subscription : list) {
+				if (subscription.offer(iata, ai)) {
+					writers.execute(subscription::flush);
+				}
+			}
+		}
+
+		long stalledBefore = System.nanoTime() - stallNanos;
+		for (Subscription subscription : subscriptions) {
+			if (subscription.isStalled(stalledBefore)) {
+				LOGGER.log(Level.INFO, "Dropping stalled subscription to {0}", subscription.getIata());
+				// closing the connection fails the blocked write and frees its writer
+				subscription.abort();
+				unsubscribe(subscription);
+			}
+		}
+
+	}
+
+	/**
+	 * Recompute the airports watched by each subscription.
+	 */
+	private void index() {
+		Repository repository = Repository.getInstance();
+		Map<String, List<Subscription>> index = new HashMap<>();
+		for (Subscription subscription : subscriptions) {
+			try {
+				for (AirportData airport : repository.getAirportsFromIataInRadius(subscription.getIata(), subscription.getRadius())) {
+					index.computeIfAbsent(airport.getIata(), k -> new ArrayList<>()).add(subscription);
+				}
+			} catch (WeatherException e) {
+				// validated on subscription
+			}
+		}
+		watchers = index;
+	}
+
+	/**
+	 * @return Counters of the subscriptions, for health reports
+	 */
+	public Map<String, Long> getStatistics() {
+		Map<String, Long> result = new LinkedHashMap<>();
+		result.put("subscriptions", (long) subscriptions.size());
+		result.put("changed", (long) changed.size());
+		return result;
+	}
+
+}
@@ -0,0 +1,281 @@
+package com.crossover.trial.weather.utility;
+
+import com.crossover.trial.weather.model.DataPoint;
+
+/**
+ * Parser specialized for the json of a {@link DataPoint}: a flat object with
+ * the numeric fields mean, first, second, third and count. Values are read
+ * into primitives in a single pass, without tokens, strings or reflection.
+ *
+ * Only strict json is handled: any other input, even if Gson would accept it
+ * (unknown fields, quoted numbers, lenient syntax) or reject it, makes the
+ * parser give up so the caller can fall back to Gson, keeping its behavior
+ * and its error messages.
+ *
+ * @author Michele Mastrogiovanni
+ */
+public class DataPointParser {
+
+	/** largest mantissa converted exactly to double */
+	private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+	/** powers of ten exactly representable as double */
+	private static final double[] POWERS_OF_TEN = new double[23];
+
+	static {
+		POWERS_OF_TEN[0] = 1;
+		for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+			POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+		}
+	}
+
+	private final CharSequence text;
+
+	private int position;
+
+	private DataPointParser(CharSequence text) {
+		this.text = text;
+	}
+
+	/**
+	 * @param json Text of a data point
+	 * @return The data point, null if the text is not a strict data point object
+	 */
+	public static DataPoint parse(CharSequence json) {
+		if (json == null) {
+			return null;
+		}
+		return new DataPointParser(json).parseObject();
+	}
+
+	private DataPoint parseObject() {
+
+		double mean = 0;
+		long first = 0;
+		long second = 0;
+		long third = 0;
+		long count = 0;
+
+		if (!consume('{')) {
+			return null;
+		}
+		if (!consume('}')) {
+			do {
+				int field = parseFieldName();
+				if (field < 0 || !consume(':')) {
+					return null;
+				}
+				skipWhitespace();
+				if (field == 0) {
+					mean = parseDouble();
+					if (Double.isNaN(mean)) {
+						return null;
+					}
+				} else {
+					long value = parseInt();
+					if (value == Long.MIN_VALUE) {
+						return null;
+					}
+					if (field == 1) {
+						first = value;
+					} else if (field == 2) {
+						second = value;
+					} else if (field == 3) {
+						third = value;
+					} else {
+						count = value;
+					}
+				}
+			} while (consume(','));
+			if (!consume('}')) {
+				return null;
+			}
+		}
+
+		skipWhitespace();
+		if (position != text.length()) {
+			return null;
+		}
+
+		return new DataPoint.Builder()
+				.withMean(mean)
+				.withFirst((int) first)
+				.withMedian((int) second)
+				.withLast((int) third)
+				.withCount((int) count)
+				.build();
+
+	}
+
+	/**
+	 * @return 0 to 4 for mean, first, second, third and count, -1 for any other name
+	 */
+	private int parseFieldName() {
+		if (!consume('"')) {
+			return -1;
+		}
+		int start = position;
+		while (position < text.length() && text.charAt(position) != '"') {
+			if (text.charAt(position) == '\\') {
+				return -1;
+			}
+			position++;
+		}
+		if (position == text.length()) {
+			return -1;
+		}
+		int length = position - start;
+		position++;
+		if (matches(start, length, "mean")) {
+			return 0;
+		}
+		if (matches(start, length, "first")) {
+			return 1;
+		}
+		if (matches(start, length, "second")) {
+			return 2;
+		}
+		if (matches(start, length, "third")) {
+			return 3;
+		}
+		if (matches(start, length, "count")) {
+			return 4;
+		}
+		return -1;
+	}
+
+	private boolean matches(int start, int length, String name) {
+		if (length != name.length()) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (text.charAt(start + i) != name.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return An int value, Long.MIN_VALUE if not a json integer in the int range
+	 */
+	private long parseInt() {
+		boolean negative = peek() == '-';
+		if (negative) {
+			position++;
+		}
+		int start = position;
+		long value = 0;
+		while (position < text.length() && isDigit(text.charAt(position))) {
+			value = value * 10 + (text.charAt(position++) - '0');
+			if (value > (long) Integer.MAX_VALUE + 1) {
+				return Long.MIN_VALUE;
+			}
+		}
+		if (position == start || position - start > 1 && text.charAt(start) == '0' || !isNumberEnd()) {
+			return Long.MIN_VALUE;
+		}
+		value = negative ? -value : value;
+		return value > Integer.MAX_VALUE ? Long.MIN_VALUE : value;
+	}
+
+	/**
+	 * Parse a json number whose value is exactly the double nearest to it,
+	 * computed without rounding errors: at most 15 digits and a small
+	 * exponent.
+	 *
+	 * @return The value, NaN if not a json number or out of that range
+	 */
+	private double parseDouble() {
+		boolean negative = peek() == '-';
+		if (negative) {
+			position++;
+		}
+		int start = position;
+		long mantissa = 0;
+		int exponent = 0;
+		int digits = 0;
+		while (position < text.length() && isDigit(text.charAt(position))) {
+			mantissa = mantissa * 10 + (text.charAt(position++) - '0');
+			digits++;
+		}
+		if (digits == 0 || digits > 1 && text.charAt(start) == '0') {
+			return Double.NaN;
+		}
+		if (peek() == '.') {
+			position++;
+			int fraction = position;
+			while (position < text.length() && isDigit(text.charAt(position))) {
+				mantissa = mantissa * 10 + (text.charAt(position++) - '0');
+				digits++;
+			}
+			if (position == fraction) {
+				return Double.NaN;
+			}
+			exponent -= position - fraction;
+		}
+		if (peek() == 'e' || peek() == 'E') {
+			position++;
+			boolean negativeExponent = peek() == '-';
+			if (negativeExponent || peek() == '+') {
+				position++;
+			}
+			int exponentStart = position;
+			int value = 0;
+			while (position < text.length() && isDigit(text.charAt(position)) && value < 1000) {
+				value = value * 10 + (text.charAt(position++) - '0');
+			}
+			if (position == exponentStart) {
+				return Double.NaN;
+			}
+			exponent += negativeExponent ? -value : value;
+		}
+		if (digits > 15 || mantissa > MAX_EXACT_MANTISSA || exponent < -22 || exponent > 22 || !isNumberEnd()) {
+			return Double.NaN;
+		}
+		double value = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+		return negative ? -value : value;
+	}
+
+	/**
+	 * @return True if the value ends here
+	 */
+	private boolean isNumberEnd() {
+		skipWhitespace();
+		char c = peek();
+		return c == ',' || c == '}';
+	}
+
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	private char peek() {
+		return position < text.length() ? text.charAt(position) : 0;
+	}
+
+	/**
+	 * Skip whitespace and consume a character if it comes next.
+	 *
+	 * @return True if the character was there
+	 */
+	private boolean consume(char c) {
+		skipWhitespace();
+		if (peek() == c) {
+			position++;
+			return true;
+		}
+		return false;
+	}
+
+	private void skipWhitespace() {
+		while (position < text.length()) {
+			char c = text.charAt(position);
+			if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+				return;
+			}
+			position++;
+		}
+	}
+
+}
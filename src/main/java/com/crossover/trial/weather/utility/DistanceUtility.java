@@ -7,6 +7,12 @@ public class DistanceUtility {
     /** earth radius in KM */
     public static final double R = 6372.8;
 
+    /**
+     * Tolerance added to the haversine term limit of a radius: it absorbs the
+     * rounding of the batch kernel, about 0.4 m at short range.
+     */
+    private static final double HAVERSINE_SLACK = 1e-15;
+
     /**
      * Haversine distance between two airports.
      *
@@ -15,12 +21,72 @@ public class DistanceUtility {
      * @return the distance in KM
      */
     public static double calculateDistance(AirportData ad1, AirportData ad2) {
-        double deltaLat = Math.toRadians(ad2.getLatitude() - ad1.getLatitude());
-        double deltaLon = Math.toRadians(ad2.getLongitude() - ad1.getLongitude());
-		double a = Math.pow(Math.sin(deltaLat / 2), 2)
-				+ Math.pow(Math.sin(deltaLon / 2), 2) * Math.cos(ad1.getLatitude()) * Math.cos(ad2.getLatitude());
+        return calculateDistance(ad1.getLatitude(), ad1.getLongitude(), ad2.getLatitude(), ad2.getLongitude());
+    }
+
+    /**
+     * Haversine distance between two points expressed in degrees.
+     *
+     * @param lat1 latitude of point 1
+     * @param lon1 longitude of point 1
+     * @param lat2 latitude of point 2
+     * @param lon2 longitude of point 2
+     * @return the distance in KM
+     */
+    public static double calculateDistance(double lat1, double lon1, double lat2, double lon2) {
+        double sinDeltaLat = Math.sin(Math.toRadians(lat2 - lat1) / 2);
+        double sinDeltaLon = Math.sin(Math.toRadians(lon2 - lon1) / 2);
+        double a = sinDeltaLat * sinDeltaLat
+                + sinDeltaLon * sinDeltaLon * Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2));
         double c = 2 * Math.asin(Math.sqrt(a));
         return R * c;
     }
 
+    /**
+     * Haversine term {@code a = sin^2(dLat/2) + cos(lat1) cos(lat2) sin^2(dLon/2)} between an origin and
+     * many points, given as parallel arrays of the sines and cosines of their coordinates in radians.
+     * With {@code sin^2(x/2) = (1 - cos x) / 2} and {@code cos(x - y) = cos x cos y + sin x sin y} the
+     * loop only multiplies and adds, with no call and no branch, so the JIT can unroll and vectorize it.
+     * Compare the result with {@link #haversineLimit(double)} or convert it with {@link #distanceOf(double)}.
+     *
+     * @param sinLat sine of the origin latitude
+     * @param cosLat cosine of the origin latitude
+     * @param sinLon sine of the origin longitude
+     * @param cosLon cosine of the origin longitude
+     * @param sinLats sines of the latitudes of the points
+     * @param cosLats cosines of the latitudes of the points
+     * @param sinLons sines of the longitudes of the points
+     * @param cosLons cosines of the longitudes of the points
+     * @param length number of points
+     * @param out receives the haversine term of each point
+     */
+    public static void haversines(double sinLat, double cosLat, double sinLon, double cosLon,
+            double[] sinLats, double[] cosLats, double[] sinLons, double[] cosLons, int length, double[] out) {
+        for (int i = 0; i < length; i++) {
+            double cosDeltaLat = cosLat * cosLats[i] + sinLat * sinLats[i];
+            double cosDeltaLon = cosLon * cosLons[i] + sinLon * sinLons[i];
+            out[i] = 0.5 * (1 - cosDeltaLat) + 0.5 * cosLat * cosLats[i] * (1 - cosDeltaLon);
+        }
+    }
+
+    /**
+     * @param radius a distance in KM
+     * @return the largest haversine term of the points within radius
+     */
+    public static double haversineLimit(double radius) {
+        if (radius >= Math.PI * R) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double s = Math.sin(radius / (2 * R));
+        return s * s + HAVERSINE_SLACK;
+    }
+
+    /**
+     * @param haversine a haversine term
+     * @return the distance in KM
+     */
+    public static double distanceOf(double haversine) {
+        return R * 2 * Math.asin(Math.sqrt(Math.max(0, Math.min(1, haversine))));
+    }
+
 }
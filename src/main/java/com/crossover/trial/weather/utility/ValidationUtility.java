@@ -5,6 +5,8 @@ import javax.ws.rs.core.Response.Status;
 import org.apache.commons.lang3.StringUtils;
 
 import com.crossover.trial.weather.exception.WeatherException;
+import com.crossover.trial.weather.model.AirportData;
+import com.crossover.trial.weather.model.DataPoint;
 import com.crossover.trial.weather.model.DataPointType;
 import com.google.gson.Gson;
 import com.google.gson.JsonSyntaxException;
@@ -19,6 +21,9 @@ public class ValidationUtility {
 	/** shared gson json to object factory */
 	public final static Gson gson = new Gson();
 
+	/** all point types, without copying the array on each lookup */
+	private final static DataPointType[] DATA_POINT_TYPES = DataPointType.values();
+
 	/**
 	 * Parse and check if normalied value of a property is a DataPointType.
 	 * 
@@ -28,11 +33,27 @@ public class ValidationUtility {
 	 * @throws WeatherException Error in converting normalized value to enum
 	 */
 	public static DataPointType isADataPoint(String property, String value) throws WeatherException {
-		DataPointType dp = DataPointType.valueOf(StringUtils.stripToEmpty(value).toUpperCase());
-		if ( dp == null ) {
-			throw new WeatherException("Error in parsing the " + property + ": it is not a valid DataPointType", Status.BAD_REQUEST);
+		String normalized = StringUtils.stripToEmpty(value);
+		for ( DataPointType type : DATA_POINT_TYPES ) {
+			if ( type.name().equalsIgnoreCase(normalized) ) {
+				return type;
+			}
 		}
-		return dp;
+		throw new WeatherException("Error in parsing the " + property + ": it is not a valid DataPointType", Status.BAD_REQUEST);
+	}
+
+	/**
+	 * Decode a data point with {@link DataPointParser}, falling back to
+	 * {@link #jsonIsA(Class, String, String)} for any input it does not handle.
+	 * 
+	 * @param property Property description
+	 * @param value String to convert
+	 * @return Converted data point
+	 * @throws WeatherException Impossible to parse/convert JSON object to a data point
+	 */
+	public static DataPoint jsonIsADataPoint(String property, String value) throws WeatherException {
+		DataPoint dp = DataPointParser.parse(value);
+		return dp != null ? dp : jsonIsA(DataPoint.class, property, value);
 	}
 	
 	/**
@@ -70,6 +91,23 @@ public class ValidationUtility {
 		}
 	}
 
+	/**
+	 * Verify that a normalized string (removing blank spaces) is a correct long value
+	 * 
+	 * @param property Property checking
+	 * @param value Value in string (eventually with blank chars)
+	 * @return Its long value
+	 * @throws WeatherException Normalized string is not an integer number
+	 */
+	public static long isALong(String property, String value) throws WeatherException {
+		try {
+			return Long.valueOf(StringUtils.stripToEmpty(value));
+		}
+		catch ( NumberFormatException e ) {
+			throw new WeatherException("Error in parsing the " + property + ": is not an integer number", Status.BAD_REQUEST);
+		}
+	}
+
 	/**
 	 * Verify a radius value: it must be a not negative number
 	 * 
@@ -135,4 +173,32 @@ public class ValidationUtility {
 		}
 	}
 
+	/**
+	 * Verify the description of an airport to register: IATA code must be
+	 * valid, latitude and longitude must be numbers in range.
+	 * 
+	 * @param iataCode de-normalized IATA code
+	 * @param latString Latitude in degrees as a string
+	 * @param longString Longitude in degrees as a string
+	 * @return Airport with normalized IATA code
+	 * @throws WeatherException Some property is missing or invalid
+	 */
+	public static AirportData isAnAirport(String iataCode, String latString, String longString) throws WeatherException {
+
+		checkNotNull("latitude", latString);
+		checkNotNull("longitude", longString);
+
+		double latitude = isADouble("latitude", latString);
+		double longitude = isADouble("longitude", longString);
+
+		iataCode = checkIataCode(iataCode);
+
+		checkLatitude(latitude);
+
+		checkLongitude(longitude);
+
+		return new AirportData.Builder(iataCode).withLat(latitude).withLon(longitude).build();
+
+	}
+
 }
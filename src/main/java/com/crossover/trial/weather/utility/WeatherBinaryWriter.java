@@ -0,0 +1,90 @@
+package com.crossover.trial.weather.utility;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Collection;
+
+import com.crossover.trial.weather.model.AtmosphericInformation;
+import com.crossover.trial.weather.model.DataPoint;
+
+/**
+ * Writes atmospheric information in a compact binary form, for consumers
+ * fetching large radii. All numbers are little-endian:
+ *
+ * <pre>
+ * header:  'W' 'B' version(u8 = 1) reserved(u8 = 0) count(i32)
+ * record:  lastUpdateTime(i64) present(u8) data point * number of bits set in present
+ * point:   mean(f64) first(i32) second(i32) third(i32) count(i32)
+ * </pre>
+ *
+ * Bit i of present, from the least significant, is set when the i-th data
+ * point is there, in the order of the json form: temperature, wind,
+ * humidity, precipitation, pressure, cloudCover. A fully populated record
+ * takes 153 bytes.
+ *
+ * @author Michele Mastrogiovanni
+ */
+public class WeatherBinaryWriter {
+
+	public static final String MEDIA_TYPE = "application/x-weather-binary";
+
+	public static final int VERSION = 1;
+
+	private static final int HEADER_SIZE = 8;
+
+	private static final int POINT_SIZE = 24;
+
+	private static final int MAX_RECORD_SIZE = 9 + 6 * POINT_SIZE;
+
+	private static final int BUFFER_SIZE = 8192;
+
+	/**
+	 * Write a list of atmospheric information.
+	 *
+	 * @param items Information to write
+	 * @param out Destination, left open
+	 */
+	public static void write(Collection<AtmosphericInformation> items, OutputStream out) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.put((byte) 'W').put((byte) 'B').put((byte) VERSION).put((byte) 0).putInt(items.size());
+		for (AtmosphericInformation ai : items) {
+			if (buffer.remaining() < MAX_RECORD_SIZE) {
+				out.write(buffer.array(), 0, buffer.position());
+				buffer.clear();
+			}
+			write(buffer, ai);
+		}
+		out.write(buffer.array(), 0, buffer.position());
+	}
+
+	/**
+	 * @return The binary form of a list of atmospheric information
+	 */
+	public static byte[] toBytes(Collection<AtmosphericInformation> items) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(HEADER_SIZE + items.size() * MAX_RECORD_SIZE);
+		write(items, out);
+		return out.toByteArray();
+	}
+
+	private static void write(ByteBuffer buffer, AtmosphericInformation ai) {
+		DataPoint[] points = { ai.getTemperature(), ai.getWind(), ai.getHumidity(), ai.getPrecipitation(),
+				ai.getPressure(), ai.getCloudCover() };
+		int present = 0;
+		for (int i = 0; i < points.length; i++) {
+			if (points[i] != null) {
+				present |= 1 << i;
+			}
+		}
+		buffer.putLong(ai.getLastUpdateTime()).put((byte) present);
+		for (DataPoint dp : points) {
+			if (dp != null) {
+				buffer.putDouble(dp.getMean()).putInt(dp.getFirst()).putInt(dp.getSecond()).putInt(dp.getThird())
+						.putInt(dp.getCount());
+			}
+		}
+	}
+
+}
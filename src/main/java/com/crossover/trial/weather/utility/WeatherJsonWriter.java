@@ -0,0 +1,94 @@
+package com.crossover.trial.weather.utility;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+
+import com.crossover.trial.weather.model.AtmosphericInformation;
+import com.crossover.trial.weather.model.DataPoint;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Writes atmospheric information as json straight to a stream, one field at
+ * a time, with the same output of the Jackson provider of the server: fields
+ * in declaration order, nulls included. No reflection and no intermediate
+ * tree; the generator buffers are recycled by Jackson per thread.
+ *
+ * @author Michele Mastrogiovanni
+ */
+public class WeatherJsonWriter {
+
+	private static final JsonFactory FACTORY = new JsonFactory().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+	/**
+	 * Write a json array of atmospheric information.
+	 *
+	 * @param items Information to write
+	 * @param out Destination, left open
+	 */
+	public static void write(Iterable<AtmosphericInformation> items, OutputStream out) throws IOException {
+		try (JsonGenerator generator = FACTORY.createGenerator(out, JsonEncoding.UTF8)) {
+			generator.writeStartArray();
+			for (AtmosphericInformation ai : items) {
+				write(generator, ai);
+			}
+			generator.writeEndArray();
+		}
+	}
+
+	/**
+	 * @return A json array of atmospheric information, UTF-8 encoded
+	 */
+	public static byte[] toBytes(Iterable<AtmosphericInformation> items) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		write(items, out);
+		return out.toByteArray();
+	}
+
+	/**
+	 * @return A json object of atmospheric information keyed by IATA code, UTF-8 encoded
+	 */
+	public static byte[] toBytes(Map<String, AtmosphericInformation> items) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (JsonGenerator generator = FACTORY.createGenerator(out, JsonEncoding.UTF8)) {
+			generator.writeStartObject();
+			for (Map.Entry<String, AtmosphericInformation> item : items.entrySet()) {
+				generator.writeFieldName(item.getKey());
+				write(generator, item.getValue());
+			}
+			generator.writeEndObject();
+		}
+		return out.toByteArray();
+	}
+
+	private static void write(JsonGenerator generator, AtmosphericInformation ai) throws IOException {
+		generator.writeStartObject();
+		write(generator, "temperature", ai.getTemperature());
+		write(generator, "wind", ai.getWind());
+		write(generator, "humidity", ai.getHumidity());
+		write(generator, "precipitation", ai.getPrecipitation());
+		write(generator, "pressure", ai.getPressure());
+		write(generator, "cloudCover", ai.getCloudCover());
+		generator.writeNumberField("lastUpdateTime", ai.getLastUpdateTime());
+		generator.writeEndObject();
+	}
+
+	private static void write(JsonGenerator generator, String field, DataPoint dp) throws IOException {
+		generator.writeFieldName(field);
+		if (dp == null) {
+			generator.writeNull();
+			return;
+		}
+		generator.writeStartObject();
+		generator.writeNumberField("mean", dp.getMean());
+		generator.writeNumberField("first", dp.getFirst());
+		generator.writeNumberField("second", dp.getSecond());
+		generator.writeNumberField("third", dp.getThird());
+		generator.writeNumberField("count", dp.getCount());
+		generator.writeEndObject();
+	}
+
+}
@@ -0,0 +1,112 @@
+package com.crossover.trial.weather;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.crossover.trial.weather.catalog.AirportCatalog;
+import com.crossover.trial.weather.index.LinearScanIndex;
+import com.crossover.trial.weather.model.AirportData;
+import com.crossover.trial.weather.model.DataPoint;
+import com.crossover.trial.weather.model.DataPointType;
+import com.crossover.trial.weather.model.Repository;
+
+public class AirportCatalogTest {
+
+	private Repository repository = Repository.getInstance();
+
+	private List<AirportData> airports;
+
+	private File file;
+
+	@Before
+	public void setUp() throws IOException {
+		Random random = new Random(7);
+		airports = new ArrayList<>();
+		for (int i = 0; i < 5000; i++) {
+			String iata = "" + (char) ('A' + i / 676 % 26) + (char) ('A' + i / 26 % 26) + (char) ('A' + i % 26);
+			airports.add(new AirportData.Builder(iata).withLat(random.nextDouble() * 180 - 90)
+					.withLon(random.nextDouble() * 360 - 180).build());
+		}
+		file = File.createTempFile("catalog", ".bin");
+		AirportCatalog.write(airports, file, 2);
+	}
+
+	@After
+	public void tearDown() {
+		repository.reset();
+		file.delete();
+	}
+
+	@Test
+	public void testLookup() throws IOException {
+		AirportCatalog catalog = AirportCatalog.map(file);
+		assertEquals(airports.size(), catalog.size());
+		for (AirportData airport : airports) {
+			int index = catalog.indexOf(airport.getIata());
+			assertEquals(airport.getIata(), catalog.getIata(index));
+			assertEquals(airport.getLatitude(), catalog.getLatitude(index), 0);
+			assertEquals(airport.getLongitude(), catalog.getLongitude(index), 0);
+		}
+		assertEquals(-1, catalog.indexOf("ZZZ"));
+	}
+
+	@Test
+	public void testRadiusMatchesLinearScan() throws IOException {
+		AirportCatalog catalog = AirportCatalog.map(file);
+		LinearScanIndex linear = new LinearScanIndex();
+		airports.forEach(linear::add);
+		for (AirportData origin : airports.subList(0, 100)) {
+			for (double radius : new double[] { 0, 50, 800, 5000, 25000 }) {
+				Set<String> found = new TreeSet<>();
+				catalog.forEachInRadius(origin.getLatitude(), origin.getLongitude(), radius, i -> found.add(catalog.getIata(i)));
+				Set<String> expected = new TreeSet<>();
+				linear.findInRadius(origin, radius).forEach(x -> expected.add(x.getIata()));
+				assertEquals(expected, found);
+			}
+		}
+	}
+
+	@Test
+	public void testRepositoryLayer() throws Exception {
+		Set<String> all = repository.getAirports();
+		airports.forEach(x -> all.add(x.getIata()));
+		repository.setCatalog(AirportCatalog.map(file));
+		assertEquals(all, repository.getAirports());
+
+		AirportData aaa = repository.findAirportData("AAA");
+		assertNotNull(aaa);
+		assertTrue(repository.getAtmosphericInformation("AAA") != null);
+
+		DataPoint dp = new DataPoint.Builder().withMean(22).withFirst(10).withMedian(20).withLast(30).withCount(10).build();
+		repository.addDataPoint("AAA", DataPointType.WIND, dp);
+		assertEquals(dp, repository.getAtmosphericInformation("AAA").getWind());
+
+		// catalog airports are found together with the added ones
+		repository.addAirport("NEW", aaa.getLatitude(), aaa.getLongitude());
+		Set<String> found = new TreeSet<>();
+		repository.getAirportsFromIataInRadius("AAA", 1).forEach(x -> found.add(x.getIata()));
+		assertTrue(found.contains("AAA"));
+		assertTrue(found.contains("NEW"));
+
+		assertTrue(repository.deleteAirport("AAA"));
+		assertNull(repository.findAirportData("AAA"));
+		assertNull(repository.getAtmosphericInformation("AAA"));
+		assertTrue(!repository.getAirports().contains("AAA"));
+		assertEquals(1, repository.getAirportsFromIataInRadius("NEW", 0).size());
+	}
+
+}
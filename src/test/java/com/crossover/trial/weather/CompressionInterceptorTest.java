@@ -0,0 +1,269 @@
+package com.crossover.trial.weather;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.WriterInterceptorContext;
+
+import org.glassfish.jersey.internal.MapPropertiesDelegate;
+import org.glassfish.jersey.server.ContainerRequest;
+import org.junit.Test;
+
+import com.crossover.trial.weather.server.impl.CompressionInterceptor;
+
+public class CompressionInterceptorTest {
+
+	private static final int MIN_SIZE = 256;
+
+	@Test
+	public void testNegotiation() throws Exception {
+		byte[] entity = entity(1000);
+		assertEquals("gzip", write("gzip, deflate", entity).encoding());
+		assertEquals("gzip", write("x-gzip", entity).encoding());
+		assertEquals("deflate", write("deflate", entity).encoding());
+
+		// the higher quality wins, gzip on a tie
+		assertEquals("deflate", write("gzip;q=0.5, deflate", entity).encoding());
+		assertEquals("gzip", write("deflate;q=0.8, gzip;q=0.8", entity).encoding());
+
+		// q=0 refuses a coding
+		assertEquals("deflate", write("gzip;q=0, deflate", entity).encoding());
+		assertNull(write("gzip;q=0, deflate;q=0", entity).encoding());
+
+		// * stands for the codings not listed
+		assertEquals("gzip", write("*", entity).encoding());
+		assertEquals("deflate", write("gzip;q=0, *", entity).encoding());
+		assertNull(write("*;q=0", entity).encoding());
+
+		assertNull(write("identity, br", entity).encoding());
+		assertNull(write(null, entity).encoding());
+	}
+
+	@Test
+	public void testBelowMinSize() throws Exception {
+		byte[] entity = entity(MIN_SIZE - 1);
+		Written written = write("gzip", entity);
+		assertNull(written.encoding());
+		assertArrayEquals(entity, written.body);
+		assertEquals(HttpHeaders.ACCEPT_ENCODING, written.headers.getFirst(HttpHeaders.VARY));
+		assertEquals(entity.length, written.headers.getFirst(HttpHeaders.CONTENT_LENGTH));
+	}
+
+	@Test
+	public void testAboveMinSize() throws Exception {
+		byte[] entity = entity(10 * MIN_SIZE);
+
+		Written gzip = write("gzip", entity);
+		assertEquals("gzip", gzip.encoding());
+		assertEquals(HttpHeaders.ACCEPT_ENCODING, gzip.headers.getFirst(HttpHeaders.VARY));
+		assertFalse(gzip.headers.containsKey(HttpHeaders.CONTENT_LENGTH));
+		assertArrayEquals(entity, read(new GZIPInputStream(new ByteArrayInputStream(gzip.body))));
+
+		Written deflate = write("deflate", entity);
+		assertEquals("deflate", deflate.encoding());
+		assertEquals(HttpHeaders.ACCEPT_ENCODING, deflate.headers.getFirst(HttpHeaders.VARY));
+		assertArrayEquals(entity, read(new InflaterInputStream(new ByteArrayInputStream(deflate.body))));
+	}
+
+	@Test
+	public void testEventStreamNotCompressed() throws Exception {
+		byte[] entity = entity(10 * MIN_SIZE);
+		Written written = write("gzip", entity, new MediaType("text", "event-stream"));
+		assertNull(written.encoding());
+		assertFalse(written.headers.containsKey(HttpHeaders.VARY));
+		assertArrayEquals(entity, written.body);
+	}
+
+	/**
+	 * @return Compressible test entity of the given size
+	 */
+	private static byte[] entity(int size) {
+		StringBuilder result = new StringBuilder();
+		for (int i = 0; result.length() < size; i++) {
+			result.append("{\"iata\":\"BOS\",\"wind\":").append(i % 10).append("},");
+		}
+		return result.substring(0, size).getBytes(StandardCharsets.US_ASCII);
+	}
+
+	private static byte[] read(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1024];
+		for (int n; (n = in.read(buffer)) > 0;) {
+			out.write(buffer, 0, n);
+		}
+		return out.toByteArray();
+	}
+
+	private static Written write(String acceptEncoding, byte[] entity) throws Exception {
+		return write(acceptEncoding, entity, MediaType.APPLICATION_JSON_TYPE);
+	}
+
+	/**
+	 * Write an entity through the interceptor, in small chunks, for a request
+	 * with the given Accept-Encoding header.
+	 */
+	private static Written write(String acceptEncoding, byte[] entity, MediaType mediaType) throws Exception {
+		ContainerRequest request = new ContainerRequest(null, null, "GET", null, new MapPropertiesDelegate());
+		if (acceptEncoding != null) {
+			request.header(HttpHeaders.ACCEPT_ENCODING, acceptEncoding);
+		}
+		CompressionInterceptor interceptor = new CompressionInterceptor(MIN_SIZE, 6);
+		Field field = CompressionInterceptor.class.getDeclaredField("requestHeaders");
+		field.setAccessible(true);
+		field.set(interceptor, request);
+
+		Written written = new Written();
+		written.headers.putSingle(HttpHeaders.CONTENT_LENGTH, entity.length);
+		Context context = new Context(entity, mediaType, written);
+		interceptor.aroundWriteTo(context);
+		written.body = context.body.toByteArray();
+		return written;
+	}
+
+	/**
+	 * Response written by the interceptor.
+	 */
+	private static class Written {
+
+		private final MultivaluedMap<String, Object> headers = new MultivaluedHashMap<>();
+
+		private byte[] body;
+
+		private String encoding() {
+			return (String) headers.getFirst(HttpHeaders.CONTENT_ENCODING);
+		}
+
+	}
+
+	/**
+	 * Writer context proceeding to a message body writer that copies the
+	 * entity in chunks of 100 bytes.
+	 */
+	private static class Context implements WriterInterceptorContext {
+
+		private final byte[] entity;
+
+		private final MediaType mediaType;
+
+		private final Written written;
+
+		private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+		private OutputStream out = body;
+
+		private Context(byte[] entity, MediaType mediaType, Written written) {
+			this.entity = entity;
+			this.mediaType = mediaType;
+			this.written = written;
+		}
+
+		@Override
+		public void proceed() throws IOException {
+			for (int off = 0; off < entity.length; off += 100) {
+				out.write(entity, off, Math.min(100, entity.length - off));
+			}
+			out.flush();
+		}
+
+		@Override
+		public Object getEntity() {
+			return entity;
+		}
+
+		@Override
+		public void setEntity(Object entity) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public OutputStream getOutputStream() {
+			return out;
+		}
+
+		@Override
+		public void setOutputStream(OutputStream os) {
+			out = os;
+		}
+
+		@Override
+		public MultivaluedMap<String, Object> getHeaders() {
+			return written.headers;
+		}
+
+		@Override
+		public Object getProperty(String name) {
+			return null;
+		}
+
+		@Override
+		public Collection<String> getPropertyNames() {
+			return Collections.emptyList();
+		}
+
+		@Override
+		public void setProperty(String name, Object object) {
+		}
+
+		@Override
+		public void removeProperty(String name) {
+		}
+
+		@Override
+		public Annotation[] getAnnotations() {
+			return new Annotation[0];
+		}
+
+		@Override
+		public void setAnnotations(Annotation[] annotations) {
+		}
+
+		@Override
+		public Class<?> getType() {
+			return byte[].class;
+		}
+
+		@Override
+		public void setType(Class<?> type) {
+		}
+
+		@Override
+		public Type getGenericType() {
+			return byte[].class;
+		}
+
+		@Override
+		public void setGenericType(Type genericType) {
+		}
+
+		@Override
+		public MediaType getMediaType() {
+			return mediaType;
+		}
+
+		@Override
+		public void setMediaType(MediaType mediaType) {
+		}
+
+	}
+
+}
@@ -0,0 +1,72 @@
+package com.crossover.trial.weather;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.crossover.trial.weather.model.DataPoint;
+import com.crossover.trial.weather.utility.DataPointParser;
+import com.crossover.trial.weather.utility.ValidationUtility;
+
+public class DataPointParserTest {
+
+	@Test
+	public void testMatchesGson() {
+		Random random = new Random(11);
+		int handled = 0;
+		for (int i = 0; i < 20000; i++) {
+			String mean;
+			switch (i % 4) {
+			case 0:
+				mean = String.format(Locale.ROOT, "%.3f", random.nextDouble() * 2000 - 1000);
+				break;
+			case 1:
+				mean = Double.toString(random.nextGaussian() * 100);
+				break;
+			case 2:
+				mean = Integer.toString(random.nextInt(1000) - 500);
+				break;
+			default:
+				mean = random.nextInt(100000) + "e-" + random.nextInt(25);
+			}
+			String json = "{ \"mean\": " + mean + ", \"first\":" + (random.nextInt() >> random.nextInt(32))
+					+ ",\"second\":" + random.nextInt(100) + ",\n\"third\" : " + -random.nextInt(100)
+					+ ", \"count\":" + random.nextInt(1000) + "}";
+			DataPoint expected = ValidationUtility.gson.fromJson(json, DataPoint.class);
+			DataPoint parsed = DataPointParser.parse(json);
+			if (parsed != null) {
+				handled++;
+				assertEquals(json, expected, parsed);
+				assertEquals(json, Double.doubleToLongBits(expected.getMean()), Double.doubleToLongBits(parsed.getMean()));
+			}
+		}
+		// long decimal expansions are left to gson
+		assertTrue(handled > 14000);
+	}
+
+	@Test
+	public void testStrictInput() {
+		assertNotNull(DataPointParser.parse("{}"));
+		assertNotNull(DataPointParser.parse(" {\"count\":-2147483648, \"mean\":-0.0} \n"));
+		assertEquals(new DataPoint.Builder().withMean(22).withFirst(10).withMedian(20).withLast(30).withCount(10).build(),
+				DataPointParser.parse("{\"mean\":22.0,\"first\":10,\"second\":20,\"third\":30,\"count\":10}"));
+	}
+
+	@Test
+	public void testGivesUp() {
+		String[] inputs = { null, "", "[]", "{", "{\"mean\":1", "{\"mean\":1,}", "{\"mean\":01}", "{\"first\":1.5}",
+				"{\"first\":2147483648}", "{\"first\":\"10\"}", "{mean:1}", "{'mean':1}", "{\"other\":1}",
+				"{\"mean\":1}x", "{\"mean\":.5}", "{\"mean\":1.}", "{\"mean\":1e}", "{\"mean\":1e400}",
+				"{\"mean\":12345678901234567}", "{\"mean\":null}", "{\"me\\u0061n\":1}" };
+		for (String input : inputs) {
+			assertNull(input, DataPointParser.parse(input));
+		}
+	}
+
+}
@@ -0,0 +1,118 @@
+package com.crossover.trial.weather;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.crossover.trial.weather.model.HeavyHitterSketch;
+import com.crossover.trial.weather.model.Statistics;
+
+public class HeavyHitterSketchTest {
+
+	@Test
+	public void testTopKeysOfSkewedStream() {
+		HeavyHitterSketch sketch = new HeavyHitterSketch(4096, 4, 20);
+		Map<String, Long> exact = new HashMap<>();
+		Random random = new Random(42);
+
+		// 50000 keys, key i drawn with weight 1 / (i + 1)
+		int keys = 50000;
+		double[] cumulative = new double[keys];
+		double sum = 0;
+		for (int i = 0; i < keys; i++) {
+			sum += 1.0 / (i + 1);
+			cumulative[i] = sum;
+		}
+		for (int n = 0; n < 500000; n++) {
+			int index = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+			String key = "K" + (index < 0 ? -index - 1 : index);
+			sketch.add(key);
+			exact.merge(key, 1L, Long::sum);
+		}
+
+		assertEquals(500000, sketch.total());
+		Map<String, Long> top = sketch.top();
+		assertEquals(20, top.size());
+		List<Long> counts = new ArrayList<>(top.values());
+		for (int i = 1; i < counts.size(); i++) {
+			assertTrue(counts.get(i - 1) >= counts.get(i));
+		}
+		for (int i = 0; i < 10; i++) {
+			assertTrue("K" + i + " missing", top.containsKey("K" + i));
+		}
+		for (Map.Entry<String, Long> entry : top.entrySet()) {
+			long count = exact.get(entry.getKey());
+			assertTrue(entry.getValue() >= count);
+			assertTrue(entry.getValue() - sketch.error() <= count);
+		}
+	}
+
+	@Test
+	public void testEqualHashCodesCountedApart() {
+		// "Aa" and "BB" share their hash code, so do all the strings made of them
+		List<String> keys = new ArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			StringBuilder key = new StringBuilder();
+			for (int bit = 0; bit < 3; bit++) {
+				key.append((i >> bit & 1) == 0 ? "Aa" : "BB");
+			}
+			keys.add(key.toString());
+		}
+		for (String key : keys) {
+			assertEquals(keys.get(0).hashCode(), key.hashCode());
+		}
+
+		HeavyHitterSketch sketch = new HeavyHitterSketch(1024, 4, 4);
+		for (int n = 0; n < 1000; n++) {
+			sketch.add(keys.get(0));
+		}
+		assertEquals(1000, sketch.estimate(keys.get(0)));
+		for (String key : keys.subList(1, keys.size())) {
+			assertEquals(key, 0, sketch.estimate(key));
+		}
+	}
+
+	@Test
+	public void testStatisticsInSketchMode() throws Exception {
+		Constructor<Statistics> constructor = Statistics.class.getDeclaredConstructor(boolean.class);
+		constructor.setAccessible(true);
+		Statistics statistics = constructor.newInstance(true);
+		for (int i = 0; i < 3; i++) {
+			statistics.updateRequestFrequency("BOS", 0);
+		}
+		statistics.updateRequestFrequency("JFK", 0);
+
+		// no exact frequencies: only the top airports, as fractions of all requests
+		assertNull(statistics.getIataFreq());
+		Map<String, Object> top = statistics.getTopRequests();
+		assertEquals(4L, top.get("requests"));
+		Map<?, ?> airports = (Map<?, ?>) top.get("airports");
+		assertEquals(Arrays.asList("BOS", "JFK"), new ArrayList<>(airports.keySet()));
+		assertEquals(0.75, (Double) airports.get("BOS"), 0);
+		assertEquals(0.25, (Double) airports.get("JFK"), 0);
+	}
+
+	@Test
+	public void testClear() {
+		HeavyHitterSketch sketch = new HeavyHitterSketch(64, 2, 2);
+		sketch.add("BOS");
+		sketch.add("BOS");
+		sketch.add("JFK");
+		assertEquals(2, sketch.estimate("BOS"));
+		sketch.clear();
+		assertEquals(0, sketch.estimate("BOS"));
+		assertEquals(0, sketch.total());
+		assertTrue(sketch.top().isEmpty());
+	}
+
+}
@@ -0,0 +1,241 @@
+package com.crossover.trial.weather;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.crossover.trial.weather.catalog.AirportCatalog;
+import com.crossover.trial.weather.exception.WeatherException;
+import com.crossover.trial.weather.model.AirportData;
+import com.crossover.trial.weather.model.AtmosphericInformation;
+import com.crossover.trial.weather.model.DataPoint;
+import com.crossover.trial.weather.model.DataPointType;
+import com.crossover.trial.weather.model.Repository;
+import com.crossover.trial.weather.model.RepositoryListener;
+import com.crossover.trial.weather.persistence.PersistenceManager;
+
+public class PersistenceTest {
+
+	private Repository repository = Repository.getInstance();
+
+	private File directory;
+
+	private DataPoint dp = new DataPoint.Builder().withMean(22).withFirst(10).withMedian(20).withLast(30).withCount(10).build();
+
+	@Before
+	public void setUp() throws IOException {
+		repository.reset();
+		directory = Files.createTempDirectory("weather").toFile();
+	}
+
+	@After
+	public void tearDown() {
+		repository.reset();
+		for (File file : directory.listFiles()) {
+			file.delete();
+		}
+		directory.delete();
+	}
+
+	@Test
+	public void testRecoverFromSnapshotAndLog() throws Exception {
+
+		PersistenceManager persistence = new PersistenceManager(directory, 10, 3600);
+		persistence.start(repository);
+
+		repository.addAirport("FCO", 41.804475, 12.250797);
+		repository.addDataPoint("FCO", DataPointType.WIND, dp, 1000);
+		persistence.snapshot();
+		repository.addDataPoint("BOS", DataPointType.TEMPERATURE, dp, 2000);
+		repository.deleteAirport("MMU");
+		persistence.close();
+
+		repository.clear();
+		assertNull(repository.findAirportData("FCO"));
+
+		persistence = new PersistenceManager(directory, 10, 3600);
+		persistence.start(repository);
+		persistence.close();
+
+		assertEquals(5, repository.getAirports().size());
+		assertNull(repository.findAirportData("MMU"));
+		assertEquals(41.804475, repository.findAirportData("FCO").getLatitude(), 1e-9);
+
+		AtmosphericInformation fco = repository.getAtmosphericInformation("FCO");
+		assertEquals(dp, fco.getWind());
+		assertEquals(1000, fco.getLastUpdateTime());
+
+		AtmosphericInformation bos = repository.getAtmosphericInformation("BOS");
+		assertEquals(dp, bos.getTemperature());
+		assertEquals(2000, bos.getLastUpdateTime());
+
+	}
+
+	@Test
+	public void testCatalogKeptOnRecovery() throws Exception {
+
+		List<AirportData> airports = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			String iata = "" + (char) ('Q' + i / 676) + (char) ('A' + i / 26 % 26) + (char) ('A' + i % 26);
+			airports.add(new AirportData.Builder(iata).withLat(i % 180 - 90).withLon(i % 360 - 180).build());
+		}
+		File file = File.createTempFile("catalog", ".bin");
+		try {
+			AirportCatalog.write(airports, file, 2);
+			AirportCatalog catalog = AirportCatalog.map(file);
+			repository.setCatalog(catalog);
+
+			PersistenceManager persistence = new PersistenceManager(directory, 10, 3600);
+			persistence.start(repository);
+			repository.addDataPoint("QAA", DataPointType.WIND, dp, 1000);
+			repository.deleteAirport("QAB");
+			repository.deleteAirport("QAC");
+			repository.addAirport("QAC", 10, 20);
+			persistence.snapshot();
+			repository.addDataPoint("QAD", DataPointType.TEMPERATURE, dp, 2000);
+			repository.deleteAirport("QAE");
+			persistence.close();
+
+			// restart: the catalog is mapped before the recovery
+			repository.reset();
+			repository.setCatalog(catalog);
+			persistence = new PersistenceManager(directory, 10, 3600);
+			persistence.start(repository);
+			persistence.close();
+
+			// the catalog is still in use, only the changes on top of it were saved
+			assertSame(catalog, repository.getCatalog());
+			assertEquals(new TreeSet<>(Arrays.asList("BOS", "EWR", "JFK", "LGA", "MMU", "QAA", "QAC", "QAD")),
+					repository.getChangedAirports());
+			assertEquals(new TreeSet<>(Arrays.asList("QAB", "QAC", "QAE")), repository.getDeletedFromCatalog());
+			assertEquals(5 + airports.size() - 2, repository.getAirports().size());
+
+			assertEquals(dp, repository.getAtmosphericInformation("QAA").getWind());
+			assertEquals(dp, repository.getAtmosphericInformation("QAD").getTemperature());
+			assertNull(repository.findAirportData("QAB"));
+			assertEquals(10, repository.findAirportData("QAC").getLatitude(), 0);
+			assertNotNull(repository.findAirportData("QAF"));
+		} finally {
+			repository.reset();
+			file.delete();
+		}
+
+	}
+
+	@Test
+	public void testReplayKeepsLatestOfConcurrentUpdates() throws Exception {
+		assertReplayKeepsLatest(false);
+	}
+
+	@Test
+	public void testReplayOverSnapshotKeepsLatestOfConcurrentUpdates() throws Exception {
+		assertReplayKeepsLatest(true);
+	}
+
+	/**
+	 * Two updates of the wind of BOS: the first one is stored first but
+	 * reaches the log after the second one.
+	 *
+	 * @param snapshot True to take a snapshot between the two records
+	 */
+	private void assertReplayKeepsLatest(boolean snapshot) throws Exception {
+
+		DataPoint first = new DataPoint.Builder().from(dp).withMean(1).build();
+		DataPoint second = new DataPoint.Builder().from(dp).withMean(2).build();
+
+		// registered before the persistence, so it runs first and holds the first record back
+		CountDownLatch stored = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		RepositoryListener delay = new RepositoryListener() {
+			@Override
+			public void dataPointAdded(String iataCode, DataPointType pointType, DataPoint point, AtmosphericInformation updated) {
+				if (point == first) {
+					stored.countDown();
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			}
+		};
+		repository.addListener(delay);
+
+		PersistenceManager persistence = new PersistenceManager(directory, 10, 3600);
+		persistence.start(repository);
+		try {
+			Thread writer = new Thread(() -> {
+				try {
+					repository.addDataPoint("BOS", DataPointType.WIND, first, 1000);
+				} catch (WeatherException e) {
+					throw new IllegalStateException(e);
+				}
+			});
+			writer.start();
+			stored.await();
+			repository.addDataPoint("BOS", DataPointType.WIND, second, 2000);
+			if (snapshot) {
+				persistence.snapshot();
+			}
+			release.countDown();
+			writer.join();
+		} finally {
+			repository.removeListener(delay);
+			persistence.close();
+		}
+		assertEquals(second, repository.getAtmosphericInformation("BOS").getWind());
+
+		repository.clear();
+		persistence = new PersistenceManager(directory, 10, 3600);
+		persistence.start(repository);
+		persistence.close();
+
+		assertEquals(second, repository.getAtmosphericInformation("BOS").getWind());
+
+	}
+
+	@Test
+	public void testTornLogTailIsIgnored() throws Exception {
+
+		PersistenceManager persistence = new PersistenceManager(directory, 10, 3600);
+		persistence.start(repository);
+		repository.addAirport("FCO", 41.804475, 12.250797);
+		repository.addAirport("CIA", 41.799361, 12.594936);
+		persistence.close();
+
+		// cut the last record in half
+		File[] segments = directory.listFiles((dir, name) -> name.endsWith(".log"));
+		File last = segments[0];
+		for (File segment : segments) {
+			last = segment.getName().compareTo(last.getName()) > 0 ? segment : last;
+		}
+		try (RandomAccessFile file = new RandomAccessFile(last, "rw")) {
+			file.setLength(file.length() - 5);
+		}
+
+		repository.reset();
+		persistence = new PersistenceManager(directory, 10, 3600);
+		persistence.start(repository);
+		persistence.close();
+
+		assertNotNull(repository.findAirportData("FCO"));
+		assertNull(repository.findAirportData("CIA"));
+
+	}
+
+}
@@ -0,0 +1,178 @@
+package com.crossover.trial.weather;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import org.glassfish.grizzly.http.server.HttpHandler;
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.glassfish.grizzly.http.server.NetworkListener;
+import org.glassfish.grizzly.http.server.Request;
+import org.glassfish.grizzly.http.server.Response;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.crossover.trial.weather.server.impl.AccessLog;
+import com.crossover.trial.weather.server.impl.PooledHttpHandler;
+
+public class PooledHttpHandlerTest {
+
+	private HttpServer server;
+
+	private int port;
+
+	/** released to let the held queries complete */
+	private final CountDownLatch release = new CountDownLatch(1);
+
+	/** counted down by each held query once it runs */
+	private final CountDownLatch held = new CountDownLatch(1);
+
+	@Before
+	public void setUp() throws IOException {
+		try (ServerSocket socket = new ServerSocket(0)) {
+			port = socket.getLocalPort();
+		}
+	}
+
+	@After
+	public void tearDown() {
+		release.countDown();
+		if (server != null) {
+			server.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testSaturatedPoolAnswers503() throws Exception {
+		// one query thread, no queue: a second query while the first runs is refused
+		start(PooledHttpHandler.createPool("test-query", 1, 0), new AccessLog(0));
+
+		AtomicInteger first = new AtomicInteger();
+		Thread client = new Thread(() -> first.set(status("/query/hold")));
+		client.start();
+		assertTrue(held.await(10, TimeUnit.SECONDS));
+
+		assertEquals(503, status("/query/ping"));
+		// the collect endpoint has its own pool
+		assertEquals(200, status("/collect/ping"));
+
+		release.countDown();
+		client.join(10000);
+		assertEquals(200, first.get());
+
+		// served again once the thread is back in the pool
+		long deadline = System.currentTimeMillis() + 10000;
+		int status;
+		while ((status = status("/query/ping")) == 503 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(200, status);
+	}
+
+	@Test
+	public void testAccessLogSampling() throws Exception {
+		List<String> lines = new ArrayList<>();
+		Handler handler = new Handler() {
+			@Override
+			public synchronized void publish(LogRecord record) {
+				lines.add(record.getMessage());
+			}
+
+			@Override
+			public void flush() {
+			}
+
+			@Override
+			public void close() {
+			}
+		};
+		Logger logger = Logger.getLogger("WeatherAccess");
+		logger.addHandler(handler);
+		try {
+			AccessLog accessLog = new AccessLog(10);
+			for (int i = 0; i < 50; i++) {
+				assertEquals("request " + i, i % 10 == 0, accessLog.sample());
+			}
+
+			start(PooledHttpHandler.createPool("test-query", 1, -1), accessLog);
+			for (int i = 0; i < 30; i++) {
+				assertEquals(200, status("/query/ping?n=" + i));
+			}
+			long deadline = System.currentTimeMillis() + 10000;
+			while (size(handler, lines) < 3 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+			Thread.sleep(100);
+			synchronized (handler) {
+				assertEquals(lines.toString(), 3, lines.size());
+				for (int i = 0; i < 3; i++) {
+					assertTrue(lines.get(i), lines.get(i).contains("GET /query/ping 200 "));
+				}
+			}
+		} finally {
+			logger.removeHandler(handler);
+		}
+
+		AccessLog disabled = new AccessLog(0);
+		for (int i = 0; i < 10; i++) {
+			assertFalse(disabled.sample());
+		}
+	}
+
+	private static int size(Handler handler, List<String> lines) {
+		synchronized (handler) {
+			return lines.size();
+		}
+	}
+
+	/**
+	 * Start a server whose queries run on the given pool. /query/hold waits
+	 * for {@link #release}, any other path answers at once.
+	 */
+	private void start(ExecutorService queryPool, AccessLog accessLog) throws IOException {
+		HttpHandler delegate = new HttpHandler() {
+			@Override
+			public void service(Request request, Response response) throws Exception {
+				if (request.getRequestURI().equals("/query/hold")) {
+					held.countDown();
+					release.await(10, TimeUnit.SECONDS);
+				}
+				response.setStatus(200);
+			}
+		};
+		server = new HttpServer();
+		server.addListener(new NetworkListener("test", "localhost", port));
+		server.getServerConfiguration().addHttpHandler(new PooledHttpHandler(delegate, queryPool,
+				PooledHttpHandler.createPool("test-collect", 1, 0), accessLog), "/");
+		server.start();
+	}
+
+	private int status(String path) {
+		try {
+			HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + path).openConnection();
+			try {
+				return connection.getResponseCode();
+			} finally {
+				connection.disconnect();
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+}
@@ -0,0 +1,133 @@
+package com.crossover.trial.weather;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.crossover.trial.weather.model.AtmosphericInformation;
+import com.crossover.trial.weather.model.DataPoint;
+import com.crossover.trial.weather.model.DataPointType;
+import com.crossover.trial.weather.model.Repository;
+
+/**
+ * Stress test of the repository under concurrent writers.
+ */
+public class RepositoryConcurrencyTest {
+
+	private static final int AIRPORTS = 1000;
+
+	private Repository repository = Repository.getInstance();
+
+	private List<String> iatas = new ArrayList<>();
+
+	@Before
+	public void setUp() {
+		Random random = new Random(7);
+		for (int i = 0; i < AIRPORTS; i++) {
+			String iata = "" + (char) ('A' + i / 676 % 26) + (char) ('A' + i / 26 % 26) + (char) ('A' + i % 26);
+			repository.addAirport(iata, 30 + random.nextDouble() * 20, -10 + random.nextDouble() * 40);
+			iatas.add(iata);
+		}
+	}
+
+	@After
+	public void tearDown() {
+		repository.reset();
+	}
+
+	@Test
+	public void testWritesToDifferentAirportsAreNotLost() throws Exception {
+		int threads = 4;
+		int updates = 2000;
+		Queue<Throwable> errors = new ConcurrentLinkedQueue<>();
+		CountDownLatch done = new CountDownLatch(threads);
+		for (int t = 0; t < threads; t++) {
+			int thread = t;
+			new Thread(() -> {
+				try {
+					for (int i = 1; i <= updates; i++) {
+						for (int a = thread; a < 40; a += threads) {
+							repository.addDataPoint(iatas.get(a), DataPointType.WIND, new DataPoint.Builder().withCount(i).build());
+							repository.addDataPoint(iatas.get(a), DataPointType.TEMPERATURE, new DataPoint.Builder().withCount(i).build());
+						}
+					}
+				} catch (Throwable e) {
+					errors.add(e);
+				} finally {
+					done.countDown();
+				}
+			}).start();
+		}
+		done.await();
+
+		assertEquals(0, errors.size());
+		for (String iata : iatas.subList(0, 40)) {
+			AtmosphericInformation ai = repository.getAtmosphericInformation(iata);
+			assertEquals(updates, ai.getWind().getCount());
+			assertEquals(updates, ai.getTemperature().getCount());
+		}
+		assertEquals(40, repository.getDataSize());
+	}
+
+	@Test
+	public void testWritesToSameAirportAreNotLost() throws Exception {
+		// each thread updates its own type of the same airport: the snapshot
+		// is replaced under contention and no update may be lost
+		DataPointType[] types = { DataPointType.WIND, DataPointType.TEMPERATURE, DataPointType.HUMIDTY,
+				DataPointType.PRECIPITATION };
+		int updates = 5000;
+		Queue<Throwable> errors = new ConcurrentLinkedQueue<>();
+		CountDownLatch start = new CountDownLatch(1);
+		CountDownLatch done = new CountDownLatch(types.length);
+		for (DataPointType type : types) {
+			new Thread(() -> {
+				try {
+					start.await();
+					for (int i = 1; i <= updates; i++) {
+						repository.addDataPoint("AAA", type, new DataPoint.Builder().withCount(i).build());
+					}
+				} catch (Throwable e) {
+					errors.add(e);
+				} finally {
+					done.countDown();
+				}
+			}).start();
+		}
+		start.countDown();
+		done.await();
+
+		assertEquals(0, errors.size());
+		AtmosphericInformation ai = repository.getAtmosphericInformation("AAA");
+		assertEquals(updates, ai.getWind().getCount());
+		assertEquals(updates, ai.getTemperature().getCount());
+		assertEquals(updates, ai.getHumidity().getCount());
+		assertEquals(updates, ai.getPrecipitation().getCount());
+	}
+
+	@Test
+	public void testDataSizeCountsRecentUpdates() throws Exception {
+		DataPoint dp = new DataPoint.Builder().withMean(10).withCount(1).build();
+		long now = System.currentTimeMillis();
+		repository.addDataPoint("AAA", DataPointType.WIND, dp, now - 25 * 3600 * 1000L);
+		repository.addDataPoint("AAB", DataPointType.WIND, dp, now - 3600 * 1000L);
+		assertEquals(1, repository.getDataSize());
+
+		repository.addDataPoint("AAA", DataPointType.WIND, dp, now);
+		repository.addDataPoint("AAB", DataPointType.WIND, dp, now);
+		repository.addDataPoint("AAB", DataPointType.HUMIDTY, dp, now);
+		assertEquals(2, repository.getDataSize());
+
+		repository.deleteAirport("AAA");
+		assertEquals(1, repository.getDataSize());
+	}
+
+}
@@ -0,0 +1,184 @@
+package com.crossover.trial.weather;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.crossover.trial.weather.index.GridSpatialIndex;
+import com.crossover.trial.weather.index.LinearScanIndex;
+import com.crossover.trial.weather.index.NeighbourIndex;
+import com.crossover.trial.weather.index.RadiusFilter;
+import com.crossover.trial.weather.index.SpatialIndex;
+import com.crossover.trial.weather.model.AirportData;
+import com.crossover.trial.weather.utility.DistanceUtility;
+
+public class SpatialIndexTest {
+
+	private static final double[] RADII = { 0, 10, 150, 600, 2500, 12000, 25000 };
+
+	private List<AirportData> airports;
+
+	@Before
+	public void setUp() {
+		Random random = new Random(42);
+		airports = new ArrayList<>();
+		for (int i = 0; i < 3000; i++) {
+			airports.add(airport(i, random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180));
+		}
+		// corner cases: poles and antimeridian
+		airports.add(airport(3000, 90, 0));
+		airports.add(airport(3001, -89.9, 120));
+		airports.add(airport(3002, 10, 180));
+		airports.add(airport(3003, 10, -179.95));
+		airports.add(airport(3004, 10, 179.95));
+	}
+
+	@Test
+	public void testGridMatchesLinearScan() {
+		for (double cellSize : new double[] { 0.5, GridSpatialIndex.DEFAULT_CELL_SIZE, 7 }) {
+			SpatialIndex grid = fill(new GridSpatialIndex(cellSize));
+			SpatialIndex linear = fill(new LinearScanIndex());
+			for (AirportData origin : airports.subList(airports.size() - 200, airports.size())) {
+				for (double radius : RADII) {
+					assertEquals(iatas(linear.findInRadius(origin, radius)), iatas(grid.findInRadius(origin, radius)));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testNeighboursMatchLinearScan() {
+		SpatialIndex neighbours = fill(new NeighbourIndex(600));
+		SpatialIndex linear = fill(new LinearScanIndex());
+		for (AirportData origin : airports.subList(airports.size() - 200, airports.size())) {
+			for (double radius : RADII) {
+				assertEquals(iatas(linear.findInRadius(origin, radius)), iatas(neighbours.findInRadius(origin, radius)));
+			}
+		}
+	}
+
+	@Test
+	public void testNeighboursUpdatedIncrementally() {
+		SpatialIndex neighbours = fill(new NeighbourIndex(2500));
+		SpatialIndex linear = fill(new LinearScanIndex());
+		for (AirportData airport : airports.subList(0, 1000)) {
+			neighbours.remove(airport);
+			linear.remove(airport);
+		}
+		for (AirportData airport : airports.subList(0, 500)) {
+			neighbours.add(airport);
+			linear.add(airport);
+		}
+		for (AirportData origin : airports.subList(0, 1500)) {
+			assertEquals(iatas(linear.findInRadius(origin, 2500)), iatas(neighbours.findInRadius(origin, 2500)));
+			assertEquals(iatas(linear.findInRadius(origin, 150)), iatas(neighbours.findInRadius(origin, 150)));
+		}
+	}
+
+	@Test
+	public void testNeighbourSlotsReused() {
+		NeighbourIndex neighbours = new NeighbourIndex(600);
+		fill(neighbours);
+		SpatialIndex linear = fill(new LinearScanIndex());
+		// remove and add back the same airports many times: the freed slots are reused
+		for (int round = 0; round < 300; round++) {
+			for (AirportData airport : airports.subList(round % 10 * 100, round % 10 * 100 + 100)) {
+				neighbours.remove(airport);
+			}
+			for (AirportData airport : airports.subList(round % 10 * 100, round % 10 * 100 + 100)) {
+				neighbours.add(airport);
+			}
+		}
+		assertEquals(airports.size(), neighbours.getSlots());
+		for (AirportData origin : airports.subList(0, 1000)) {
+			assertEquals(iatas(linear.findInRadius(origin, 600)), iatas(neighbours.findInRadius(origin, 600)));
+			assertEquals(iatas(linear.findInRadius(origin, 150)), iatas(neighbours.findInRadius(origin, 150)));
+		}
+	}
+
+	@Test
+	public void testAntimeridian() {
+		SpatialIndex grid = fill(new GridSpatialIndex());
+		Set<String> found = iatas(grid.findInRadius(airports.get(3004), 20));
+		assertTrue(found.contains(airports.get(3002).getIata()));
+		assertTrue(found.contains(airports.get(3003).getIata()));
+	}
+
+	@Test
+	public void testRemove() {
+		SpatialIndex grid = fill(new GridSpatialIndex());
+		AirportData origin = airports.get(3002);
+		grid.remove(airports.get(3003));
+		Set<String> found = iatas(grid.findInRadius(origin, 20));
+		assertEquals(2, found.size());
+		assertTrue(!found.contains(airports.get(3003).getIata()));
+	}
+
+	@Test
+	public void testBatchHaversineMatchesDistance() {
+		int size = airports.size();
+		double[] sinLats = new double[size], cosLats = new double[size], sinLons = new double[size], cosLons = new double[size];
+		for (int i = 0; i < size; i++) {
+			double lat = Math.toRadians(airports.get(i).getLatitude());
+			double lon = Math.toRadians(airports.get(i).getLongitude());
+			sinLats[i] = Math.sin(lat);
+			cosLats[i] = Math.cos(lat);
+			sinLons[i] = Math.sin(lon);
+			cosLons[i] = Math.cos(lon);
+		}
+		double[] out = new double[size];
+		for (int o = size - 5; o < size; o++) {
+			DistanceUtility.haversines(sinLats[o], cosLats[o], sinLons[o], cosLons[o], sinLats, cosLats, sinLons, cosLons, size, out);
+			for (int i = 0; i < size; i++) {
+				assertEquals(DistanceUtility.calculateDistance(airports.get(o), airports.get(i)), DistanceUtility.distanceOf(out[i]), 1e-3);
+			}
+		}
+	}
+
+	@Test
+	public void testRadiusFilterMatchesDistance() {
+		Random random = new Random(7);
+		for (AirportData origin : airports) {
+			for (double radius : Arrays.copyOfRange(RADII, 1, RADII.length)) {
+				RadiusFilter filter = new RadiusFilter(origin.getLatitude(), origin.getLongitude(), radius);
+				// points around the circle, where the approximation cannot decide alone
+				for (int i = 0; i < 5; i++) {
+					double angle = random.nextDouble() * 2 * Math.PI;
+					double distance = radius * (0.99 + random.nextDouble() * 0.02) / DistanceUtility.R;
+					double lat = origin.getLatitude() + Math.toDegrees(distance * Math.cos(angle));
+					double lon = origin.getLongitude() + Math.toDegrees(distance * Math.sin(angle) / Math.cos(Math.toRadians(origin.getLatitude())));
+					lat = Math.max(-90, Math.min(90, lat));
+					lon = lon - 360 * Math.floor((lon + 180) / 360);
+					boolean within = DistanceUtility.calculateDistance(origin.getLatitude(), origin.getLongitude(), lat, lon) <= radius;
+					assertEquals(within, filter.accept(lat, lon));
+				}
+			}
+		}
+	}
+
+	private SpatialIndex fill(SpatialIndex index) {
+		airports.forEach(index::add);
+		return index;
+	}
+
+	private static AirportData airport(int i, double lat, double lon) {
+		String iata = "" + (char) ('A' + i / 676 % 26) + (char) ('A' + i / 26 % 26) + (char) ('A' + i % 26);
+		return new AirportData.Builder(iata).withLat(lat).withLon(lon).build();
+	}
+
+	private static Set<String> iatas(List<AirportData> airports) {
+		Set<String> result = new TreeSet<>();
+		airports.forEach(x -> result.add(x.getIata()));
+		return result;
+	}
+
+}
@@ -0,0 +1,102 @@
+package com.crossover.trial.weather;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Test;
+
+import com.crossover.trial.weather.server.impl.VirtualThreadExecutor;
+
+public class VirtualThreadExecutorTest {
+
+	/** system properties changed by a test, set again as they were */
+	private final Properties saved = (Properties) System.getProperties().clone();
+
+	@After
+	public void tearDown() {
+		System.setProperties(saved);
+	}
+
+	@Test
+	public void testUnsupported() {
+		Assume.assumeTrue(!VirtualThreadExecutor.isSupported());
+		try {
+			new VirtualThreadExecutor("test", 1);
+			fail("virtual threads are not available");
+		} catch (IllegalStateException e) {
+			assertTrue(e.getMessage().contains("Java 21"));
+		}
+
+		// the server refuses to start rather than falling back to the pools
+		System.setProperty(WeatherServerConfig.PREFIX + "virtualThreads", "true");
+		try {
+			WeatherServerConfig.fromSystemProperties();
+			fail("virtual threads are not available");
+		} catch (IllegalStateException e) {
+			assertTrue(e.getMessage().contains("Java 21"));
+		}
+	}
+
+	@Test
+	public void testLimitsRunningTasks() throws Exception {
+		Assume.assumeTrue(VirtualThreadExecutor.isSupported());
+		VirtualThreadExecutor executor = new VirtualThreadExecutor("test", 2);
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch done = new CountDownLatch(3);
+		Runnable blocked = () -> {
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			done.countDown();
+		};
+		executor.execute(blocked);
+		executor.execute(blocked);
+		try {
+			executor.execute(blocked);
+			fail("a third task should be refused");
+		} catch (RejectedExecutionException e) {
+			// expected
+		}
+		release.countDown();
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+		assertEquals(1, done.getCount());
+	}
+
+	@Test
+	public void testServesOnVirtualThreads() throws Exception {
+		Assume.assumeTrue(VirtualThreadExecutor.isSupported());
+		int port;
+		try (ServerSocket socket = new ServerSocket(0)) {
+			port = socket.getLocalPort();
+		}
+		System.setProperty(WeatherServerConfig.PREFIX + "virtualThreads", "true");
+		System.setProperty(WeatherServerConfig.PREFIX + "port", String.valueOf(port));
+		HttpServer server = WeatherServer.createServer(WeatherServerConfig.fromSystemProperties());
+		server.start();
+		try {
+			for (String path : new String[] { "query/ping", "collect/ping" }) {
+				HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + "/" + path).openConnection();
+				assertEquals(200, connection.getResponseCode());
+				connection.disconnect();
+			}
+		} finally {
+			server.shutdownNow();
+		}
+	}
+
+}
@@ -1,23 +1,46 @@
 package com.crossover.trial.weather;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
-
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.Response;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import com.crossover.trial.weather.cache.WeatherResponseCache;
+import com.crossover.trial.weather.model.AirportData;
+import com.crossover.trial.weather.model.AirportRecord;
 import com.crossover.trial.weather.model.AtmosphericInformation;
 import com.crossover.trial.weather.model.DataPoint;
+import com.crossover.trial.weather.model.DataPointRecord;
+import com.crossover.trial.weather.model.DataPointType;
+import com.crossover.trial.weather.model.HistoryBucket;
+import com.crossover.trial.weather.model.RecordStatus;
 import com.crossover.trial.weather.model.Repository;
+import com.crossover.trial.weather.model.Statistics;
 import com.crossover.trial.weather.server.WeatherCollectorEndpoint;
 import com.crossover.trial.weather.server.WeatherQueryEndpoint;
 import com.crossover.trial.weather.server.impl.RestWeatherCollectorEndpoint;
 import com.crossover.trial.weather.server.impl.RestWeatherQueryEndpoint;
+import com.crossover.trial.weather.utility.WeatherBinaryWriter;
+import com.crossover.trial.weather.utility.WeatherJsonWriter;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.gson.Gson;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonParser;
@@ -53,6 +76,32 @@ public class WeatherEndpointTest {
         assertEquals(5, pingResult.getAsJsonObject().get("iata_freq").getAsJsonObject().entrySet().size());
     }
 
+    @Test
+    public void testQueryPingFrequencies() throws Exception {
+        Statistics.getInstance().reset();
+        // no request yet: no airport requested rather than 0 / 0
+        JsonElement empty = new JsonParser().parse(_query.ping()).getAsJsonObject().get("iata_freq");
+        assertEquals(0, empty.getAsJsonObject().get("BOS").getAsDouble(), 0);
+
+        _query.weather("BOS", "0");
+        _query.weather("BOS", "12.5");
+        _query.weather("JFK", "25");
+        _query.weather("XXX", "3");
+
+        JsonElement pingResult = new JsonParser().parse(_query.ping());
+        JsonElement iataFreq = pingResult.getAsJsonObject().get("iata_freq");
+        assertEquals(2.0 / 3, iataFreq.getAsJsonObject().get("BOS").getAsDouble(), 1e-9);
+        assertEquals(1.0 / 3, iataFreq.getAsJsonObject().get("JFK").getAsDouble(), 1e-9);
+        assertEquals(0, iataFreq.getAsJsonObject().get("EWR").getAsDouble(), 1e-9);
+
+        int[] radiusFreq = _gson.fromJson(pingResult.getAsJsonObject().get("radius_freq"), int[].class);
+        assertEquals(26, radiusFreq.length);
+        assertEquals(1, radiusFreq[0]);
+        assertEquals(1, radiusFreq[2]);
+        assertEquals(1, radiusFreq[5]);
+        assertEquals(1, radiusFreq[3]);
+    }
+
     @Test
     public void testQueryWeather() throws Exception {
     	
@@ -75,6 +124,126 @@ public class WeatherEndpointTest {
 
         List<AtmosphericInformation> ais = (List<AtmosphericInformation>) _query.weather("JFK", "200").getEntity();
         assertEquals(3, ais.size());
+        // EWR, JFK, LGA: airports come sorted by IATA code
+        assertEquals(40, ais.get(0).getWind().getMean(), 1e-9);
+        assertEquals(22, ais.get(1).getWind().getMean(), 1e-9);
+        assertEquals(30, ais.get(2).getWind().getMean(), 1e-9);
+    }
+
+    @Test
+    public void testAirportsInRadiusSortedByIata() throws Exception {
+        List<String> iatas = new ArrayList<>();
+        for (AirportData airport : Repository.getInstance().getAirportsFromIataInRadius("JFK", 200)) {
+            iatas.add(airport.getIata());
+        }
+        assertEquals(Arrays.asList("EWR", "JFK", "LGA", "MMU"), iatas);
+    }
+
+    @Test
+    public void testWeatherCache() throws Exception {
+        WeatherResponseCache.getInstance().reset();
+        _update.updateWeather("JFK", "wind", _gson.toJson(_dp));
+
+        List<AtmosphericInformation> ais = (List<AtmosphericInformation>) _query.weather("JFK", "200").getEntity();
+        assertEquals(1, ais.size());
+        assertSame(ais, _query.weather("JFK", "200").getEntity());
+
+        // an update of an airport in the circle drops the entry
+        _update.updateWeather("EWR", "wind", _gson.toJson(_dp));
+        ais = (List<AtmosphericInformation>) _query.weather("JFK", "200").getEntity();
+        assertEquals(2, ais.size());
+
+        // an update of an airport outside the circle keeps it
+        _update.updateWeather("BOS", "wind", _gson.toJson(_dp));
+        assertSame(ais, _query.weather("JFK", "200").getEntity());
+
+        // a new airport in the circle drops it
+        _update.addAirport("NYC", "40.7", "-74");
+        _update.updateWeather("NYC", "wind", _gson.toJson(_dp));
+        ais = (List<AtmosphericInformation>) _query.weather("JFK", "200").getEntity();
+        assertEquals(3, ais.size());
+
+        _update.deleteAirport("NYC");
+        ais = (List<AtmosphericInformation>) _query.weather("JFK", "200").getEntity();
+        assertEquals(2, ais.size());
+
+        JsonElement cache = new JsonParser().parse(_query.ping()).getAsJsonObject().get("cache");
+        assertEquals(2, cache.getAsJsonObject().get("hits").getAsInt());
+        assertEquals(4, cache.getAsJsonObject().get("misses").getAsInt());
+    }
+
+    @Test
+    public void testWeatherTag() throws Exception {
+        WeatherResponseCache cache = WeatherResponseCache.getInstance();
+        cache.reset();
+        _update.updateWeather("JFK", "wind", _gson.toJson(_dp));
+
+        // the tag computed from the versions matches the tag of the answer
+        String tag = cache.getTag("JFK", 200);
+        EntityTag etag = _query.weather("JFK", "200").getEntityTag();
+        assertEquals(tag, etag.getValue());
+        assertTrue(etag.isWeak());
+        assertEquals(tag, cache.getTag("JFK", 200));
+
+        // an update outside the circle keeps it, one inside changes it
+        _update.updateWeather("BOS", "wind", _gson.toJson(_dp));
+        assertEquals(tag, cache.getTag("JFK", 200));
+        _update.updateWeather("EWR", "wind", _gson.toJson(_dp));
+        String updated = cache.getTag("JFK", 200);
+        assertNotEquals(tag, updated);
+        assertEquals(updated, _query.weather("JFK", "200").getEntityTag().getValue());
+    }
+
+    @Test
+    public void testWeatherBinary() throws Exception {
+        DataPoint pressure = new DataPoint.Builder().from(_dp).withMean(701.125).withFirst(-3).build();
+        _update.updateWeather("JFK", "pressure", _gson.toJson(pressure));
+        _update.updateWeather("EWR", "wind", _gson.toJson(_dp));
+        List<AtmosphericInformation> ais = (List<AtmosphericInformation>) _query.weather("JFK", "500").getEntity();
+
+        ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+        WeatherBinaryWriter.write(ais, streamed);
+        byte[] binary = WeatherBinaryWriter.toBytes(ais);
+        assertArrayEquals(binary, streamed.toByteArray());
+
+        ByteBuffer buffer = ByteBuffer.wrap(binary).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals('W', buffer.get());
+        assertEquals('B', buffer.get());
+        assertEquals(WeatherBinaryWriter.VERSION, buffer.get());
+        buffer.get();
+        assertEquals(ais.size(), buffer.getInt());
+        for (AtmosphericInformation ai : ais) {
+            assertEquals(ai.getLastUpdateTime(), buffer.getLong());
+            int present = buffer.get();
+            DataPoint[] points = { ai.getTemperature(), ai.getWind(), ai.getHumidity(), ai.getPrecipitation(),
+                    ai.getPressure(), ai.getCloudCover() };
+            for (int i = 0; i < points.length; i++) {
+                if ((present & 1 << i) == 0) {
+                    assertNull(points[i]);
+                    continue;
+                }
+                DataPoint dp = new DataPoint.Builder().withMean(buffer.getDouble()).withFirst(buffer.getInt())
+                        .withMedian(buffer.getInt()).withLast(buffer.getInt()).withCount(buffer.getInt()).build();
+                assertEquals(points[i], dp);
+            }
+        }
+        assertEquals(0, buffer.remaining());
+    }
+
+    @Test
+    public void testWeatherJsonMatchesJackson() throws Exception {
+        DataPoint negative = new DataPoint.Builder().withCount(3).withFirst(-12).withMedian(-5).withLast(1).withMean(-4.25).build();
+        _update.updateWeather("JFK", "temperature", _gson.toJson(negative));
+        _update.updateWeather("JFK", "pressure", _gson.toJson(new DataPoint.Builder().from(_dp).withMean(701.125).build()));
+        List<AtmosphericInformation> ais = (List<AtmosphericInformation>) _query.weather("JFK", "500").getEntity();
+        assertEquals(2, ais.size());
+
+        String expected = new ObjectMapper().writeValueAsString(ais);
+        assertEquals(expected, new String(WeatherJsonWriter.toBytes(ais), StandardCharsets.UTF_8));
+        ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+        WeatherJsonWriter.write(ais, streamed);
+        assertEquals(expected, new String(streamed.toByteArray(), StandardCharsets.UTF_8));
+        assertEquals("[]", new String(WeatherJsonWriter.toBytes(Collections.emptyList()), StandardCharsets.UTF_8));
     }
 
     @Test
@@ -125,6 +294,111 @@ public class WeatherEndpointTest {
         
     }
         
+    @Test
+    public void testUpdateWeatherBatch() throws Exception {
+
+        DataPoint cloudCoverDp = new DataPoint.Builder().from(_dp).withMean(50).build();
+        List<DataPointRecord> records = Arrays.asList(
+                new DataPointRecord("JFK", "wind", _dp),
+                new DataPointRecord("jfk", "cloudcover", cloudCoverDp),
+                new DataPointRecord("XXX", "wind", _dp),
+                new DataPointRecord("EWR", "foo", _dp),
+                new DataPointRecord("EWR", "pressure", _dp));
+
+        Response response = _update.updateWeatherBatch(_gson.toJson(records));
+        assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+
+        List<RecordStatus> statuses = (List<RecordStatus>) response.getEntity();
+        assertEquals(5, statuses.size());
+        assertEquals(Response.Status.OK.getStatusCode(), statuses.get(0).getStatus());
+        assertEquals(Response.Status.OK.getStatusCode(), statuses.get(1).getStatus());
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), statuses.get(2).getStatus());
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), statuses.get(3).getStatus());
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), statuses.get(4).getStatus());
+
+        List<AtmosphericInformation> ais = (List<AtmosphericInformation>) _query.weather("JFK", "0").getEntity();
+        assertEquals(ais.get(0).getWind(), _dp);
+        assertEquals(ais.get(0).getCloudCover(), cloudCoverDp);
+
+        response = _update.updateWeatherBatch("{not a list");
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), response.getStatus());
+
+        response = _update.updateWeatherBatch("");
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), response.getStatus());
+
+    }
+
+    @Test
+    public void testHistory() throws Exception {
+
+        Repository.getInstance().clear();
+        Repository.getInstance().addAirport("BOS", 42.364347, -71.005181);
+        for (int i = 0; i < 6; i++) {
+            DataPoint dp = new DataPoint.Builder().from(_dp).withMean(10 + i).build();
+            Repository.getInstance().addDataPoint("BOS", DataPointType.WIND, dp, 1000 + i * 100);
+        }
+
+        Response response = _query.history("BOS", "wind", "1000", "1500", null);
+        assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+        assertEquals(6, ((List<HistoryBucket>) response.getEntity()).size());
+
+        List<HistoryBucket> buckets = (List<HistoryBucket>) _query.history("BOS", "wind", "1000", "1500", "300").getEntity();
+        assertEquals(2, buckets.size());
+        assertEquals(1000, buckets.get(0).getTime());
+        assertEquals(3, buckets.get(0).getSamples());
+        assertEquals(11, buckets.get(0).getMean(), 1e-9);
+        assertEquals(13, buckets.get(1).getMin(), 1e-9);
+        assertEquals(15, buckets.get(1).getMax(), 1e-9);
+        assertEquals(30, buckets.get(1).getCount());
+        assertEquals(20, buckets.get(1).getSecond(), 1e-9);
+        assertEquals(30, buckets.get(1).getThird(), 1e-9);
+        // same names as the fields of a data point
+        JsonElement bucket = new JsonParser().parse(_gson.toJson(buckets.get(1)));
+        assertTrue(bucket.getAsJsonObject().has("second"));
+        assertTrue(bucket.getAsJsonObject().has("third"));
+
+        buckets = (List<HistoryBucket>) _query.history("BOS", "cloudcover", "1000", "1500", "300").getEntity();
+        assertEquals(0, buckets.size());
+
+        response = _query.history("BOS", "foo", "1000", "1500", null);
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), response.getStatus());
+
+        response = _query.history("BOS", "wind", "1500", "1000", null);
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), response.getStatus());
+
+        response = _query.history("BOS", "wind", "1000", "1500", "-1");
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), response.getStatus());
+
+    }
+
+    @Test
+    public void testHistoryKeepsLatestReadings() throws Exception {
+
+        int capacity = Repository.getInstance().getHistory().getCapacity();
+        for (int i = 0; i < capacity + 10; i++) {
+            Repository.getInstance().addDataPoint("JFK", DataPointType.WIND, _dp, i);
+        }
+
+        List<HistoryBucket> buckets = (List<HistoryBucket>) _query.history("JFK", "wind", "0", "" + capacity * 2, null).getEntity();
+        assertEquals(capacity, buckets.size());
+        assertEquals(10, buckets.get(0).getTime());
+
+    }
+
+    @Test
+    public void testHistoryOfDeletedAirport() throws Exception {
+
+        Repository repository = Repository.getInstance();
+        repository.addDataPoint("MMU", DataPointType.WIND, _dp, 1000);
+        AtmosphericInformation ai = repository.getAtmosphericInformation("MMU");
+        repository.deleteAirport("MMU");
+
+        // a reading notified after the deletion must not bring the history back
+        repository.getHistory().dataPointAdded("MMU", DataPointType.WIND, _dp, ai);
+        assertEquals(0, repository.getHistory().query("MMU", DataPointType.WIND, 0, Long.MAX_VALUE, 0).size());
+
+    }
+
     @Test
     public void testAddAirport() {
     	
@@ -153,6 +427,36 @@ public class WeatherEndpointTest {
 
     }
     
+    @Test
+    public void testAddAirports() {
+
+        List<AirportRecord> records = Arrays.asList(
+                new AirportRecord("FCO", "41.804475", "12.250797"),
+                new AirportRecord("cia", "41.799361", "12.594936"),
+                new AirportRecord("", "41.8", "12.5"),
+                new AirportRecord("XYZ", "95", "12.5"),
+                new AirportRecord("BOS", "0", "0"));
+
+        Response response = _update.addAirports(_gson.toJson(records));
+        assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+
+        List<RecordStatus> statuses = (List<RecordStatus>) response.getEntity();
+        assertEquals(5, statuses.size());
+        assertEquals(Response.Status.OK.getStatusCode(), statuses.get(0).getStatus());
+        assertEquals(Response.Status.OK.getStatusCode(), statuses.get(1).getStatus());
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), statuses.get(2).getStatus());
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), statuses.get(3).getStatus());
+        assertEquals(Response.Status.OK.getStatusCode(), statuses.get(4).getStatus());
+
+        assertNotNull(_update.getAirport("CIA").getEntity());
+        assertNull(_update.getAirport("XYZ").getEntity());
+        assertEquals(42.364347, Repository.getInstance().findAirportData("BOS").getLatitude(), 1e-9);
+
+        response = _update.addAirports("[{");
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), response.getStatus());
+
+    }
+
     @Test
     public void testDeleteAirport() {
     	
@@ -0,0 +1,222 @@
+package com.crossover.trial.weather;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.crossover.trial.weather.cache.WeatherResponseCache;
+import com.crossover.trial.weather.model.DataPoint;
+import com.crossover.trial.weather.model.Repository;
+import com.crossover.trial.weather.utility.WeatherBinaryWriter;
+import com.google.gson.Gson;
+
+/**
+ * Requests sent over HTTP to the server as built by {@link WeatherServer}.
+ */
+public class WeatherServerTest {
+
+	private static HttpServer server;
+
+	private static int port;
+
+	private final Gson gson = new Gson();
+
+	private final DataPoint dp = new DataPoint.Builder().withCount(10).withFirst(10).withMedian(20).withLast(30)
+			.withMean(22).build();
+
+	@BeforeClass
+	public static void startServer() throws Exception {
+		try (ServerSocket socket = new ServerSocket(0)) {
+			port = socket.getLocalPort();
+		}
+		Properties saved = (Properties) System.getProperties().clone();
+		System.setProperty(WeatherServerConfig.PREFIX + "port", String.valueOf(port));
+		try {
+			server = WeatherServer.createServer(WeatherServerConfig.fromSystemProperties());
+		} finally {
+			System.setProperties(saved);
+		}
+		server.start();
+	}
+
+	@AfterClass
+	public static void stopServer() {
+		server.shutdownNow();
+		Repository.getInstance().reset();
+	}
+
+	@Before
+	public void setUp() {
+		Repository.getInstance().reset();
+		WeatherResponseCache.getInstance().reset();
+	}
+
+	@Test
+	public void testConditionalWeather() throws Exception {
+		assertEquals(200, update("JFK"));
+
+		HttpURLConnection first = get("/query/weather/JFK/200", null);
+		assertEquals(200, first.getResponseCode());
+		String etag = first.getHeaderField("ETag");
+		assertNotNull(etag);
+		read(first);
+
+		// the client holds the current answer
+		HttpURLConnection notModified = get("/query/weather/JFK/200", etag);
+		assertEquals(304, notModified.getResponseCode());
+		assertEquals(0, read(notModified).length);
+
+		// answered from the versions alone: nothing built when not cached
+		WeatherResponseCache cache = WeatherResponseCache.getInstance();
+		cache.reset();
+		assertEquals(304, get("/query/weather/JFK/200", etag).getResponseCode());
+		assertEquals(0L, (long) cache.getStatistics().get("misses"));
+		assertEquals(0L, (long) cache.getStatistics().get("size"));
+
+		// an update outside the circle keeps the answer, one inside changes it
+		assertEquals(200, update("BOS"));
+		assertEquals(304, get("/query/weather/JFK/200", etag).getResponseCode());
+		assertEquals(200, update("EWR"));
+		HttpURLConnection changed = get("/query/weather/JFK/200", etag);
+		assertEquals(200, changed.getResponseCode());
+		assertNotEquals(etag, changed.getHeaderField("ETag"));
+		assertEquals(2, gson.fromJson(new String(read(changed), StandardCharsets.UTF_8), Object[].class).length);
+	}
+
+	@Test
+	public void testContentNegotiation() throws Exception {
+		assertEquals(200, update("JFK"));
+		assertEquals(200, update("EWR"));
+		byte[] binary = WeatherBinaryWriter.toBytes(WeatherResponseCache.getInstance().get("JFK", 200));
+
+		HttpURLConnection connection = get("/query/weather/JFK/200", null);
+		connection.setRequestProperty("Accept", WeatherBinaryWriter.MEDIA_TYPE);
+		assertEquals(200, connection.getResponseCode());
+		assertTrue(connection.getContentType().startsWith(WeatherBinaryWriter.MEDIA_TYPE));
+		assertTrue(varies(connection.getHeaderFields().get("Vary")));
+		byte[] body = read(connection);
+		assertEquals('W', body[0]);
+		assertEquals('B', body[1]);
+		assertArrayEquals(binary, body);
+
+		// json wins when both are accepted alike
+		for (String accept : new String[] { "*/*", MediaType.APPLICATION_JSON,
+				MediaType.APPLICATION_JSON + ", " + WeatherBinaryWriter.MEDIA_TYPE }) {
+			connection = get("/query/weather/JFK/200", null);
+			connection.setRequestProperty("Accept", accept);
+			assertEquals(accept, 200, connection.getResponseCode());
+			assertTrue(accept, connection.getContentType().startsWith(MediaType.APPLICATION_JSON));
+			assertTrue(accept, varies(connection.getHeaderFields().get("Vary")));
+			assertEquals(2, gson.fromJson(new String(read(connection), StandardCharsets.UTF_8), Object[].class).length);
+		}
+
+		// no Accept header at all, which HttpURLConnection always sends
+		try (Socket socket = new Socket("localhost", port)) {
+			OutputStream out = socket.getOutputStream();
+			out.write("GET /query/weather/JFK/200 HTTP/1.0\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+			out.flush();
+			BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+			assertTrue(in.readLine().contains(" 200 "));
+			List<String> vary = new ArrayList<>();
+			String contentType = null;
+			for (String line; !(line = in.readLine()).isEmpty();) {
+				String name = line.substring(0, line.indexOf(':'));
+				String value = line.substring(name.length() + 1).trim();
+				if (name.equalsIgnoreCase("Content-Type")) {
+					contentType = value;
+				} else if (name.equalsIgnoreCase("Vary")) {
+					vary.add(value);
+				}
+			}
+			assertTrue(contentType, contentType.startsWith(MediaType.APPLICATION_JSON));
+			assertTrue(varies(vary));
+			assertEquals(2, gson.fromJson(in, Object[].class).length);
+		}
+	}
+
+	/**
+	 * @return True if the Vary headers name Accept
+	 */
+	private static boolean varies(List<String> vary) {
+		if (vary == null) {
+			return false;
+		}
+		for (String value : vary) {
+			for (String name : value.split(",")) {
+				if (name.trim().equalsIgnoreCase(HttpHeaders.ACCEPT)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private int update(String iata) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) url("/collect/weather/" + iata + "/wind").openConnection();
+		connection.setRequestMethod("POST");
+		connection.setDoOutput(true);
+		connection.setRequestProperty("Content-Type", "application/json");
+		try (OutputStream out = connection.getOutputStream()) {
+			out.write(gson.toJson(dp).getBytes(StandardCharsets.UTF_8));
+		}
+		int status = connection.getResponseCode();
+		read(connection);
+		return status;
+	}
+
+	private static HttpURLConnection get(String path, String ifNoneMatch) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) url(path).openConnection();
+		if (ifNoneMatch != null) {
+			connection.setRequestProperty("If-None-Match", ifNoneMatch);
+		}
+		return connection;
+	}
+
+	private static URL url(String path) throws IOException {
+		return new URL("http://localhost:" + port + path);
+	}
+
+	/**
+	 * @return Body of the response, empty if none
+	 */
+	private static byte[] read(HttpURLConnection connection) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		InputStream in = connection.getResponseCode() < 400 ? connection.getInputStream() : connection.getErrorStream();
+		if (in != null) {
+			try (InputStream body = in) {
+				byte[] buffer = new byte[1024];
+				for (int n; (n = body.read(buffer)) > 0;) {
+					out.write(buffer, 0, n);
+				}
+			}
+		}
+		return out.toByteArray();
+	}
+
+}
@@ -0,0 +1,238 @@
+package com.crossover.trial.weather;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.Response;
+
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.glassfish.grizzly.http.server.Request;
+import org.glassfish.jersey.grizzly2.httpserver.GrizzlyHttpServerFactory;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.crossover.trial.weather.exception.WeatherException;
+import com.crossover.trial.weather.model.DataPoint;
+import com.crossover.trial.weather.model.DataPointType;
+import com.crossover.trial.weather.model.Repository;
+import com.crossover.trial.weather.subscription.Subscription;
+import com.crossover.trial.weather.subscription.WeatherSubscriptions;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+public class WeatherSubscriptionsTest {
+
+	private static HttpServer server;
+
+	private static int port;
+
+	/** registry served by {@link SubscriptionResource} */
+	private static volatile WeatherSubscriptions subscriptions;
+
+	/**
+	 * Streams the subscriptions of the registry under test, connected as by
+	 * the query endpoint.
+	 */
+	@Path("/subscribe")
+	public static class SubscriptionResource {
+
+		@Context
+		private Request request;
+
+		@GET
+		@Produces("text/event-stream")
+		public Response subscribe(@QueryParam("iata") String iata, @QueryParam("radius") double radius) {
+			try {
+				Subscription subscription = subscriptions.subscribe(iata, radius);
+				subscription.setAbort(request.getContext().getConnection()::terminateSilently);
+				return Response.ok(subscription).build();
+			} catch (WeatherException e) {
+				return Response.status(e.getStatus()).build();
+			}
+		}
+
+	}
+
+	@BeforeClass
+	public static void startServer() throws Exception {
+		try (ServerSocket socket = new ServerSocket(0)) {
+			port = socket.getLocalPort();
+		}
+		server = GrizzlyHttpServerFactory.createHttpServer(URI.create("http://localhost:" + port + "/"),
+				new ResourceConfig(SubscriptionResource.class));
+	}
+
+	@AfterClass
+	public static void stopServer() {
+		server.shutdownNow();
+	}
+
+	@Before
+	public void setUp() {
+		Repository.getInstance().reset();
+	}
+
+	@After
+	public void tearDown() {
+		if (subscriptions != null) {
+			subscriptions.shutdown();
+			subscriptions = null;
+		}
+		Repository.getInstance().reset();
+	}
+
+	@Test
+	public void testSnapshotThenUpdate() throws Exception {
+		subscriptions = new WeatherSubscriptions(50, 10, 2, 30);
+		Repository.getInstance().addDataPoint("BOS", DataPointType.WIND, wind(10));
+
+		BufferedReader events = open("BOS", 0);
+		JsonObject snapshot = readEvent(events, "snapshot");
+		assertEquals(10, mean(snapshot, "BOS"), 0);
+
+		Repository.getInstance().addDataPoint("BOS", DataPointType.WIND, wind(20));
+		JsonObject update = readEvent(events, "update");
+		assertEquals(1, update.entrySet().size());
+		assertEquals(20, mean(update, "BOS"), 0);
+	}
+
+	@Test
+	public void testUpdatesAreCoalesced() throws Exception {
+		subscriptions = new WeatherSubscriptions(500, 10, 2, 30);
+
+		BufferedReader events = open("BOS", 500);
+		assertEquals(0, readEvent(events, "snapshot").entrySet().size());
+		// let the window opened by the subscription pass
+		Thread.sleep(1000);
+
+		// all within one window: a single event with the latest of each airport
+		Repository.getInstance().addDataPoint("BOS", DataPointType.WIND, wind(1));
+		Repository.getInstance().addDataPoint("BOS", DataPointType.WIND, wind(2));
+		Repository.getInstance().addDataPoint("JFK", DataPointType.WIND, wind(5));
+		Repository.getInstance().addDataPoint("BOS", DataPointType.WIND, wind(3));
+		JsonObject update = readEvent(events, "update");
+		assertEquals(2, update.entrySet().size());
+		assertEquals(3, mean(update, "BOS"), 0);
+		assertEquals(5, mean(update, "JFK"), 0);
+	}
+
+	@Test
+	public void testTooManySubscriptions() throws Exception {
+		subscriptions = new WeatherSubscriptions(50, 1, 1, 30);
+		assertNotNull(subscriptions.subscribe("BOS", 0));
+		try {
+			subscriptions.subscribe("JFK", 0);
+			fail("subscription over the limit accepted");
+		} catch (WeatherException e) {
+			assertEquals(Response.Status.SERVICE_UNAVAILABLE, e.getStatus());
+		}
+
+		HttpURLConnection connection = (HttpURLConnection) url("JFK", 0).openConnection();
+		assertEquals(503, connection.getResponseCode());
+		connection.disconnect();
+		assertEquals(1, subscriptions.size());
+	}
+
+	@Test
+	public void testStalledSubscriberReleasesItsWriter() throws Exception {
+		// a single writer, taken by the stalled subscriber until it is dropped
+		subscriptions = new WeatherSubscriptions(50, 10, 1, 1);
+		Repository repository = Repository.getInstance();
+		for (int i = 0; i < 500; i++) {
+			repository.addAirport(code(i), 42.364347, -71.005181);
+		}
+
+		try (Socket stalled = new Socket()) {
+			stalled.setReceiveBufferSize(1024);
+			stalled.connect(new InetSocketAddress("localhost", port));
+			OutputStream out = stalled.getOutputStream();
+			out.write(("GET /subscribe?iata=BOS&radius=1 HTTP/1.1\r\nHost: localhost\r\n\r\n")
+					.getBytes(StandardCharsets.US_ASCII));
+			out.flush();
+
+			long deadline = System.currentTimeMillis() + 30000;
+			while (subscriptions.size() == 0) {
+				assertTrue("subscription not opened", System.currentTimeMillis() < deadline);
+				Thread.sleep(10);
+			}
+
+			// never read: updates pile up until the write blocks and the subscriber is dropped
+			for (int round = 0; subscriptions.size() > 0; round++) {
+				assertTrue("stalled subscriber not dropped", System.currentTimeMillis() < deadline);
+				for (int i = 0; i < 500; i++) {
+					repository.addDataPoint(code(i), DataPointType.WIND, wind(round));
+				}
+				Thread.sleep(50);
+			}
+
+			BufferedReader events = open("BOS", 0);
+			assertNotNull(readEvent(events, "snapshot"));
+		}
+	}
+
+	private static DataPoint wind(int mean) {
+		return new DataPoint.Builder().withCount(10).withFirst(10).withMedian(20).withLast(30).withMean(mean).build();
+	}
+
+	/**
+	 * @return Three letter IATA code of a test airport
+	 */
+	private static String code(int i) {
+		return "" + (char) ('P' + i / 676) + (char) ('A' + i / 26 % 26) + (char) ('A' + i % 26);
+	}
+
+	private static URL url(String iata, double radius) throws IOException {
+		return new URL("http://localhost:" + port + "/subscribe?iata=" + iata + "&radius=" + radius);
+	}
+
+	private static BufferedReader open(String iata, double radius) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) url(iata, radius).openConnection();
+		connection.setReadTimeout(10000);
+		assertEquals(200, connection.getResponseCode());
+		return new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Read the next event, expected with the given name.
+	 *
+	 * @return Data of the event
+	 */
+	private static JsonObject readEvent(BufferedReader events, String name) throws IOException {
+		String line = events.readLine();
+		while (line != null && line.isEmpty()) {
+			line = events.readLine();
+		}
+		assertEquals("event: " + name, line);
+		line = events.readLine();
+		assertTrue(line, line.startsWith("data: "));
+		return new JsonParser().parse(line.substring("data: ".length())).getAsJsonObject();
+	}
+
+	private static double mean(JsonObject event, String iata) {
+		return event.getAsJsonObject(iata).getAsJsonObject("wind").get("mean").getAsDouble();
+	}
+
+}
@@ -0,0 +1,91 @@
+package com.crossover.trial.weather.benchmark;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Random;
+
+import com.crossover.trial.weather.model.DataPoint;
+import com.crossover.trial.weather.model.DataPointType;
+import com.crossover.trial.weather.model.Repository;
+import com.crossover.trial.weather.persistence.PersistenceManager;
+
+/**
+ * Measure the overhead of the write-ahead log on data point updates and the
+ * recovery time of a repository with 10k airports, from a snapshot alone and
+ * from a snapshot plus a log tail.
+ *
+ * @author Michele Mastrogiovanni
+ */
+public class PersistenceBenchmark {
+
+	private static final int AIRPORTS = 10_000;
+
+	private static final int UPDATES = 200_000;
+
+	private static final DataPointType[] TYPES = DataPointType.values();
+
+	public static void main(String[] args) throws Exception {
+
+		Repository repository = Repository.getInstance();
+		File directory = Files.createTempDirectory("weather-bench").toFile();
+
+		fill(repository);
+		System.out.println(String.format("updates without log:  %10.0f ops/s", updates(repository)));
+
+		PersistenceManager persistence = new PersistenceManager(directory, 50, 3600);
+		persistence.start(repository);
+		System.out.println(String.format("updates with log:     %10.0f ops/s", updates(repository)));
+		persistence.snapshot();
+		updates(repository);
+		persistence.close();
+
+		repository.clear();
+		long start = System.nanoTime();
+		persistence = new PersistenceManager(directory, 50, 3600);
+		persistence.start(repository);
+		System.out.println(String.format("recovery, snapshot + %d log records: %6.1f ms", UPDATES,
+				(System.nanoTime() - start) / 1e6));
+		persistence.close();
+
+		repository.clear();
+		start = System.nanoTime();
+		persistence = new PersistenceManager(directory, 50, 3600);
+		persistence.start(repository);
+		System.out.println(String.format("recovery, snapshot only:              %6.1f ms", (System.nanoTime() - start) / 1e6));
+		persistence.close();
+
+		System.out.println(String.format("recovered %d airports", repository.getAirports().size()));
+
+		for (File file : directory.listFiles()) {
+			file.delete();
+		}
+		directory.delete();
+		repository.reset();
+
+	}
+
+	private static void fill(Repository repository) throws Exception {
+		Random random = new Random(1);
+		repository.clear();
+		for (int i = 0; i < AIRPORTS; i++) {
+			String iata = "" + (char) ('A' + i / 676 % 26) + (char) ('A' + i / 26 % 26) + (char) ('A' + i % 26);
+			repository.addAirport(iata, random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180);
+		}
+	}
+
+	/**
+	 * @return Updates per second, every airport receiving all point types
+	 */
+	private static double updates(Repository repository) throws Exception {
+		DataPoint dp = new DataPoint.Builder().withMean(50).withFirst(10).withMedian(20).withLast(30).withCount(10).build();
+		DataPoint pressure = new DataPoint.Builder().from(dp).withMean(700).build();
+		String[] iatas = repository.getAirports().toArray(new String[0]);
+		long start = System.nanoTime();
+		for (int i = 0; i < UPDATES; i++) {
+			DataPointType type = TYPES[i % TYPES.length];
+			repository.addDataPoint(iatas[i % iatas.length], type, type == DataPointType.PRESSURE ? pressure : dp);
+		}
+		return UPDATES / ((System.nanoTime() - start) / 1e9);
+	}
+
+}
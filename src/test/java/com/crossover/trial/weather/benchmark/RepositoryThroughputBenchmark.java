@@ -0,0 +1,107 @@
+package com.crossover.trial.weather.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.crossover.trial.weather.model.AirportData;
+import com.crossover.trial.weather.model.DataPoint;
+import com.crossover.trial.weather.model.DataPointType;
+import com.crossover.trial.weather.model.Repository;
+
+/**
+ * Throughput of the repository under a mixed workload, one update every four
+ * radius queries, with an increasing number of threads. Run it from the test
+ * classpath:
+ *
+ * <pre>
+ * java -cp target/classes:target/test-classes:... com.crossover.trial.weather.benchmark.RepositoryThroughputBenchmark
+ * </pre>
+ *
+ * @author Michele Mastrogiovanni
+ */
+public class RepositoryThroughputBenchmark {
+
+	private static final int AIRPORTS = 1000;
+
+	private static final long DURATION_MILLIS = 1000;
+
+	public static void main(String[] args) throws Exception {
+		Repository repository = Repository.getInstance();
+		List<String> iatas = new ArrayList<>();
+		Random random = new Random(7);
+		for (int i = 0; i < AIRPORTS; i++) {
+			String iata = "" + (char) ('A' + i / 676 % 26) + (char) ('A' + i / 26 % 26) + (char) ('A' + i % 26);
+			repository.addAirport(iata, 30 + random.nextDouble() * 20, -10 + random.nextDouble() * 40);
+			iatas.add(iata);
+		}
+
+		int cores = Runtime.getRuntime().availableProcessors();
+		TreeSet<Integer> levels = new TreeSet<>();
+		for (int threads = 1; threads < cores; threads *= 2) {
+			levels.add(threads);
+		}
+		levels.add(cores);
+
+		// warm up
+		run(repository, iatas, cores);
+
+		System.out.println(String.format("%8s %16s %16s", "threads", "queries/s", "updates/s"));
+		for (int threads : levels) {
+			long[] result = run(repository, iatas, threads);
+			System.out.println(String.format("%8d %16d %16d", threads, result[0], result[1]));
+		}
+	}
+
+	/**
+	 * Run the workload on the given number of threads.
+	 *
+	 * @return queries and updates per second
+	 */
+	private static long[] run(Repository repository, List<String> iatas, int threads) throws InterruptedException {
+		LongAdder queries = new LongAdder();
+		LongAdder updates = new LongAdder();
+		Queue<Throwable> errors = new ConcurrentLinkedQueue<>();
+		CountDownLatch done = new CountDownLatch(threads);
+		long deadline = System.nanoTime() + DURATION_MILLIS * 1_000_000;
+
+		for (int t = 0; t < threads; t++) {
+			Random random = new Random(t);
+			new Thread(() -> {
+				try {
+					DataPoint dp = new DataPoint.Builder().withMean(10).withCount(1).build();
+					while (System.nanoTime() < deadline) {
+						String iata = iatas.get(random.nextInt(iatas.size()));
+						if (random.nextInt(5) == 0) {
+							repository.addDataPoint(iata, DataPointType.WIND, dp);
+							updates.increment();
+						} else {
+							for (AirportData ad : repository.getAirportsFromIataInRadius(iata, 200)) {
+								if (repository.getAtmosphericInformation(ad.getIata()) == null) {
+									throw new IllegalStateException("no information for " + ad.getIata());
+								}
+							}
+							queries.increment();
+						}
+					}
+				} catch (Throwable e) {
+					errors.add(e);
+				} finally {
+					done.countDown();
+				}
+			}).start();
+		}
+		done.await();
+
+		if (!errors.isEmpty()) {
+			throw new IllegalStateException("workload failed", errors.peek());
+		}
+		return new long[] { queries.sum() * 1000 / DURATION_MILLIS, updates.sum() * 1000 / DURATION_MILLIS };
+	}
+
+}
@@ -0,0 +1,115 @@
+package com.crossover.trial.weather.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.crossover.trial.weather.AirportCatalogBuilder;
+import com.crossover.trial.weather.AirportLoader;
+import com.crossover.trial.weather.WeatherClient;
+import com.crossover.trial.weather.WeatherLoadGenerator;
+import com.crossover.trial.weather.model.AirportData;
+import com.crossover.trial.weather.server.impl.VirtualThreadExecutor;
+
+/**
+ * Compare the serving modes of the server under many concurrent connections:
+ * a {@link com.crossover.trial.weather.WeatherServer} is started in its own
+ * JVM with the query and collect pools, then with virtual threads when the
+ * running Java supports them, and the same {@link WeatherLoadGenerator} load
+ * is sent to each.
+ *
+ * Arguments: request rate (default 2000), requests in flight (default 512),
+ * seconds measured (default 20).
+ *
+ * @author Michele Mastrogiovanni
+ */
+public class ServerModeBenchmark {
+
+	private static final int WARMUP_SECONDS = 5;
+
+	public static void main(String[] args) throws Exception {
+
+		double rate = args.length > 0 ? Double.parseDouble(args[0]) : 2000;
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : 512;
+		int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+
+		List<String> iatas = new ArrayList<>();
+		try (InputStream input = ServerModeBenchmark.class.getResourceAsStream("/airports.dat")) {
+			for (AirportData airport : AirportCatalogBuilder.read(input, new ArrayList<>())) {
+				iatas.add(airport.getIata());
+			}
+		}
+
+		System.out.println(String.format("%.0f req/s, %d in flight, %d s", rate, threads, seconds));
+		run("pools", false, iatas, rate, threads, seconds);
+		if ( VirtualThreadExecutor.isSupported() ) {
+			run("virtual threads", true, iatas, rate, threads, seconds);
+		} else {
+			System.out.println("virtual threads: not supported on Java " + System.getProperty("java.version"));
+		}
+
+	}
+
+	private static void run(String mode, boolean virtualThreads, List<String> iatas, double rate, int threads,
+			int seconds) throws Exception {
+
+		int port;
+		try (ServerSocket socket = new ServerSocket(0)) {
+			port = socket.getLocalPort();
+		}
+		String baseUrl = "http://localhost:" + port;
+		Process server = new ProcessBuilder(
+				new File(System.getProperty("java.home"), "bin/java").getPath(),
+				"-cp", System.getProperty("java.class.path"),
+				"-Dweather.server.port=" + port,
+				"-Dweather.server.virtualThreads=" + virtualThreads,
+				"-Dweather.server.queueLimit=" + threads,
+				"com.crossover.trial.weather.WeatherServer")
+				.redirectOutput(ProcessBuilder.Redirect.INHERIT)
+				.redirectError(ProcessBuilder.Redirect.INHERIT)
+				.start();
+
+		try {
+			WeatherClient client = new WeatherClient(baseUrl);
+			long deadline = System.currentTimeMillis() + 30000;
+			while (!started(baseUrl)) {
+				if ( System.currentTimeMillis() > deadline ) {
+					throw new IllegalStateException("server not started");
+				}
+				Thread.sleep(100);
+			}
+			try (InputStream input = ServerModeBenchmark.class.getResourceAsStream("/airports.dat")) {
+				new AirportLoader(baseUrl, 500, 4).upload(input);
+			}
+
+			System.out.println(mode + ":");
+			WeatherLoadGenerator generator = new WeatherLoadGenerator(client, iatas,
+					"0,0,0,50,200,1000".split(","), "query=80,collect=18,ping=2");
+			generator.run(rate, WARMUP_SECONDS, seconds, threads);
+			generator.report(seconds);
+		} finally {
+			server.destroy();
+			server.waitFor();
+		}
+
+	}
+
+	private static boolean started(String baseUrl) {
+		try {
+			HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + "/collect/ping").openConnection();
+			try {
+				return connection.getResponseCode() == 200;
+			} finally {
+				connection.disconnect();
+			}
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+}
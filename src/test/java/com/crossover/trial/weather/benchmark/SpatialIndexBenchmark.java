@@ -0,0 +1,95 @@
+package com.crossover.trial.weather.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.crossover.trial.weather.index.GridSpatialIndex;
+import com.crossover.trial.weather.index.LinearScanIndex;
+import com.crossover.trial.weather.index.NeighbourIndex;
+import com.crossover.trial.weather.index.SpatialIndex;
+import com.crossover.trial.weather.model.AirportData;
+
+/**
+ * Compare the radius query cost of the grid and neighbour indexes against the
+ * linear scan at 1k, 10k and 100k random airports. Run it from the test classpath:
+ *
+ * <pre>
+ * java -cp target/classes:target/test-classes:... com.crossover.trial.weather.benchmark.SpatialIndexBenchmark
+ * </pre>
+ *
+ * @author Michele Mastrogiovanni
+ */
+public class SpatialIndexBenchmark {
+
+	private static final int[] SIZES = { 1_000, 10_000, 100_000 };
+
+	private static final double[] RADII = { 0, 50, 200, 1000 };
+
+	private static final int QUERIES = 2_000;
+
+	public static void main(String[] args) {
+		System.out.println(String.format("%8s %8s %14s %14s %16s %8s", "airports", "radius", "linear us/op", "grid us/op",
+				"neighbour us/op", "speedup"));
+		for (int size : SIZES) {
+			List<AirportData> airports = randomAirports(size, new Random(size));
+			SpatialIndex linear = fill(new LinearScanIndex(), airports);
+			SpatialIndex grid = fill(new GridSpatialIndex(), airports);
+			long start = System.nanoTime();
+			SpatialIndex neighbours = fill(new NeighbourIndex(), airports);
+			System.out.println(String.format("neighbour lists of %d airports built in %d ms", size,
+					(System.nanoTime() - start) / 1_000_000));
+			for (double radius : RADII) {
+				double linearTime = measure(linear, airports, radius);
+				double gridTime = measure(grid, airports, radius);
+				double neighbourTime = measure(neighbours, airports, radius);
+				System.out.println(String.format("%8d %8.0f %14.2f %14.2f %16.2f %7.1fx", size, radius, linearTime, gridTime,
+						neighbourTime, linearTime / Math.min(gridTime, neighbourTime)));
+			}
+		}
+	}
+
+	/**
+	 * @return Average time of a query in microseconds, after a warm up round
+	 */
+	private static double measure(SpatialIndex index, List<AirportData> airports, double radius) {
+		int queries = index instanceof LinearScanIndex && airports.size() > 10_000 ? QUERIES / 10 : QUERIES;
+		long sink = 0;
+		for (int round = 0; round < 2; round++) {
+			long start = System.nanoTime();
+			for (int i = 0; i < queries; i++) {
+				sink += index.findInRadius(airports.get(i * 7919 % airports.size()), radius).size();
+			}
+			if (round == 1) {
+				double elapsed = (System.nanoTime() - start) / 1000.0 / queries;
+				return sink == Long.MIN_VALUE ? -1 : elapsed;
+			}
+		}
+		return -1;
+	}
+
+	private static SpatialIndex fill(SpatialIndex index, List<AirportData> airports) {
+		airports.forEach(index::add);
+		return index;
+	}
+
+	/**
+	 * Airports with a realistic distribution: land masses are crowded, so
+	 * positions are clustered around a number of random hubs.
+	 */
+	static List<AirportData> randomAirports(int size, Random random) {
+		double[][] hubs = new double[200][];
+		for (int i = 0; i < hubs.length; i++) {
+			hubs[i] = new double[] { random.nextDouble() * 120 - 60, random.nextDouble() * 360 - 180 };
+		}
+		List<AirportData> airports = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			double[] hub = hubs[random.nextInt(hubs.length)];
+			double lat = Math.max(-90, Math.min(90, hub[0] + random.nextGaussian() * 4));
+			double lon = Math.max(-180, Math.min(180, hub[1] + random.nextGaussian() * 6));
+			airports.add(new AirportData.Builder(String.format("%05d", i)).withLat(lat).withLon(lon).build());
+		}
+		return airports;
+	}
+
+}